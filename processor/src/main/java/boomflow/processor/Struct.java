@@ -0,0 +1,24 @@
+package boomflow.processor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class as EIP712 struct, whose fields annotated with <code>StructField</code>
+ * declare both the EIP712 schema and the ABI tuple in declaration order.
+ *
+ * <code>StructProcessor</code> generates a package-private class named <code>{ClassName}Codec</code>
+ * in the same package, which hashes and ABI encodes the struct without reflection.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Struct {
+	
+	/**
+	 * EIP712 primary type name.
+	 */
+	String value();
+
+}
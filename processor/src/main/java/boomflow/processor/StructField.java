@@ -0,0 +1,51 @@
+package boomflow.processor;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a struct field, which must not be private so that the generated codec could access.
+ *
+ * Supported Java types:
+ * <ul>
+ * <li>address: <code>String</code> in HEX format or <code>boomflow.common.Address</code>.</li>
+ * <li>uintN/intN: <code>long</code>, <code>int</code> or <code>BigInteger</code>.</li>
+ * <li>bool: <code>boolean</code>.</li>
+ * <li>string: <code>String</code>.</li>
+ * <li>bytes: <code>String</code> in HEX format.</li>
+ * <li>nested struct: class annotated with <code>Struct</code>, and the type could be omitted.</li>
+ * </ul>
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface StructField {
+	
+	/**
+	 * Solidity type, e.g. uint256, address.
+	 */
+	String type() default "";
+	
+	/**
+	 * Solidity type when ABI encoded if different from the EIP712 type, e.g. <code>uint256</code> in contract
+	 * for an <code>int256</code> EIP712 field. Only integer types are supported.
+	 */
+	String abiType() default "";
+	
+	/**
+	 * EIP712 field name, which is the Java field name by default.
+	 */
+	String name() default "";
+	
+	/**
+	 * Whether the field is a member of EIP712 schema. Otherwise, only ABI encoded, e.g. signature.
+	 */
+	boolean eip712() default true;
+	
+	/**
+	 * Index in EIP712 schema if different from the ABI order, which is declaration order.
+	 */
+	int eip712Index() default -1;
+
+}
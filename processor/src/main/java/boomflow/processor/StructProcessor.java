@@ -0,0 +1,778 @@
+package boomflow.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * StructProcessor generates <code>{ClassName}Codec</code> for classes annotated with <code>Struct</code>,
+ * which includes:
+ * <ul>
+ * <li>EIP712 schemas and field values, as required by <code>TypedData</code>.</li>
+ * <li><code>hashStruct</code> and <code>hash</code> that encode fields directly with the pre-computed type hash.</li>
+ * <li><code>encode</code> that ABI encodes fields as tuple directly without web3j types.</li>
+ * <li><code>encodeCall</code> and <code>encodeArrayCall</code> that ABI encode function call with the struct
+ * or struct array as the only parameter.</li>
+ * <li><code>types</code> that creates web3j types of fields, which is used by web3j <code>FunctionEncoder</code>.</li>
+ * </ul>
+ */
+@SupportedAnnotationTypes({ "boomflow.processor.Struct", "boomflow.processor.StructField" })
+public class StructProcessor extends AbstractProcessor {
+	
+	private static final Pattern INTEGER = Pattern.compile("(u?)int(\\d*)");
+	
+	private static final String BIG_INTEGER = "java.math.BigInteger";
+	private static final String STRING = "java.lang.String";
+	private static final String ADDRESS = "boomflow.common.Address";
+	
+	// class => parsed struct, or null if failed to parse
+	private Map<TypeElement, StructModel> models = new HashMap<TypeElement, StructModel>();
+	
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+	
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (Element element : roundEnv.getElementsAnnotatedWith(Struct.class)) {
+			if (element.getKind() != ElementKind.CLASS) {
+				this.error(element, "@Struct is only applicable to class");
+				continue;
+			}
+			
+			StructModel model = this.parse((TypeElement) element);
+			if (model == null) {
+				continue;
+			}
+			
+			try {
+				this.generate(model);
+			} catch (IOException e) {
+				this.error(element, "failed to generate codec: " + e.getMessage());
+			}
+		}
+		
+		return true;
+	}
+	
+	private void error(Element element, String message) {
+		this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+	
+	private StructModel parse(TypeElement element) {
+		if (this.models.containsKey(element)) {
+			StructModel model = this.models.get(element);
+			if (model != null && model.fields == null) {
+				this.error(element, "recursive struct is not supported");
+				return null;
+			}
+			
+			return model;
+		}
+		
+		// mark as parsing to detect recursion
+		StructModel model = new StructModel(element);
+		this.models.put(element, model);
+		
+		List<FieldModel> fields = new ArrayList<FieldModel>();
+		boolean valid = true;
+		
+		for (Element member : element.getEnclosedElements()) {
+			StructField annotation = member.getAnnotation(StructField.class);
+			if (annotation == null) {
+				continue;
+			}
+			
+			FieldModel field = this.parseField((VariableElement) member, annotation);
+			if (field == null) {
+				valid = false;
+			} else {
+				fields.add(field);
+			}
+		}
+		
+		if (element.getNestingKind() != NestingKind.TOP_LEVEL) {
+			this.error(element, "@Struct is only applicable to top level class");
+			valid = false;
+		}
+		
+		if (valid && fields.isEmpty()) {
+			this.error(element, "no field annotated with @StructField");
+			valid = false;
+		}
+		
+		if (!valid) {
+			this.models.put(element, null);
+			return null;
+		}
+		
+		model.fields = fields;
+		model.eip712Fields = this.sortEIP712Fields(element, fields);
+		if (model.eip712Fields == null) {
+			this.models.put(element, null);
+			return null;
+		}
+		
+		return model;
+	}
+	
+	private FieldModel parseField(VariableElement element, StructField annotation) {
+		if (element.getModifiers().contains(Modifier.PRIVATE) || element.getModifiers().contains(Modifier.STATIC)) {
+			this.error(element, "@StructField should be applied to non-private instance field");
+			return null;
+		}
+		
+		FieldModel field = new FieldModel();
+		field.javaName = element.getSimpleName().toString();
+		field.name = annotation.name().isEmpty() ? field.javaName : annotation.name();
+		field.type = annotation.type();
+		field.eip712 = annotation.eip712();
+		field.eip712Index = annotation.eip712Index();
+		field.javaType = element.asType();
+		
+		TypeElement nested = this.asStruct(field.javaType);
+		if (nested != null) {
+			field.struct = this.parse(nested);
+			if (field.struct == null) {
+				return null;
+			}
+			
+			if (!field.type.isEmpty() && !field.type.equals(field.struct.primaryType)) {
+				this.error(element, "type mismatch with nested struct " + field.struct.primaryType);
+				return null;
+			}
+			
+			if (!this.packageOf(nested).equals(this.packageOf((TypeElement) element.getEnclosingElement()))) {
+				this.error(element, "nested struct should be in the same package");
+				return null;
+			}
+			
+			field.type = field.struct.primaryType;
+			return field;
+		}
+		
+		String javaType = field.javaType.toString();
+		boolean supported;
+		
+		Matcher matcher = INTEGER.matcher(field.type);
+		if (matcher.matches()) {
+			field.signed = matcher.group(1).isEmpty();
+			field.bits = matcher.group(2).isEmpty() ? 256 : Integer.parseInt(matcher.group(2));
+			if (field.bits <= 0 || field.bits > 256 || field.bits % 8 != 0) {
+				this.error(element, "invalid integer type " + field.type);
+				return null;
+			}
+			
+			supported = field.javaType.getKind() == TypeKind.LONG || field.javaType.getKind() == TypeKind.INT || javaType.equals(BIG_INTEGER);
+			
+			field.abiBits = field.bits;
+			field.abiSigned = field.signed;
+			if (!annotation.abiType().isEmpty()) {
+				Matcher abiMatcher = INTEGER.matcher(annotation.abiType());
+				if (!abiMatcher.matches()) {
+					this.error(element, "unsupported ABI type " + annotation.abiType());
+					return null;
+				}
+				
+				field.abiSigned = abiMatcher.group(1).isEmpty();
+				field.abiBits = abiMatcher.group(2).isEmpty() ? 256 : Integer.parseInt(abiMatcher.group(2));
+				if (field.abiBits <= 0 || field.abiBits > 256 || field.abiBits % 8 != 0) {
+					this.error(element, "invalid integer type " + annotation.abiType());
+					return null;
+				}
+			}
+		} else if (!annotation.abiType().isEmpty()) {
+			this.error(element, "ABI type is only applicable to integer field");
+			return null;
+		} else {
+			switch (field.type) {
+			case "address":
+				supported = javaType.equals(STRING) || javaType.equals(ADDRESS);
+				break;
+			case "bool":
+				supported = field.javaType.getKind() == TypeKind.BOOLEAN;
+				break;
+			case "string":
+			case "bytes":
+				supported = javaType.equals(STRING);
+				break;
+			default:
+				this.error(element, field.type.isEmpty() ? "type not specified" : "unsupported type " + field.type);
+				return null;
+			}
+		}
+		
+		if (!supported) {
+			this.error(element, String.format("Java type %s is not supported for %s", javaType, field.type));
+			return null;
+		}
+		
+		return field;
+	}
+	
+	private TypeElement asStruct(TypeMirror type) {
+		if (type.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		
+		TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+		return element.getAnnotation(Struct.class) == null ? null : element;
+	}
+	
+	private String packageOf(TypeElement element) {
+		return this.processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString();
+	}
+	
+	/**
+	 * Fields in EIP712 schema are in declaration order, unless the index is explicitly specified.
+	 */
+	private List<FieldModel> sortEIP712Fields(TypeElement element, List<FieldModel> fields) {
+		List<FieldModel> sorted = new ArrayList<FieldModel>();
+		TreeMap<Integer, FieldModel> indexed = new TreeMap<Integer, FieldModel>();
+		
+		for (FieldModel field : fields) {
+			if (!field.eip712) {
+				continue;
+			}
+			
+			if (field.eip712Index < 0) {
+				sorted.add(field);
+			} else if (indexed.put(field.eip712Index, field) != null) {
+				this.error(element, "duplicated eip712Index " + field.eip712Index);
+				return null;
+			}
+		}
+		
+		for (Map.Entry<Integer, FieldModel> entry : indexed.entrySet()) {
+			if (entry.getKey() > sorted.size()) {
+				this.error(element, "eip712Index out of bound: " + entry.getKey());
+				return null;
+			}
+			
+			sorted.add(entry.getKey(), entry.getValue());
+		}
+		
+		if (sorted.isEmpty()) {
+			this.error(element, "no EIP712 field declared");
+			return null;
+		}
+		
+		return sorted;
+	}
+	
+	private void generate(StructModel model) throws IOException {
+		String packageName = this.packageOf(model.element);
+		String className = model.codecName();
+		String dataType = model.element.getSimpleName().toString();
+		
+		SourceWriter writer = new SourceWriter();
+		
+		if (!packageName.isEmpty()) {
+			writer.line(0, "package %s;", packageName).blank(0);
+		}
+		
+		writer.line(0, "import java.nio.charset.StandardCharsets;")
+				.line(0, "import java.util.Arrays;")
+				.line(0, "import java.util.Collections;")
+				.line(0, "import java.util.HashMap;")
+				.line(0, "import java.util.List;")
+				.line(0, "import java.util.Map;")
+				.blank(0)
+				.line(0, "import org.web3j.abi.datatypes.Type;")
+				.line(0, "import org.web3j.crypto.Hash;")
+				.blank(0)
+				.line(0, "import boomflow.eip712.core.Entry;")
+				.line(0, "import boomflow.eip712.core.StructEncoding;")
+				.line(0, "import boomflow.eip712.core.StructHasher;")
+				.blank(0)
+				.line(0, "/**")
+				.line(0, " * Generated by <code>StructProcessor</code> from the annotated fields of <code>%s</code>, do not edit.", dataType)
+				.line(0, " */")
+				.line(0, "final class %s {", className)
+				.blank(1);
+		
+		// schemas
+		writer.line(1, "static final String PRIMARY_TYPE = \"%s\";", model.primaryType).blank(1);
+		writer.line(1, "static final List<Entry> SCHEMA = Collections.unmodifiableList(Arrays.asList(");
+		for (int i = 0, len = model.eip712Fields.size(); i < len; i++) {
+			FieldModel field = model.eip712Fields.get(i);
+			writer.line(3, "new Entry(\"%s\", \"%s\")%s", field.name, field.type, i == len - 1 ? "));" : ",");
+		}
+		writer.blank(1);
+		
+		writer.line(1, "static final Map<String, List<Entry>> SCHEMAS;").blank(1);
+		writer.line(1, "static {")
+				.line(2, "Map<String, List<Entry>> schemas = new HashMap<String, List<Entry>>();")
+				.line(2, "schemas.put(PRIMARY_TYPE, SCHEMA);");
+		for (StructModel dependency : model.directDependencies()) {
+			writer.line(2, "schemas.putAll(%s.SCHEMAS);", dependency.codecName());
+		}
+		writer.line(2, "SCHEMAS = Collections.unmodifiableMap(schemas);")
+				.line(1, "}")
+				.blank(1);
+		
+		// ABI
+		writer.line(1, "// ABI tuple type").line(1, "static final String ABI_TYPE = \"%s\";", model.abiType());
+		writer.line(1, "static final boolean DYNAMIC = %s;", model.isDynamic());
+		writer.line(1, "// size in head when ABI encoded, which is the encoded size for static struct").line(1, "static final int HEAD_SIZE = %d;", model.headSize());
+		writer.blank(1);
+		
+		writer.line(1, "private static final byte[] TYPE_HASH = Hash.sha3(\"%s\".getBytes(StandardCharsets.UTF_8));", model.encodeType());
+		writer.blank(1);
+		
+		writer.line(1, "private %s() {", className).line(1, "}").blank(1);
+		
+		// values
+		writer.line(1, "static Object[] values(%s data) {", dataType).line(2, "return new Object[] {");
+		for (FieldModel field : model.eip712Fields) {
+			writer.line(4, "%s,", field.valueExpr());
+		}
+		writer.line(2, "};").line(1, "}").blank(1);
+		
+		// EIP712
+		writer.line(1, "static byte[] hashStruct(%s data) {", dataType)
+				.line(2, "byte[] encoded = new byte[%d];", 32 * (model.eip712Fields.size() + 1))
+				.line(2, "System.arraycopy(TYPE_HASH, 0, encoded, 0, 32);");
+		for (int i = 0; i < model.eip712Fields.size(); i++) {
+			writer.line(2, model.eip712Fields.get(i).hashExpr("encoded", String.valueOf(32 * (i + 1))));
+		}
+		writer.line(2, "return Hash.sha3(encoded);").line(1, "}").blank(1);
+		
+		writer.line(1, "static byte[] hash(%s data) {", dataType)
+				.line(2, "return StructHasher.hash(data.domain(), hashStruct(data));")
+				.line(1, "}")
+				.blank(1);
+		
+		// ABI
+		if (model.isDynamic()) {
+			this.generateDynamicEncode(writer, model, dataType);
+		} else {
+			this.generateStaticEncode(writer, model, dataType);
+		}
+		
+		// calldata of function with the struct as the only parameter, where dynamic tuple is referenced by offset in head
+		writer.line(1, "static byte[] encodeCall(%s data, byte[] selector) {", dataType)
+				.line(2, "byte[] encoded = encode(data, %d);", model.isDynamic() ? 36 : 4)
+				.line(2, "System.arraycopy(selector, 0, encoded, 0, 4);");
+		if (model.isDynamic()) {
+			writer.line(2, "StructEncoding.encodeInt(32, 256, false, encoded, 4);");
+		}
+		writer.line(2, "return encoded;").line(1, "}").blank(1);
+		
+		// calldata of function with the struct array as the only parameter
+		writer.line(1, "static byte[] encodeArrayCall(List<%s> data, byte[] selector) {", dataType);
+		if (model.isDynamic()) {
+			writer.line(2, "byte[][] elements = new byte[data.size()][];")
+					.line(2, "int size = 68 + 32 * elements.length;")
+					.line(2, "for (int i = 0; i < elements.length; i++) {")
+					.line(3, "elements[i] = encode(data.get(i));")
+					.line(3, "size += elements[i].length;")
+					.line(2, "}")
+					.blank(2)
+					.line(2, "byte[] encoded = new byte[size];");
+		} else {
+			writer.line(2, "byte[] encoded = new byte[68 + HEAD_SIZE * data.size()];");
+		}
+		writer.line(2, "System.arraycopy(selector, 0, encoded, 0, 4);")
+				.line(2, "StructEncoding.encodeInt(32, 256, false, encoded, 4);")
+				.line(2, "StructEncoding.encodeInt(data.size(), 256, false, encoded, 36);")
+				.blank(2);
+		if (model.isDynamic()) {
+			writer.line(2, "int offset = 32 * elements.length;")
+					.line(2, "for (int i = 0; i < elements.length; i++) {")
+					.line(3, "StructEncoding.encodeInt(offset, 256, false, encoded, 68 + 32 * i);")
+					.line(3, "System.arraycopy(elements[i], 0, encoded, 68 + offset, elements[i].length);")
+					.line(3, "offset += elements[i].length;")
+					.line(2, "}");
+		} else {
+			writer.line(2, "for (int i = 0, len = data.size(); i < len; i++) {")
+					.line(3, "encode(data.get(i), encoded, 68 + HEAD_SIZE * i);")
+					.line(2, "}");
+		}
+		writer.blank(2).line(2, "return encoded;").line(1, "}").blank(1);
+		
+		// web3j types
+		writer.line(1, "@SuppressWarnings(\"rawtypes\")")
+				.line(1, "static List<Type> types(%s data) {", dataType)
+				.line(2, "return Arrays.<Type>asList(");
+		for (int i = 0, len = model.fields.size(); i < len; i++) {
+			writer.line(4, "%s%s", model.fields.get(i).web3jExpr(), i == len - 1 ? ");" : ",");
+		}
+		writer.line(1, "}").blank(1);
+		
+		writer.line(0, "}");
+		
+		JavaFileObject file = this.processingEnv.getFiler().createSourceFile(
+				packageName.isEmpty() ? className : packageName + "." + className, model.element);
+		try (Writer out = file.openWriter()) {
+			out.write(writer.toString());
+		}
+	}
+	
+	private void generateStaticEncode(SourceWriter writer, StructModel model, String dataType) {
+		writer.line(1, "static byte[] encode(%s data) {", dataType)
+				.line(2, "return encode(data, 0);")
+				.line(1, "}")
+				.blank(1);
+		
+		writer.line(1, "static byte[] encode(%s data, int prefix) {", dataType)
+				.line(2, "byte[] encoded = new byte[prefix + HEAD_SIZE];")
+				.line(2, "encode(data, encoded, prefix);")
+				.line(2, "return encoded;")
+				.line(1, "}")
+				.blank(1);
+		
+		writer.line(1, "static void encode(%s data, byte[] out, int offset) {", dataType);
+		int head = 0;
+		for (FieldModel field : model.fields) {
+			writer.line(2, field.abiHeadExpr("out", head == 0 ? "offset" : "offset + " + head));
+			head += field.headSize();
+		}
+		writer.line(1, "}").blank(1);
+	}
+	
+	private void generateDynamicEncode(SourceWriter writer, StructModel model, String dataType) {
+		writer.line(1, "static byte[] encode(%s data) {", dataType)
+				.line(2, "return encode(data, 0);")
+				.line(1, "}")
+				.blank(1);
+		
+		writer.line(1, "static byte[] encode(%s data, int prefix) {", dataType);
+		
+		StringBuilder size = new StringBuilder("prefix + HEAD_SIZE");
+		for (int i = 0; i < model.fields.size(); i++) {
+			FieldModel field = model.fields.get(i);
+			if (field.isDynamic()) {
+				writer.line(2, "byte[] tail%d = %s;", i, field.abiTailExpr());
+				size.append(" + tail").append(i).append(".length");
+			}
+		}
+		
+		writer.line(2, "byte[] encoded = new byte[%s];", size);
+		
+		int head = 0;
+		for (FieldModel field : model.fields) {
+			if (!field.isDynamic()) {
+				writer.line(2, field.abiHeadExpr("encoded", head == 0 ? "prefix" : "prefix + " + head));
+			}
+			
+			head += field.headSize();
+		}
+		
+		writer.blank(2).line(2, "int offset = HEAD_SIZE;");
+		
+		head = 0;
+		int lastDynamic = model.lastDynamicField();
+		for (int i = 0; i < model.fields.size(); i++) {
+			FieldModel field = model.fields.get(i);
+			if (field.isDynamic()) {
+				writer.line(2, "StructEncoding.encodeInt(offset, 256, false, encoded, %s);", head == 0 ? "prefix" : "prefix + " + head);
+				writer.line(2, "System.arraycopy(tail%d, 0, encoded, prefix + offset, tail%d.length);", i, i);
+				if (i < lastDynamic) {
+					writer.line(2, "offset += tail%d.length;", i);
+				}
+			}
+			
+			head += field.headSize();
+		}
+		
+		writer.blank(2).line(2, "return encoded;").line(1, "}").blank(1);
+	}
+	
+	private static class StructModel {
+		
+		TypeElement element;
+		String primaryType;
+		// in ABI order, or null if in parsing
+		List<FieldModel> fields;
+		List<FieldModel> eip712Fields;
+		
+		StructModel(TypeElement element) {
+			this.element = element;
+			this.primaryType = element.getAnnotation(Struct.class).value();
+		}
+		
+		String codecName() {
+			return this.element.getSimpleName() + "Codec";
+		}
+		
+		boolean isDynamic() {
+			for (FieldModel field : this.fields) {
+				if (field.isDynamic()) {
+					return true;
+				}
+			}
+			
+			return false;
+		}
+		
+		int lastDynamicField() {
+			int last = -1;
+			for (int i = 0; i < this.fields.size(); i++) {
+				if (this.fields.get(i).isDynamic()) {
+					last = i;
+				}
+			}
+			
+			return last;
+		}
+		
+		int headSize() {
+			int size = 0;
+			for (FieldModel field : this.fields) {
+				size += field.headSize();
+			}
+			
+			return size;
+		}
+		
+		String abiType() {
+			StringBuilder builder = new StringBuilder("(");
+			for (int i = 0; i < this.fields.size(); i++) {
+				if (i > 0) {
+					builder.append(',');
+				}
+				
+				builder.append(this.fields.get(i).abiType());
+			}
+			
+			return builder.append(')').toString();
+		}
+		
+		List<StructModel> directDependencies() {
+			List<StructModel> dependencies = new ArrayList<StructModel>();
+			for (FieldModel field : this.eip712Fields) {
+				if (field.struct != null && !dependencies.contains(field.struct)) {
+					dependencies.add(field.struct);
+				}
+			}
+			
+			return dependencies;
+		}
+		
+		void collectDependencies(TreeMap<String, StructModel> dependencies) {
+			for (StructModel dependency : this.directDependencies()) {
+				if (dependencies.put(dependency.primaryType, dependency) == null) {
+					dependency.collectDependencies(dependencies);
+				}
+			}
+		}
+		
+		/**
+		 * Encode type in format "Primary(type1 name1,...)Dependency1(...)Dependency2(...)",
+		 * and dependencies are sorted by name.
+		 */
+		String encodeType() {
+			TreeMap<String, StructModel> dependencies = new TreeMap<String, StructModel>();
+			this.collectDependencies(dependencies);
+			dependencies.remove(this.primaryType);
+			
+			StringBuilder builder = new StringBuilder();
+			this.appendType(builder);
+			for (StructModel dependency : dependencies.values()) {
+				dependency.appendType(builder);
+			}
+			
+			return builder.toString();
+		}
+		
+		private void appendType(StringBuilder builder) {
+			builder.append(this.primaryType).append('(');
+			
+			for (int i = 0; i < this.eip712Fields.size(); i++) {
+				if (i > 0) {
+					builder.append(',');
+				}
+				
+				builder.append(this.eip712Fields.get(i).type).append(' ').append(this.eip712Fields.get(i).name);
+			}
+			
+			builder.append(')');
+		}
+	
+	}
+	
+	private static class FieldModel {
+		
+		String javaName;
+		TypeMirror javaType;
+		String name;
+		String type;
+		boolean eip712;
+		int eip712Index;
+		
+		// integer only
+		int bits;
+		boolean signed;
+		// integer type when ABI encoded
+		int abiBits;
+		boolean abiSigned;
+		
+		// nested struct only
+		StructModel struct;
+		
+		boolean isDynamic() {
+			if (this.struct != null) {
+				return this.struct.isDynamic();
+			}
+			
+			return this.type.equals("string") || this.type.equals("bytes");
+		}
+		
+		int headSize() {
+			return this.struct == null || this.struct.isDynamic() ? 32 : this.struct.headSize();
+		}
+		
+		String abiType() {
+			if (this.struct != null) {
+				return this.struct.abiType();
+			}
+			
+			return this.abiBits > 0 ? (this.abiSigned ? "int" : "uint") + this.abiBits : this.type;
+		}
+		
+		String valueExpr() {
+			return this.javaType.toString().equals(ADDRESS)
+					? String.format("data.%s.toHex()", this.javaName)
+					: "data." + this.javaName;
+		}
+		
+		/**
+		 * Statement to encode 32 bytes of EIP712 field.
+		 */
+		String hashExpr(String out, String offset) {
+			if (this.struct != null) {
+				return String.format("System.arraycopy(%s.hashStruct(data.%s), 0, %s, %s, 32);", this.struct.codecName(), this.javaName, out, offset);
+			}
+			
+			switch (this.type) {
+			case "string":
+				return String.format("StructEncoding.hashString(data.%s, %s, %s);", this.javaName, out, offset);
+			case "bytes":
+				return String.format("StructEncoding.hashBytes(data.%s, %s, %s);", this.javaName, out, offset);
+			default:
+				return this.atomicExpr(this.bits, this.signed, out, offset);
+			}
+		}
+		
+		/**
+		 * Statement to encode static field in ABI head.
+		 */
+		String abiHeadExpr(String out, String offset) {
+			if (this.struct != null) {
+				return String.format("%s.encode(data.%s, %s, %s);", this.struct.codecName(), this.javaName, out, offset);
+			}
+			
+			return this.atomicExpr(this.abiBits, this.abiSigned, out, offset);
+		}
+		
+		/**
+		 * Expression of encoded dynamic field in ABI tail.
+		 */
+		String abiTailExpr() {
+			if (this.struct != null) {
+				return String.format("%s.encode(data.%s)", this.struct.codecName(), this.javaName);
+			}
+			
+			return this.type.equals("string")
+					? String.format("StructEncoding.encodeString(data.%s)", this.javaName)
+					: String.format("StructEncoding.encodeBytes(data.%s)", this.javaName);
+		}
+		
+		/**
+		 * Expression to create web3j type.
+		 */
+		String web3jExpr() {
+			if (this.struct != null) {
+				return "data." + this.javaName;
+			}
+			
+			if (this.abiBits > 0) {
+				return String.format("new org.web3j.abi.datatypes.generated.%s%d(data.%s)", this.abiSigned ? "Int" : "Uint", this.abiBits, this.javaName);
+			}
+			
+			switch (this.type) {
+			case "address":
+				return this.javaType.toString().equals(ADDRESS)
+						? String.format("data.%s.toABI()", this.javaName)
+						: String.format("new org.web3j.abi.datatypes.Address(data.%s)", this.javaName);
+			case "bool":
+				return String.format("new org.web3j.abi.datatypes.Bool(data.%s)", this.javaName);
+			case "string":
+				return String.format("new org.web3j.abi.datatypes.Utf8String(data.%s)", this.javaName);
+			default:
+				return String.format("new org.web3j.abi.datatypes.DynamicBytes(org.web3j.utils.Numeric.hexStringToByteArray(data.%s))", this.javaName);
+			}
+		}
+		
+		private String atomicExpr(int bits, boolean signed, String out, String offset) {
+			if (bits > 0) {
+				return String.format("StructEncoding.encodeInt(data.%s, %d, %s, %s, %s);", this.javaName, bits, signed, out, offset);
+			}
+			
+			if (this.type.equals("bool")) {
+				return String.format("StructEncoding.encodeBool(data.%s, %s, %s);", this.javaName, out, offset);
+			}
+			
+			return String.format("StructEncoding.encodeAddress(%s, %s, %s);", this.valueExpr(), out, offset);
+		}
+	
+	}
+	
+	/**
+	 * Writes source code with tab indentation, and blank line is also indented.
+	 */
+	private static class SourceWriter {
+		
+		private StringBuilder builder = new StringBuilder();
+		
+		SourceWriter line(int indent, String format, Object... args) {
+			this.indent(indent);
+			this.builder.append(args.length == 0 ? format : String.format(format, args)).append('\n');
+			return this;
+		}
+		
+		SourceWriter blank(int indent) {
+			this.indent(indent);
+			this.builder.append('\n');
+			return this;
+		}
+		
+		private void indent(int indent) {
+			for (int i = 0; i < indent; i++) {
+				this.builder.append('\t');
+			}
+		}
+		
+		@Override
+		public String toString() {
+			return this.builder.toString();
+		}
+	
+	}
+
+}
@@ -25,6 +25,9 @@ public class SettlementDemo {
 	public static void main(String[] args) {
 		ScheduledExecutorService executor = Executors.newScheduledThreadPool(5);
 		
+		// on Java 21 or later, blocking RPC could run on virtual threads instead
+//		ScheduledExecutorService executor = boomflow.common.worker.DispatchingScheduledExecutor.newVirtualThreadExecutor();
+		
 		// one extra thread required for transaction relayer
 //		TransactionRelayer relayer = new TransactionRelayer(executor);
 //		relayer.addServer("http://test1.confluxrpc.org");
@@ -0,0 +1,69 @@
+package boomflow.common;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import boomflow.eip712.TypedDataFixtures;
+import boomflow.eip712.core.TypedData;
+
+/**
+ * Benchmarks to validate signature.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class SignBenchmark {
+	
+	private byte[] hash;
+	private String signature;
+	private Signature decoded;
+	
+	@Setup
+	public void setup() {
+		SignUtils.setRecoverer(SignatureRecoverer.web3j());
+		SignUtils.setCache(null);
+		
+		TypedData data = TypedDataFixtures.create("Order");
+		this.hash = data.hash();
+		this.signature = data.signature();
+		this.decoded = Signature.decode(this.signature);
+	}
+	
+	@Benchmark
+	public void validate() {
+		SignUtils.validate(TypedDataFixtures.SIGNER, this.signature, this.hash, false);
+	}
+	
+	/**
+	 * Validates the decoded signature, which excludes HEX decoding.
+	 */
+	@Benchmark
+	public void validateDecoded() {
+		SignUtils.validate(TypedDataFixtures.SIGNER, this.decoded, this.hash, false);
+	}
+	
+	@Benchmark
+	public void validateSignature() {
+		Validators.validateSignature(this.signature);
+	}
+	
+	@Threads(Threads.MAX)
+	public static class MultiThread extends SignBenchmark {
+	}
+
+}
@@ -0,0 +1,73 @@
+package boomflow.eip712;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import boomflow.common.EncodeUtils;
+
+/**
+ * Benchmarks to ABI encode settlement calldata.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class EncodeBenchmark {
+	
+	@Param({ "Position", "Withdraw" })
+	public String type;
+	
+	private String method;
+	private byte[] selector;
+	private TypedPosition position;
+	private TypedWithdraw withdraw;
+	
+	@Setup
+	public void setup() {
+		if (this.type.equals("Position")) {
+			this.method = "updatePosition";
+			this.selector = EncodeUtils.selector(this.method, TypedPosition.ABI_TYPE);
+			this.position = (TypedPosition) TypedDataFixtures.create(this.type);
+		} else {
+			this.method = "withdraw";
+			this.selector = EncodeUtils.selector(this.method, TypedWithdraw.ABI_TYPE);
+			this.withdraw = (TypedWithdraw) TypedDataFixtures.create(this.type);
+		}
+	}
+	
+	/**
+	 * Encodes calldata via web3j <code>FunctionEncoder</code>.
+	 */
+	@Benchmark
+	public String encode() {
+		return EncodeUtils.encode(this.method, this.position != null ? this.position : this.withdraw);
+	}
+	
+	/**
+	 * Encodes calldata via generated codec with cached selector, as settlements do.
+	 */
+	@Benchmark
+	public byte[] encodeCall() {
+		return this.position != null ? this.position.encodeCall(this.selector) : this.withdraw.encodeCall(this.selector);
+	}
+	
+	@Threads(Threads.MAX)
+	public static class MultiThread extends EncodeBenchmark {
+	}
+
+}
@@ -0,0 +1,65 @@
+package boomflow.eip712;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import boomflow.eip712.core.Template;
+import boomflow.eip712.core.TypedData;
+
+/**
+ * Benchmarks to hash and validate every typed data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class TypedDataBenchmark {
+	
+	@Param({ "Order", "OrderCancellation", "AdjustMarginRequest", "AdjustMarginRateRequest", "Position", "Withdraw", "WithdrawUser" })
+	public String type;
+	
+	private TypedData data;
+	
+	@Setup
+	public void setup() {
+		this.data = TypedDataFixtures.create(this.type);
+	}
+	
+	@Benchmark
+	public byte[] hash() {
+		return this.data.hash();
+	}
+	
+	/**
+	 * Hash via JSON template, which is the reference implementation.
+	 */
+	@Benchmark
+	public byte[] hashTemplate() {
+		return new Template(this.data).hash();
+	}
+	
+	@Benchmark
+	public String validate() {
+		return this.data.validate();
+	}
+	
+	@Threads(Threads.MAX)
+	public static class MultiThread extends TypedDataBenchmark {
+	}
+
+}
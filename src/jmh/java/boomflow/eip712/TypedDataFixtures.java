@@ -0,0 +1,77 @@
+package boomflow.eip712;
+
+import java.math.BigInteger;
+
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.Keys;
+import org.web3j.crypto.Sign;
+import org.web3j.utils.Numeric;
+
+import boomflow.common.Address;
+import boomflow.eip712.core.Domain;
+import boomflow.eip712.core.TypedData;
+
+/**
+ * Creates typed data signed by a fixed key for benchmarks.
+ */
+public class TypedDataFixtures {
+	
+	public static final String[] TYPES = {
+			"Order", "OrderCancellation", "AdjustMarginRequest", "AdjustMarginRateRequest", "Position", "Withdraw", "WithdrawUser",
+	};
+	
+	public static final ECKeyPair KEY = ECKeyPair.create(new BigInteger("4a1c3b3a9f5cbb4d5b2c4f3de0f0aa1c9ab3c2e6f2a7d8b1c0e9f8a7b6c5d4e3", 16));
+	public static final Address SIGNER = Address.createEthAddress("0x" + Keys.getAddress(KEY));
+	
+	private static final Address CONTRACT = Address.createEthAddress("0x8a2f4b0c5e6d7a8b9c0d1e2f3a4b5c6d7e8f9a0b");
+	private static final Address TOKEN = Address.createEthAddress("0x1b2c3d4e5f60718293a4b5c6d7e8f90a1b2c3d4e");
+	
+	static {
+		Domain.boomflowAddress = CONTRACT;
+		Domain.defaultChainId = 1029;
+	}
+	
+	/**
+	 * Returns the typed data of specified type, which is signed by <code>KEY</code>.
+	 */
+	public static TypedData create(String type) {
+		// hash is independent of signature
+		String signature = sign(create(type, "0x").hash());
+		return create(type, signature);
+	}
+	
+	public static String sign(byte[] hash) {
+		Sign.SignatureData data = Sign.signMessage(hash, KEY, false);
+		byte[] signature = new byte[65];
+		System.arraycopy(data.getR(), 0, signature, 0, 32);
+		System.arraycopy(data.getS(), 0, signature, 32, 32);
+		signature[64] = data.getV()[0];
+		return Numeric.toHexString(signature);
+	}
+	
+	private static TypedData create(String type, String signature) {
+		BigInteger amount = new BigInteger("1234567890000000000000");
+		
+		switch (type) {
+		case "Order":
+			return new TypedOrder(SIGNER, amount, new BigInteger("35000000000000000000"), 1, -1, 1600000000000L, 3, 1, 2, 10, 8, signature);
+		case "OrderCancellation":
+			return new TypedOrderCancellation(SIGNER, 3, 2097152, 1600000000000L, signature);
+		case "AdjustMarginRequest":
+			return new TypedAdjustMarginRequest(SIGNER, 3, amount.negate(), 1, 1600000000000L, signature);
+		case "AdjustMarginRateRequest":
+			return new TypedAdjustMarginRateRequest(SIGNER, 3, 2, 10, -1, 8, 1600000000000L, signature);
+		case "Position":
+			return new TypedPosition(16, 1, SIGNER, CONTRACT, TOKEN, amount, amount, amount.negate(), amount, amount.negate(),
+					"BTC/USDT", BigInteger.TEN, TOKEN, BigInteger.ONE, SIGNER, signature);
+		case "Withdraw":
+			return new TypedWithdraw(SIGNER, amount, SIGNER, false, 1600000000000L, signature,
+					TOKEN, BigInteger.TEN, CONTRACT, 1600000000001L, CONTRACT, SIGNER, signature);
+		case "WithdrawUser":
+			return new TypedWithdrawUser(SIGNER, amount, SIGNER, false, 1600000000000L, CONTRACT, signature);
+		default:
+			throw new IllegalArgumentException("unknown type " + type);
+		}
+	}
+
+}
@@ -1,6 +1,7 @@
 package boomflow.common;
 
 import java.math.BigInteger;
+import java.util.Arrays;
 
 import org.web3j.crypto.Keys;
 import org.web3j.utils.Numeric;
@@ -17,6 +18,11 @@ public interface Address {
 	
 	boolean equals(BigInteger pubKey);
 	
+	/**
+	 * Indicates whether this address matches the specified 20 bytes address recovered from signature.
+	 */
+	boolean equals(byte[] recoveredAddress);
+	
 	static Address createCfxAddress(String base32Address) throws AddressException {
 		return new ConfluxAddress(base32Address);
 	}
@@ -30,9 +36,11 @@ public interface Address {
 class ConfluxAddress implements Address {
 	
 	private CfxAddress address;
+	private byte[] bytes;
 	
 	public ConfluxAddress(String base32Address) throws AddressException {
 		this.address = new CfxAddress(base32Address);
+		this.bytes = Numeric.hexStringToByteArray(this.address.getHexAddress());
 	}
 	
 	@Override
@@ -51,6 +59,26 @@ class ConfluxAddress implements Address {
 		return this.address.getHexAddress().equalsIgnoreCase(recoveredAddress);
 	}
 	
+	@Override
+	public boolean equals(byte[] recoveredAddress) {
+		if (recoveredAddress == null || recoveredAddress.length != this.bytes.length || recoveredAddress.length == 0) {
+			return false;
+		}
+		
+		// normalize as user address type, i.e. 0x1 prefixed.
+		if ((this.bytes[0] & 0xFF) != ((recoveredAddress[0] & 0x0F) | 0x10)) {
+			return false;
+		}
+		
+		for (int i = 1; i < this.bytes.length; i++) {
+			if (this.bytes[i] != recoveredAddress[i]) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
 	@Override
 	public String toString() {
 		return this.address.getAddress();
@@ -61,6 +89,7 @@ class ConfluxAddress implements Address {
 class EthAddress implements Address {
 	
 	private String address;
+	private byte[] bytes;
 	
 	public EthAddress(String hex40Address) {
 		this.address = hex40Address;
@@ -83,6 +112,16 @@ class EthAddress implements Address {
 		return this.address.equalsIgnoreCase(recoveredAddress);
 	}
 
+	@Override
+	public boolean equals(byte[] recoveredAddress) {
+		// parse lazily, since address may be created without validation
+		if (this.bytes == null) {
+			this.bytes = Numeric.hexStringToByteArray(this.address);
+		}
+		
+		return Arrays.equals(this.bytes, recoveredAddress);
+	}
+
 	@Override
 	public String toString() {
 		return this.address;
@@ -1,21 +1,40 @@
 package boomflow.common;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.web3j.abi.FunctionEncoder;
 import org.web3j.abi.datatypes.DynamicBytes;
 import org.web3j.abi.datatypes.Function;
 import org.web3j.abi.datatypes.Type;
+import org.web3j.crypto.Hash;
 import org.web3j.utils.Numeric;
 
 public class EncodeUtils {
 	
+	// method signature => 4 bytes selector
+	private static final ConcurrentMap<String, byte[]> SELECTORS = new ConcurrentHashMap<String, byte[]>();
+	
 	public static String encode(String method, Type<?>... params) {
 		Function func = new Function(method, Arrays.asList(params), Collections.emptyList());
 		return FunctionEncoder.encode(func);
 	}
 	
+	/**
+	 * Returns the 4 bytes function selector, which is computed only once for the same signature.
+	 * Note, the returned array should not be modified.
+	 * 
+	 * @param method function name.
+	 * @param types canonical ABI types of parameters, e.g. <code>uint256</code> or tuple <code>(address,bytes)</code>.
+	 */
+	public static byte[] selector(String method, String... types) {
+		String signature = method + "(" + String.join(",", types) + ")";
+		return SELECTORS.computeIfAbsent(signature, key -> Arrays.copyOf(Hash.sha3(key.getBytes(StandardCharsets.UTF_8)), 4));
+	}
+	
 	public static DynamicBytes hex2Bytes(String hex) {
 		return new DynamicBytes(Numeric.hexStringToByteArray(hex));
 	}
@@ -0,0 +1,202 @@
+package boomflow.common;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.web3j.crypto.Credentials;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.Hash;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.crypto.Sign;
+import org.web3j.tx.ChainIdLong;
+import org.web3j.utils.Numeric;
+
+/**
+ * EthTransactionSigner signs legacy transactions on bytes end to end: fields are RLP encoded
+ * into a reusable buffer, and keccak is computed only once over the raw bytes of signed transaction.
+ * HEX is only produced on demand, e.g. to send via JSON-RPC.
+ *
+ * The output is the same as <code>RawTransactionManager.sign</code>. Note, it is not thread safe.
+ */
+public class EthTransactionSigner {
+
+	// maximum size of RLP list header
+	private static final int HEADER_SIZE = 9;
+
+	private ECKeyPair keyPair;
+	private long chainId;
+
+	private byte[] buffer = new byte[1024];
+	private int position;
+
+	public EthTransactionSigner(Credentials credentials) {
+		this(credentials, ChainIdLong.NONE);
+	}
+
+	/**
+	 * Create a signer with EIP155 chain id, or <code>ChainIdLong.NONE</code> to not protect replay.
+	 */
+	public EthTransactionSigner(Credentials credentials, long chainId) {
+		this.keyPair = credentials.getEcKeyPair();
+		this.chainId = chainId;
+	}
+
+	/**
+	 * Signs the specified transaction.
+	 *
+	 * @param tx transaction to sign.
+	 * @param data calldata of transaction in bytes, so as to not decode from HEX again.
+	 */
+	public SignedTransaction sign(RawTransaction tx, byte[] data) {
+		Sign.SignatureData signature;
+
+		if (this.chainId > ChainIdLong.NONE) {
+			int offset = this.encode(tx, data, BigInteger.valueOf(this.chainId).toByteArray(), null, null);
+			signature = Sign.signMessage(Hash.sha3(this.buffer, offset, this.position - offset), this.keyPair, false);
+
+			long v = signature.getV()[0] - 27 + this.chainId * 2 + 35;
+			signature = new Sign.SignatureData(Numeric.toBytesPadded(BigInteger.valueOf(v), 8), signature.getR(), signature.getS());
+		} else {
+			int offset = this.encode(tx, data, null, null, null);
+			signature = Sign.signMessage(Hash.sha3(this.buffer, offset, this.position - offset), this.keyPair, false);
+		}
+
+		int offset = this.encode(tx, data, signature.getV(), signature.getR(), signature.getS());
+		byte[] raw = Arrays.copyOfRange(this.buffer, offset, this.position);
+
+		return new SignedTransaction(raw, Hash.sha3(raw));
+	}
+
+	/**
+	 * RLP encodes transaction fields into buffer, and returns the offset of encoded list.
+	 */
+	private int encode(RawTransaction tx, byte[] data, byte[] v, byte[] r, byte[] s) {
+		this.position = HEADER_SIZE;
+		this.ensureCapacity(HEADER_SIZE + 160 + data.length);
+
+		this.writeInteger(tx.getNonce());
+		this.writeInteger(tx.getGasPrice());
+		this.writeInteger(tx.getGasLimit());
+
+		String to = tx.getTo();
+		if (to == null || to.isEmpty()) {
+			this.writeString(new byte[0]);
+		} else {
+			this.writeString(Numeric.hexStringToByteArray(to));
+		}
+
+		this.writeInteger(tx.getValue());
+		this.writeString(data);
+
+		// chain id or signature
+		if (v != null) {
+			this.writeString(trimLeadingZeroes(v));
+			this.writeString(r == null ? new byte[0] : trimLeadingZeroes(r));
+			this.writeString(s == null ? new byte[0] : trimLeadingZeroes(s));
+		}
+
+		int length = this.position - HEADER_SIZE;
+
+		if (length <= 55) {
+			this.buffer[HEADER_SIZE - 1] = (byte) (0xC0 + length);
+			return HEADER_SIZE - 1;
+		}
+
+		int lengthSize = (Integer.SIZE - Integer.numberOfLeadingZeros(length) + 7) / 8;
+		int offset = HEADER_SIZE - 1 - lengthSize;
+		this.buffer[offset] = (byte) (0xF7 + lengthSize);
+		for (int i = lengthSize; i > 0; i--, length >>>= 8) {
+			this.buffer[offset + i] = (byte) length;
+		}
+
+		return offset;
+	}
+
+	private void writeInteger(BigInteger value) {
+		if (value == null || value.signum() == 0) {
+			this.writeString(new byte[0]);
+		} else {
+			this.writeString(trimLeadingZeroes(value.toByteArray()));
+		}
+	}
+
+	private void writeString(byte[] value) {
+		this.ensureCapacity(this.position + 9 + value.length);
+
+		if (value.length == 1 && (value[0] & 0xFF) < 0x80) {
+			this.buffer[this.position++] = value[0];
+			return;
+		}
+
+		if (value.length <= 55) {
+			this.buffer[this.position++] = (byte) (0x80 + value.length);
+		} else {
+			int lengthSize = (Integer.SIZE - Integer.numberOfLeadingZeros(value.length) + 7) / 8;
+			this.buffer[this.position++] = (byte) (0xB7 + lengthSize);
+			for (int i = lengthSize - 1; i >= 0; i--) {
+				this.buffer[this.position++] = (byte) (value.length >>> (8 * i));
+			}
+		}
+
+		System.arraycopy(value, 0, this.buffer, this.position, value.length);
+		this.position += value.length;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > this.buffer.length) {
+			this.buffer = Arrays.copyOf(this.buffer, Math.max(capacity, this.buffer.length * 2));
+		}
+	}
+
+	private static byte[] trimLeadingZeroes(byte[] bytes) {
+		int offset = 0;
+		while (offset < bytes.length && bytes[offset] == 0) {
+			offset++;
+		}
+
+		return offset == 0 ? bytes : Arrays.copyOfRange(bytes, offset, bytes.length);
+	}
+
+	/**
+	 * Signed transaction in bytes, and HEX is produced on demand only once.
+	 */
+	public static class SignedTransaction {
+
+		private byte[] raw;
+		private byte[] hash;
+
+		private String rawHex;
+		private String hashHex;
+
+		public SignedTransaction(byte[] raw, byte[] hash) {
+			this.raw = raw;
+			this.hash = hash;
+		}
+
+		public byte[] getRaw() {
+			return raw;
+		}
+
+		public byte[] getHash() {
+			return hash;
+		}
+
+		public String getRawHex() {
+			if (this.rawHex == null) {
+				this.rawHex = Numeric.toHexString(this.raw);
+			}
+
+			return this.rawHex;
+		}
+
+		public String getHashHex() {
+			if (this.hashHex == null) {
+				this.hashHex = Numeric.toHexString(this.hash);
+			}
+
+			return this.hashHex;
+		}
+
+	}
+
+}
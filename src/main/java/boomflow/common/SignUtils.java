@@ -1,40 +1,90 @@
 package boomflow.common;
 
-import java.math.BigInteger;
-import java.util.Arrays;
+import java.util.Iterator;
+import java.util.ServiceLoader;
 
-import org.web3j.crypto.Sign;
-import org.web3j.crypto.Sign.SignatureData;
-import org.web3j.utils.Numeric;
+import org.web3j.crypto.Hash;
 
 /**
  * Utilities to validate signature.
  */
 public class SignUtils {
 	
+	private static volatile SignatureRecoverer recoverer = loadRecoverer();
+	
+	// optional cache of successful verifications
+	private static volatile SignatureCache cache;
+	
+	// reused to decode signature in HEX format
+	private static ThreadLocal<Signature> signatures = ThreadLocal.withInitial(Signature::new);
+	
+	/**
+	 * Load custom recoverer via <code>ServiceLoader</code> if any. Otherwise, use web3j.
+	 */
+	private static SignatureRecoverer loadRecoverer() {
+		Iterator<SignatureRecoverer> custom = ServiceLoader.load(SignatureRecoverer.class).iterator();
+		return custom.hasNext() ? custom.next() : SignatureRecoverer.web3j();
+	}
+	
+	public static SignatureRecoverer getRecoverer() {
+		return recoverer;
+	}
+	
+	public static void setRecoverer(SignatureRecoverer recoverer) {
+		if (recoverer == null) {
+			throw new NullPointerException("recoverer is null");
+		}
+		
+		SignUtils.recoverer = recoverer;
+	}
+	
+	public static SignatureCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * Enables the cache of successful verifications for signatures in HEX format, or disables if <code>null</code>.
+	 */
+	public static void setCache(SignatureCache cache) {
+		SignUtils.cache = cache;
+	}
+	
 	public static void validate(Address signerAddress, String sigHex, byte[] message) throws ValidationException {
 		validate(signerAddress, sigHex, message, true);
 	}
 	
 	public static void validate(Address signerAddress, String sigHex, byte[] message, boolean needToHash) throws ValidationException {
-		Validators.validateSignature(sigHex);
+		Signature signature = signatures.get();
+		signature.parse(sigHex);
+		
+		byte[] hash = needToHash ? Hash.sha3(message) : message;
+		
+		SignatureCache cache = SignUtils.cache;
+		if (cache != null && cache.contains(hash, sigHex, signerAddress)) {
+			return;
+		}
+		
+		validate(signerAddress, signature, hash, false);
+		
+		if (cache != null) {
+			cache.put(hash, sigHex, signerAddress);
+		}
+	}
 		
-		byte[] sigBytes = Numeric.hexStringToByteArray(sigHex);
-		SignatureData signatureData = new SignatureData(
-				sigBytes[64],							// V
-				Arrays.copyOfRange(sigBytes, 0, 32),	// R
-				Arrays.copyOfRange(sigBytes, 32, 64));	// S
+	/**
+	 * Validates the decoded signature, which avoids to decode signature in HEX format again.
+	 */
+	public static void validate(Address signerAddress, Signature signature, byte[] message, boolean needToHash) throws ValidationException {
+		byte[] hash = needToHash ? Hash.sha3(message) : message;
 		
-		BigInteger pubkey;
+		byte[] recoveredAddress;
 		try {
-			pubkey = needToHash
-					? Sign.signedMessageToKey(message, signatureData)
-					: Sign.signedMessageHashToKey(message, signatureData);
+			recoveredAddress = recoverer.recover(hash, signature.getR(), signature.getS(), signature.getV());
 		} catch (Exception e) {
 			throw new ValidationException("invalid signature");
 		}
 		
-		if (!signerAddress.equals(pubkey)) {
+		if (!signerAddress.equals(recoveredAddress)) {
 			throw new ValidationException("invalid signature");
 		}
 	}
@@ -0,0 +1,118 @@
+package boomflow.common;
+
+import org.web3j.utils.Numeric;
+
+/**
+ * Signature in HEX format, i.e. 0x || R || S || V, which is validated and decoded in a single pass.
+ *
+ * Instance could be reused to decode another signature, so as to avoid allocation.
+ */
+public class Signature {
+	
+	// 0x + 65 bytes in HEX
+	public static final int HEX_LENGTH = 132;
+	
+	private static final byte[] MAX_S = Numeric.hexStringToByteArray("7FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF5D576E7357A4501DDFE92F46681B20A0");
+	
+	private byte[] r = new byte[32];
+	private byte[] s = new byte[32];
+	private int v;
+	
+	/**
+	 * Validates and decodes the specified signature in HEX format.
+	 */
+	public static Signature decode(String signature) throws ValidationException {
+		Signature decoded = new Signature();
+		decoded.parse(signature);
+		return decoded;
+	}
+	
+	/**
+	 * Validates and decodes the specified signature in HEX format into this instance.
+	 *
+	 * Note, this instance is undefined if any exception thrown.
+	 */
+	public void parse(String signature) throws ValidationException {
+		if (signature == null || signature.isEmpty()) {
+			throw new ValidationException("signature not specified");
+		}
+		
+		if (signature.length() != HEX_LENGTH) {
+			throw new ValidationException("invalid signature length, expect 132 with 0x prefix in HEX format");
+		}
+		
+		if (signature.charAt(0) != '0' || signature.charAt(1) != 'x') {
+			throw new ValidationException("prefix 0x missed");
+		}
+		
+		decode(signature, 2, this.r);
+		decode(signature, 66, this.s);
+		
+		// V is 27 (1B) or 28 (1C)
+		int v = (digit(signature.charAt(130)) << 4) | digit(signature.charAt(131));
+		if (v != 27 && v != 28) {
+			throw new ValidationException("invalid V in signature");
+		}
+		
+		this.v = v;
+		
+		// S should be in the lower half of curve order
+		for (int i = 0; i < 32; i++) {
+			int current = this.s[i] & 0xFF;
+			int max = MAX_S[i] & 0xFF;
+			
+			if (current != max) {
+				if (current > max) {
+					throw new ValidationException("invalid S in signature");
+				}
+				
+				break;
+			}
+		}
+	}
+	
+	private static void decode(String hex, int offset, byte[] out) throws ValidationException {
+		for (int i = 0; i < out.length; i++) {
+			int pos = offset + 2 * i;
+			out[i] = (byte) ((digit(hex.charAt(pos)) << 4) | digit(hex.charAt(pos + 1)));
+		}
+	}
+	
+	private static int digit(char ch) throws ValidationException {
+		if (ch >= '0' && ch <= '9') {
+			return ch - '0';
+		}
+		
+		if (ch >= 'a' && ch <= 'f') {
+			return ch - 'a' + 10;
+		}
+		
+		if (ch >= 'A' && ch <= 'F') {
+			return ch - 'A' + 10;
+		}
+		
+		throw new ValidationException("invalid HEX character");
+	}
+	
+	/**
+	 * Returns the 32 bytes R, which should not be modified.
+	 */
+	public byte[] getR() {
+		return r;
+	}
+	
+	/**
+	 * Returns the 32 bytes S, which should not be modified.
+	 */
+	public byte[] getS() {
+		return s;
+	}
+	
+	/**
+	 * Returns V, which is 27 or 28.
+	 */
+	public int getV() {
+		return v;
+	}
+
+}
@@ -0,0 +1,183 @@
+package boomflow.common;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SignatureCache remembers the successful verifications of (hash, signature, signer),
+ * so that a re-submitted request (e.g. client retry) is validated in O(1) without ecrecover.
+ *
+ * Entries expire after the specified TTL since added, and the oldest entries are evicted
+ * once the maximum size exceeded.
+ */
+public class SignatureCache {
+	
+	private int maxSize;
+	private long ttlNanos;
+	
+	// key => expiration time in nanoseconds
+	private ConcurrentMap<Key, Long> entries = new ConcurrentHashMap<Key, Long>();
+	// keys in the order of insertion or refresh, which is also the order of expiration.
+	private ConcurrentLinkedQueue<Slot> keys = new ConcurrentLinkedQueue<Slot>();
+	private AtomicInteger size = new AtomicInteger();
+	
+	private LongAdder hits = new LongAdder();
+	private LongAdder misses = new LongAdder();
+	
+	/**
+	 * Create an instance of SignatureCache.
+	 * @param maxSize maximum number of verifications to cache.
+	 * @param ttl time to live since cached.
+	 * @param unit time unit of TTL.
+	 */
+	public SignatureCache(int maxSize, long ttl, TimeUnit unit) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize should be greater than 0");
+		}
+		
+		if (ttl <= 0) {
+			throw new IllegalArgumentException("ttl should be greater than 0");
+		}
+		
+		this.maxSize = maxSize;
+		this.ttlNanos = unit.toNanos(ttl);
+	}
+	
+	/**
+	 * Indicates whether the specified signature had been verified for the hash and signer.
+	 */
+	public boolean contains(byte[] hash, String signature, Address signer) {
+		Long expiration = this.entries.get(new Key(hash, signature, signer));
+		
+		if (expiration != null && expiration - System.nanoTime() > 0) {
+			this.hits.increment();
+			return true;
+		}
+		
+		this.misses.increment();
+		return false;
+	}
+	
+	/**
+	 * Remembers a successful verification.
+	 */
+	public void put(byte[] hash, String signature, Address signer) {
+		Key key = new Key(hash.clone(), signature, signer);
+		long expiration = System.nanoTime() + this.ttlNanos;
+		
+		if (this.entries.put(key, expiration) == null) {
+			this.size.incrementAndGet();
+		}
+		
+		// queue again if refreshed, and the previous slot becomes stale
+		this.keys.offer(new Slot(key, expiration));
+		
+		this.evict();
+	}
+	
+	/**
+	 * Evicts expired entries, and the oldest entries if maximum size exceeded.
+	 */
+	private void evict() {
+		long now = System.nanoTime();
+		
+		while (true) {
+			Slot oldest = this.keys.peek();
+			if (oldest == null) {
+				break;
+			}
+			
+			Long expiration = this.entries.get(oldest.key);
+			boolean stale = expiration == null || expiration != oldest.expiration;
+			if (!stale && this.size.get() <= this.maxSize && expiration - now > 0) {
+				break;
+			}
+			
+			Slot slot = this.keys.poll();
+			if (slot == null) {
+				break;
+			}
+			
+			// only remove the entry if not refreshed since queued
+			if (this.entries.remove(slot.key, slot.expiration)) {
+				this.size.decrementAndGet();
+			}
+		}
+	}
+	
+	public void clear() {
+		Slot slot;
+		while ((slot = this.keys.poll()) != null) {
+			if (this.entries.remove(slot.key) != null) {
+				this.size.decrementAndGet();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of cached verifications, including the expired ones not evicted yet.
+	 */
+	public int size() {
+		return this.size.get();
+	}
+	
+	public long getHits() {
+		return this.hits.sum();
+	}
+	
+	public long getMisses() {
+		return this.misses.sum();
+	}
+	
+	private static class Slot {
+		
+		private Key key;
+		private long expiration;
+		
+		Slot(Key key, long expiration) {
+			this.key = key;
+			this.expiration = expiration;
+		}
+	
+	}
+	
+	private static class Key {
+		
+		private byte[] hash;
+		private String signature;
+		private String signer;
+		private int hashCode;
+		
+		Key(byte[] hash, String signature, Address signer) {
+			this.hash = hash;
+			this.signature = signature;
+			this.signer = signer.toString();
+			this.hashCode = 31 * (31 * Arrays.hashCode(hash) + signature.hashCode()) + this.signer.hashCode();
+		}
+		
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			
+			Key other = (Key) obj;
+			return this.hashCode == other.hashCode
+					&& Arrays.equals(this.hash, other.hash)
+					&& this.signature.equals(other.signature)
+					&& this.signer.equals(other.signer);
+		}
+	
+	}
+
+}
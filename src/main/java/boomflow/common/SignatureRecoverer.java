@@ -0,0 +1,58 @@
+package boomflow.common;
+
+import java.math.BigInteger;
+
+import org.web3j.crypto.ECDSASignature;
+import org.web3j.crypto.Keys;
+import org.web3j.crypto.Sign;
+import org.web3j.utils.Numeric;
+
+/**
+ * SignatureRecoverer recovers the signer address from a signed message hash, a.k.a. ecrecover.
+ *
+ * Application could provide a custom implementation via <code>ServiceLoader</code>
+ * or <code>SignUtils.setRecoverer</code>.
+ */
+public interface SignatureRecoverer {
+	
+	/**
+	 * Recover the signer address from the specified message hash and signature.
+	 *
+	 * @param messageHash 32 bytes hash of message.
+	 * @param r 32 bytes R in signature.
+	 * @param s 32 bytes S in signature.
+	 * @param v V in signature, which is 27 or 28 (0 or 1 is also accepted).
+	 * @return 20 bytes signer address, or <code>null</code> if failed to recover.
+	 */
+	byte[] recover(byte[] messageHash, byte[] r, byte[] s, int v);
+	
+	/**
+	 * Returns an implementation based on <code>Sign</code> of web3j, which is used by default.
+	 */
+	static SignatureRecoverer web3j() {
+		return Web3jRecoverer.INSTANCE;
+	}
+
+}
+
+class Web3jRecoverer implements SignatureRecoverer {
+	
+	static final Web3jRecoverer INSTANCE = new Web3jRecoverer();
+	
+	@Override
+	public byte[] recover(byte[] messageHash, byte[] r, byte[] s, int v) {
+		int recId = v >= 27 ? v - 27 : v;
+		if (recId < 0 || recId > 3) {
+			throw new IllegalArgumentException("invalid V in signature");
+		}
+		
+		ECDSASignature sig = new ECDSASignature(new BigInteger(1, r), new BigInteger(1, s));
+		BigInteger pubKey = Sign.recoverFromSignature(recId, sig, messageHash);
+		if (pubKey == null) {
+			return null;
+		}
+		
+		return Numeric.hexStringToByteArray(Keys.getAddress(pubKey));
+	}
+
+}
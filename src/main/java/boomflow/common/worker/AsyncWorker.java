@@ -1,10 +1,18 @@
 package boomflow.common.worker;
 
+import java.util.ArrayList;
 import java.util.Deque;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import boomflow.event.Event;
+import boomflow.event.Handler;
 
 /**
  * Asynchronous worker to handle data in sequence.
@@ -13,15 +21,70 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public abstract class AsyncWorker<T> implements Runnable {
 	
+	/**
+	 * Policy to handle the submitted data when queue is full.
+	 */
+	public static enum OverflowPolicy {
+		/**
+		 * Wait for free capacity until timeout, and then throw <code>RejectedExecutionException</code>.
+		 */
+		Block,
+		/**
+		 * Throw <code>RejectedExecutionException</code> immediately.
+		 */
+		Reject,
+		/**
+		 * Pass the data to overflow handler, e.g. to persist in caller's store and submit again later.
+		 */
+		Spill,
+	}
+	
+	private static final long RETRY_TICK_MILLIS = 10;
+	private static final int RETRY_WHEEL_SIZE = 512;
+	
 	private ScheduledExecutorService executor;
 	
-	private Deque<T> queue = new ConcurrentLinkedDeque<T>();
+	private WorkQueue<T> queue = new WorkQueue<T>();
 	private AtomicBoolean working = new AtomicBoolean();
-	private Object lock = new Object();
+	
+	private volatile WorkerMetrics metrics = WorkerMetrics.NONE;
 	
 	private AtomicBoolean paused = new AtomicBoolean();
 	private long pauseIntervalMillis = 3000;
 	
+	// retry data independently or in order
+	private volatile boolean independentRetry;
+	// delayed data to retry independently, which is created on demand
+	private volatile TimingWheel<T> retryWheel;
+	private AtomicBoolean retryTicking = new AtomicBoolean();
+	
+	// unbounded by default
+	private int capacity = Integer.MAX_VALUE;
+	private OverflowPolicy overflowPolicy = OverflowPolicy.Block;
+	private long blockTimeoutMillis = 3000;
+	private Handler<T> overflowHandler;
+	// producers that wait for free capacity
+	private AtomicInteger blocked = new AtomicInteger();
+	private Object capacityLock = new Object();
+	
+	private int highWatermark = Integer.MAX_VALUE;
+	private int lowWatermark = 0;
+	private AtomicBoolean aboveHighWatermark = new AtomicBoolean();
+	
+	// optional journal to replay unfinished data when restarted
+	private volatile Journal<T> journal;
+	// journal ids of data in queue, which may be merged in batch
+	private Map<T, List<Long>> journalIds = new IdentityHashMap<T, List<Long>>();
+	
+	/**
+	 * Fired with the number of pending data when it reaches the high watermark.
+	 */
+	public final Event<Integer> onHighWatermark = new Event<Integer>();
+	/**
+	 * Fired with the number of pending data when it drops to the low watermark after high watermark reached.
+	 */
+	public final Event<Integer> onLowWatermark = new Event<Integer>();
+	
 	protected AsyncWorker(ScheduledExecutorService executor) {
 		this.executor = executor;
 	}
@@ -30,7 +93,15 @@ public abstract class AsyncWorker<T> implements Runnable {
 	 * Returns the number of pending data to handle.
 	 */
 	public int getPendingCount() {
-		return this.queue.size();
+		return this.queue.size() + this.getDelayedCount();
+	}
+	
+	/**
+	 * Returns the number of data delayed to retry independently.
+	 */
+	public int getDelayedCount() {
+		TimingWheel<T> wheel = this.retryWheel;
+		return wheel == null ? 0 : wheel.size();
 	}
 	
 	/**
@@ -69,13 +140,225 @@ public abstract class AsyncWorker<T> implements Runnable {
 		this.pauseIntervalMillis = pauseIntervalMillis;
 	}
 	
+	public boolean isIndependentRetry() {
+		return independentRetry;
+	}
+	
+	/**
+	 * Enable to retry data independently. By default, data to retry (pending or failed) is put back
+	 * in front of queue, and the whole worker is delayed, which blocks all data behind. Once enabled,
+	 * data to retry is delayed with its own deadline, and worker continues to handle other data.
+	 *
+	 * Note, do not enable if data must be handled in strict order, e.g. nonce-ordered settlement.
+	 */
+	public synchronized void setIndependentRetry(boolean independentRetry) {
+		if (independentRetry && this.retryWheel == null) {
+			this.retryWheel = new TimingWheel<T>(RETRY_TICK_MILLIS, RETRY_WHEEL_SIZE);
+		}
+		
+		this.independentRetry = independentRetry;
+	}
+	
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Set the maximum number of pending data, which is unbounded by default. Note, data submitted
+	 * in front of queue (e.g. to retry) is not limited, and the capacity may be exceeded slightly
+	 * by concurrent producers.
+	 */
+	public void setCapacity(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity should be greater than 0");
+		}
+		
+		this.capacity = capacity;
+	}
+	
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+	
+	/**
+	 * Set the policy to handle submitted data when queue is full. By default, it is <code>Block</code>.
+	 * @param blockTimeoutMillis maximum time in milliseconds to wait for <code>Block</code> policy.
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy, long blockTimeoutMillis) {
+		if (overflowPolicy == OverflowPolicy.Spill && this.overflowHandler == null) {
+			throw new IllegalStateException("overflow handler not set");
+		}
+		
+		this.overflowPolicy = overflowPolicy;
+		this.blockTimeoutMillis = blockTimeoutMillis;
+	}
+	
+	/**
+	 * Set the handler to spill data when queue is full, which is required by <code>Spill</code> policy.
+	 */
+	public void setOverflowHandler(Handler<T> overflowHandler) {
+		this.overflowHandler = overflowHandler;
+	}
+	
+	/**
+	 * Set the watermarks of pending data to fire <code>onHighWatermark</code> and <code>onLowWatermark</code>
+	 * events, e.g. to slow down upstream intake.
+	 */
+	public void setWatermarks(int highWatermark, int lowWatermark) {
+		if (lowWatermark < 0 || lowWatermark >= highWatermark) {
+			throw new IllegalArgumentException("low watermark should be in range [0, highWatermark)");
+		}
+		
+		this.highWatermark = highWatermark;
+		this.lowWatermark = lowWatermark;
+	}
+	
+	public WorkerMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Set the metrics to instrument worker, or disable if <code>null</code>.
+	 */
+	public void setMetrics(WorkerMetrics metrics) {
+		this.metrics = metrics == null ? WorkerMetrics.NONE : metrics;
+	}
+	
+	public Journal<T> getJournal() {
+		return journal;
+	}
+	
+	/**
+	 * Set the journal to append submitted data and completion markers, so that unfinished data
+	 * could be replayed when restarted. The unfinished data in journal is appended to queue
+	 * immediately, so it should be set before any data submitted.
+	 */
+	public void setJournal(Journal<T> journal) {
+		this.journal = journal;
+		
+		if (journal == null) {
+			return;
+		}
+		
+		List<Map.Entry<Long, T>> unfinished = journal.takeUnfinished();
+		if (unfinished.isEmpty()) {
+			return;
+		}
+		
+		for (Map.Entry<Long, T> entry : unfinished) {
+			this.trackJournal(entry.getValue(), entry.getKey());
+			this.queue.addLast(entry.getValue());
+		}
+		
+		if (this.working.compareAndSet(false, true)) {
+			this.executor.submit(this);
+		}
+	}
+	
+	private void trackJournal(T data, long id) {
+		synchronized (this.journalIds) {
+			this.journalIds.computeIfAbsent(data, k -> new ArrayList<Long>(1)).add(id);
+		}
+	}
+	
+	/**
+	 * Moves journal ids of the merged data to the specified data, e.g. batched.
+	 */
+	void mergeJournal(T data, T merged) {
+		if (this.journal == null) {
+			return;
+		}
+		
+		synchronized (this.journalIds) {
+			List<Long> ids = this.journalIds.remove(merged);
+			if (ids != null) {
+				this.journalIds.computeIfAbsent(data, k -> new ArrayList<Long>(ids.size())).addAll(ids);
+			}
+		}
+	}
+	
+	/**
+	 * Appends the current state of the specified data to journal, and completes the previous records,
+	 * so that the updated data (e.g. with transaction sent) is replayed when restarted.
+	 */
+	protected void updateJournal(T data) {
+		Journal<T> journal = this.journal;
+		if (journal == null) {
+			return;
+		}
+		
+		// append before completed, so that data is always replayable
+		List<Long> current = new ArrayList<Long>(1);
+		current.add(journal.append(data));
+		
+		List<Long> ids;
+		synchronized (this.journalIds) {
+			ids = this.journalIds.put(data, current);
+		}
+		
+		if (ids != null) {
+			for (long id : ids) {
+				journal.complete(id);
+			}
+		}
+	}
+	
+	/**
+	 * Indicates whether the specified data is finished once handled successfully, in which case
+	 * its journal records are completed. Override to complete later via <code>completeJournal</code>,
+	 * e.g. until transaction confirmed.
+	 */
+	protected boolean isFinishedOnDone(T data) {
+		return true;
+	}
+	
+	/**
+	 * Appends completion markers of the specified data, which is finished and not replayed any more.
+	 */
+	protected void completeJournal(T data) {
+		Journal<T> journal = this.journal;
+		if (journal == null) {
+			return;
+		}
+		
+		List<Long> ids;
+		synchronized (this.journalIds) {
+			ids = this.journalIds.remove(data);
+		}
+		
+		if (ids != null) {
+			for (long id : ids) {
+				journal.complete(id);
+			}
+		}
+	}
+	
 	/**
 	 * Handle the specified data from queue.
 	 */
 	protected abstract void doWork(T data) throws PendingException, Exception;
 	
 	/**
-	 * Handle the failure case except the PendingException.
+	 * Handle the specified data from queue and returns the result. By default, it delegates to
+	 * <code>doWork</code>, and <code>PendingException</code> is converted to retry result.
+	 *
+	 * Override to retry without exception, e.g. <code>WorkResult.retryAfter</code>, in which case
+	 * <code>doWork</code> is not called.
+	 */
+	protected WorkResult handle(T data) {
+		try {
+			this.doWork(data);
+			return WorkResult.DONE;
+		} catch (PendingException e) {
+			return WorkResult.retryAfter(e.getTimeoutMillis(), e.getReason());
+		} catch (Exception e) {
+			return WorkResult.fail(e);
+		}
+	}
+	
+	/**
+	 * Handle the failure case except the PendingException. The data is <code>null</code> if failed
+	 * to prepare data from queue.
 	 */
 	protected abstract void onFailure(T data, Exception e);
 	
@@ -88,20 +371,135 @@ public abstract class AsyncWorker<T> implements Runnable {
 	
 	/**
 	 * Append the specified data in the front or end of queue to handle asynchronously.
+	 * 
+	 * If queue is full, data is handled by the overflow policy, and
+	 * <code>RejectedExecutionException</code> may be thrown.
 	 */
 	public void submit(T data, boolean asFirst) {
-		synchronized (this.lock) {
-			if (asFirst) {
-				this.queue.addFirst(data);
-			} else {
-				this.queue.addLast(data);
-			}
+		if (!asFirst && !this.acquireCapacity(data)) {
+			return;
+		}
+		
+		this.appendJournal(data);
+		
+		if (asFirst) {
+			this.queue.addFirst(data);
+		} else {
+			this.queue.addLast(data);
+		}
+		
+		this.onSubmitted();
+	}
+	
+	/**
+	 * Inserts the specified data in the front of queue at once to handle asynchronously, e.g. to
+	 * handle again in the specified order. Note, <code>submit(data, true)</code> one by one handles
+	 * in reverse order.
+	 */
+	public void submitFirst(List<T> data) {
+		if (data.isEmpty()) {
+			return;
+		}
+		
+		for (T item : data) {
+			this.appendJournal(item);
+		}
+		
+		this.queue.addAllFirst(data);
+		
+		this.onSubmitted();
+	}
+	
+	private void appendJournal(T data) {
+		Journal<T> journal = this.journal;
+		if (journal == null) {
+			return;
+		}
+		
+		boolean tracked;
+		synchronized (this.journalIds) {
+			tracked = this.journalIds.containsKey(data);
+		}
+		
+		// data may be submitted again to retry
+		if (!tracked) {
+			this.trackJournal(data, journal.append(data));
+		}
+	}
+	
+	private void onSubmitted() {
+		int pending = this.queue.size();
+		this.metrics.onSubmitted(pending);
+		
+		if (pending >= this.highWatermark && this.aboveHighWatermark.compareAndSet(false, true)) {
+			this.onHighWatermark.fire(pending);
 		}
 		
 		if (this.working.compareAndSet(false, true)) {
 			this.executor.submit(this);
 		}
 	}
+	
+	/**
+	 * Checks the capacity before submitting the specified data, and returns <code>false</code>
+	 * if data spilled.
+	 */
+	private boolean acquireCapacity(T data) {
+		if (this.queue.size() < this.capacity) {
+			return true;
+		}
+		
+		switch (this.overflowPolicy) {
+		case Spill:
+			this.overflowHandler.handle(data);
+			return false;
+		case Reject:
+			throw new RejectedExecutionException("queue is full");
+		default:
+			break;
+		}
+		
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.blockTimeoutMillis);
+		
+		this.blocked.incrementAndGet();
+		
+		try {
+			synchronized (this.capacityLock) {
+				while (this.queue.size() >= this.capacity) {
+					long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+					if (remaining <= 0) {
+						throw new RejectedExecutionException("queue is full, timeout to wait for free capacity");
+					}
+					
+					this.capacityLock.wait(remaining);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("interrupted to wait for free capacity", e);
+		} finally {
+			this.blocked.decrementAndGet();
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Wakes up blocked producers and fires low watermark event after data removed from queue.
+	 */
+	private void releaseCapacity() {
+		int pending = this.queue.size();
+		
+		if (this.blocked.get() > 0 && pending < this.capacity) {
+			synchronized (this.capacityLock) {
+				this.capacityLock.notifyAll();
+			}
+		}
+		
+		if (pending <= this.lowWatermark && this.aboveHighWatermark.compareAndSet(true, false)) {
+			this.onLowWatermark.fire(pending);
+		}
+	}
 
 	/**
 	 * Handle data from queue.
@@ -120,34 +518,128 @@ public abstract class AsyncWorker<T> implements Runnable {
 		try {
 			data = this.prepareData(this.queue);
 		} catch (PendingException e) {
+			this.metrics.onPending(e.getReason());
+			// data may be removed from queue, e.g. to wait for more data in batch
+			this.releaseCapacity();
 			this.executor.schedule(this, e.getTimeoutMillis(), TimeUnit.MILLISECONDS);
 			return;
+		} catch (RuntimeException e) {
+			// data may be removed from queue, and subclass should handle it in onFailure
+			this.metrics.onFailure(0, e);
+			this.releaseCapacity();
+			this.onFailure(null, e);
+			this.executor.schedule(this, this.pauseIntervalMillis, TimeUnit.MILLISECONDS);
+			return;
+		}
+		
+		// data submitted concurrently may be handled in previous round
+		if (data == null) {
+			this.scheduleNext();
+			return;
+		}
+		
+		this.releaseCapacity();
+		
+		WorkerMetrics metrics = this.metrics;
+		long queuedNanos = this.queue.takeQueuedNanos();
+		if (queuedNanos >= 0) {
+			metrics.onStarted(queuedNanos);
 		}
 		
 		// handle data
-		try {
-			this.doWork(data);
-		} catch (PendingException e) {
+		long startNanos = System.nanoTime();
+		
+		WorkResult result = this.handle(data);
+		
+		switch (result.getStatus()) {
+		case Retry:
+			metrics.onPending(result.getReason());
+			
+			if (this.independentRetry) {
+				this.delay(data, result.getDelayMillis());
+				break;
+			}
+			
 			this.queue.addFirst(data);
-			this.executor.schedule(this, e.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+			this.executor.schedule(this, result.getDelayMillis(), TimeUnit.MILLISECONDS);
 			return;
-		} catch (Exception e) {
+		case Fail:
+			metrics.onFailure(System.nanoTime() - startNanos, result.getError());
+			
+			if (this.independentRetry) {
+				this.onFailure(data, result.getError());
+				this.delay(data, this.pauseIntervalMillis);
+				break;
+			}
+			
 			this.queue.addFirst(data);
-			this.onFailure(data, e);
+			this.onFailure(data, result.getError());
 			this.executor.schedule(this, this.pauseIntervalMillis, TimeUnit.MILLISECONDS);
 			return;
+		default:
+			metrics.onCompleted(System.nanoTime() - startNanos);
+			
+			if (this.isFinishedOnDone(data)) {
+				this.completeJournal(data);
+			}
+			
+			break;
 		}
 		
-		// schedule next if succeeded
-		boolean completed;
-		synchronized (this.lock) {
-			completed = this.queue.isEmpty();
-			if (completed) {
-				this.working.set(false);
+		// schedule next if succeeded or retry independently
+		this.scheduleNext();
+	}
+	
+	/**
+	 * Delays the specified data to retry independently.
+	 */
+	private void delay(T data, long delayMillis) {
+		this.retryWheel.add(data, delayMillis);
+		
+		if (this.retryTicking.compareAndSet(false, true)) {
+			this.executor.schedule(this::tickRetry, RETRY_TICK_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	/**
+	 * Moves expired data from retry wheel to queue, and ticks until no data delayed.
+	 */
+	private void tickRetry() {
+		TimingWheel<T> wheel = this.retryWheel;
+		List<T> expired = wheel.expire();
+		
+		if (!expired.isEmpty()) {
+			for (T data : expired) {
+				this.queue.addLast(data);
+			}
+			
+			if (this.working.compareAndSet(false, true)) {
+				this.executor.submit(this);
 			}
 		}
 		
-		if (!completed) {
+		if (wheel.size() == 0) {
+			this.retryTicking.set(false);
+			
+			// in case of data delayed before ticking flag reset
+			if (wheel.size() == 0 || !this.retryTicking.compareAndSet(false, true)) {
+				return;
+			}
+		}
+		
+		this.executor.schedule(this::tickRetry, RETRY_TICK_MILLIS, TimeUnit.MILLISECONDS);
+	}
+	
+	private void scheduleNext() {
+		if (!this.queue.isEmpty()) {
+			this.executor.submit(this);
+			return;
+		}
+		
+		this.working.set(false);
+		
+		// in case of data submitted before working flag reset
+		if (!this.queue.isEmpty() && this.working.compareAndSet(false, true)) {
 			this.executor.submit(this);
 		}
 	}
@@ -158,9 +650,12 @@ public abstract class AsyncWorker<T> implements Runnable {
 	 * 
 	 * If the data is not ready to handle, do not pop from queue and please throw 
 	 * <code>PendingException</code> to handle the data again later.
+	 *
+	 * @return <code>null</code> if queue is empty, e.g. data submitted concurrently
+	 * has been handled in previous round.
 	 */
 	protected T prepareData(Deque<T> queue) throws PendingException {
-		return queue.removeFirst();
+		return queue.pollFirst();
 	}
 
 }
@@ -2,9 +2,16 @@ package boomflow.common.worker;
 
 import java.util.Deque;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Asynchronous worker to handle data in batch.
+ *
+ * By default, worker waits for more data in a fixed number of times. Once adaptive batching enabled,
+ * worker waits for more data until a linger deadline since the first data of batch arrived, and both
+ * the batch size and linger adapt to the observed arrival rate and latency (see <code>observeLatency</code>).
+ * Generally, batches keep small under light load and grow under heavy load.
  */
 public abstract class BatchWorker<T extends BatchWorker.Batchable> extends AsyncWorker<T> {
 	
@@ -16,6 +23,13 @@ public abstract class BatchWorker<T extends BatchWorker.Batchable> extends Async
 		int size();
 	}
 	
+	// linger should not exceed the fraction of latency, e.g. transaction confirmation latency.
+	private static final int LATENCY_LINGER_RATIO = 10;
+	// weight of new sample in the reciprocal of 8.
+	private static final int EWMA_SHIFT = 3;
+	
+	private static final String WAIT_FOR_BATCH = "wait for more data for a batch";
+	
 	// maximum number of data to handle together.
 	private int batchSize;
 	// number of times to wait for enough data to handle together.
@@ -23,11 +37,27 @@ public abstract class BatchWorker<T extends BatchWorker.Batchable> extends Async
 	// interval to wait for enough data to handle together.
 	private long waitIntervalMillis;
 	
+	// preallocated to wait for enough data to handle together.
+	private PendingException waitForBatch;
+	
 	// current batch data whose size is not enough to handle together.
 	private T currentBatchData;
 	// current countdown to wait for more data to handle together.
 	private int currentCountdown;
 	
+	// maximum linger since the first data of batch arrived, 0 if adaptive batching disabled.
+	private volatile long maxLingerNanos;
+	// adaptive batch size to wait for, in range [1, batchSize].
+	private int targetBatchSize = 1;
+	// time when the first data of current batch arrived.
+	private long currentBatchNanos;
+	
+	private AtomicLong lastArrivalNanos = new AtomicLong();
+	// average interval between arrivals, or Long.MAX_VALUE if unknown.
+	private volatile long arrivalIntervalNanos = Long.MAX_VALUE;
+	// average latency to handle batch, or 0 if unknown.
+	private volatile long latencyNanos;
+	
 	/**
 	 * Create an instance of BatchWorker.
 	 * @param batchSize maximum number of data to handle in a batch.
@@ -41,11 +71,71 @@ public abstract class BatchWorker<T extends BatchWorker.Batchable> extends Async
 		this.waitCountdown = waitCountdown;
 		this.waitIntervalMillis = waitIntervalMillis;
 		this.currentCountdown = waitCountdown;
+		this.waitForBatch = PendingException.stackless(waitIntervalMillis, WAIT_FOR_BATCH);
+	}
+	
+	public long getMaxLingerNanos() {
+		return maxLingerNanos;
+	}
+	
+	/**
+	 * Enable adaptive batching with the maximum linger in nanoseconds since the first data of batch
+	 * arrived, or disable if 0.
+	 */
+	public void setAdaptiveBatching(long maxLingerNanos) {
+		if (maxLingerNanos < 0) {
+			throw new IllegalArgumentException("maxLingerNanos should not be negative");
+		}
+		
+		this.maxLingerNanos = maxLingerNanos;
+	}
+	
+	/**
+	 * Returns the adaptive batch size to wait for.
+	 */
+	public int getTargetBatchSize() {
+		return targetBatchSize;
+	}
+	
+	/**
+	 * Observes the latency of a handled batch, e.g. from sent to confirmed on chain, which bounds
+	 * the linger of adaptive batching.
+	 */
+	public void observeLatency(long latencyNanos) {
+		if (latencyNanos <= 0) {
+			return;
+		}
+		
+		long average = this.latencyNanos;
+		this.latencyNanos = average == 0 ? latencyNanos : average + ((latencyNanos - average) >> EWMA_SHIFT);
+	}
+	
+	@Override
+	public void submit(T data, boolean asFirst) {
+		super.submit(data, asFirst);
+		
+		if (this.maxLingerNanos > 0 && !asFirst) {
+			// concurrent updates may lose samples, which is acceptable for estimation
+			long now = System.nanoTime();
+			long last = this.lastArrivalNanos.getAndSet(now);
+			if (last != 0) {
+				long interval = now - last;
+				long average = this.arrivalIntervalNanos;
+				this.arrivalIntervalNanos = average == Long.MAX_VALUE ? interval : average + ((interval - average) >> EWMA_SHIFT);
+			}
+		}
 	}
 	
 	@Override
 	protected T prepareData(Deque<T> queue) throws PendingException {
-		T data = this.currentBatchData == null ? queue.removeFirst() : this.currentBatchData;
+		if (this.maxLingerNanos > 0) {
+			return this.prepareAdaptiveData(queue);
+		}
+		
+		T data = this.currentBatchData == null ? queue.pollFirst() : this.currentBatchData;
+		if (data == null) {
+			return null;
+		}
 		
 		while (data.size() < this.batchSize) {
 			T next = queue.peekFirst();
@@ -55,10 +145,11 @@ public abstract class BatchWorker<T extends BatchWorker.Batchable> extends Async
 				}
 				
 				queue.removeFirst();
+				this.mergeJournal(data, next);
 			} else if (this.currentCountdown > 0) {
 				this.currentBatchData = data;
 				this.currentCountdown--;
-				throw new PendingException(this.waitIntervalMillis, "wait for more data for a batch");
+				throw this.waitForBatch;
 			} else {
 				break;
 			}
@@ -66,8 +157,83 @@ public abstract class BatchWorker<T extends BatchWorker.Batchable> extends Async
 		
 		this.currentBatchData = null;
 		this.currentCountdown = this.waitCountdown;
+		this.getMetrics().onBatch(data.size());
+		
+		return data;
+	}
+
+	/**
+	 * Batches data until the target batch size reached or linger deadline exceeded. The target batch
+	 * size increases additively when reached, and decreases multiplicatively when deadline exceeded.
+	 */
+	private T prepareAdaptiveData(Deque<T> queue) throws PendingException {
+		long now = System.nanoTime();
+		
+		T data = this.currentBatchData;
+		boolean lingered = data != null;
+		if (data == null) {
+			// linger since the first data arrived rather than dequeued
+			this.currentBatchNanos = queue instanceof WorkQueue ? ((WorkQueue<T>) queue).peekEnqueuedNanos() : now;
+			data = queue.pollFirst();
+			if (data == null) {
+				return null;
+			}
+		}
+		
+		int lastSize = data.size();
+		boolean unbatchable = false;
+		
+		while (data.size() < this.batchSize) {
+			T next = queue.peekFirst();
+			if (next == null) {
+				break;
+			}
+			
+			if (!data.batchWith(next)) {
+				unbatchable = true;
+				break;
+			}
+			
+			queue.removeFirst();
+			this.mergeJournal(data, next);
+		}
+		
+		if (data.size() >= this.targetBatchSize) {
+			// increase only if more data arrived than target
+			if (lingered || queue.peekFirst() != null) {
+				this.targetBatchSize = Math.min(this.batchSize, this.targetBatchSize + 1);
+			}
+		} else if (!unbatchable && !(lingered && data.size() == lastSize)) {
+			long deadline = this.currentBatchNanos + this.getLingerNanos();
+			// expected time for the remaining data to arrive
+			long expected = this.arrivalIntervalNanos == Long.MAX_VALUE
+					? Long.MAX_VALUE
+					: this.arrivalIntervalNanos * (this.targetBatchSize - data.size());
+			
+			if (expected > 0 && expected <= deadline - now) {
+				this.currentBatchData = data;
+				long waitMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(expected));
+				throw PendingException.stackless(waitMillis, WAIT_FOR_BATCH);
+			}
+			
+			// light load or deadline exceeded
+			this.targetBatchSize = Math.max(1, this.targetBatchSize / 2);
+		} else if (!unbatchable) {
+			// no more data arrived in expected time
+			this.targetBatchSize = Math.max(1, this.targetBatchSize / 2);
+		}
+		
+		this.currentBatchData = null;
+		this.getMetrics().onBatch(data.size());
 		
 		return data;
 	}
+	
+	private long getLingerNanos() {
+		long linger = this.maxLingerNanos;
+		long latency = this.latencyNanos;
+		
+		return latency == 0 ? linger : Math.min(linger, latency / LATENCY_LINGER_RATIO);
+	}
 
 }
@@ -0,0 +1,262 @@
+package boomflow.common.worker;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Scheduled executor that only uses a single timer thread to wait for delayed tasks, and dispatches
+ * all tasks to run on the specified executor. So, workers, relayers and monitors that accept a
+ * <code>ScheduledExecutorService</code> could run their blocking I/O on a pluggable executor,
+ * e.g. virtual threads on Java 21 (see <code>newVirtualThreadExecutor</code>), instead of pinning
+ * the scarce threads of a scheduled thread pool.
+ *
+ * Periodic tasks are dispatched once at a time, and the next run is scheduled after completed.
+ */
+public class DispatchingScheduledExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+	
+	private ScheduledExecutorService timer;
+	private ExecutorService executor;
+	
+	/**
+	 * Create an instance to dispatch tasks to the specified executor.
+	 */
+	public DispatchingScheduledExecutor(ExecutorService executor) {
+		this(Executors.newSingleThreadScheduledExecutor(), executor);
+	}
+	
+	/**
+	 * Create an instance with the specified timer to wait for delayed tasks, which should not be
+	 * used to run any blocking task.
+	 */
+	public DispatchingScheduledExecutor(ScheduledExecutorService timer, ExecutorService executor) {
+		this.timer = timer;
+		this.executor = executor;
+	}
+	
+	/**
+	 * Indicates whether virtual threads supported by JVM, which requires Java 21 or later.
+	 */
+	public static boolean isVirtualThreadSupported() {
+		return getVirtualThreadFactoryMethod() != null;
+	}
+	
+	/**
+	 * Creates a scheduled executor that runs every task on a new virtual thread.
+	 *
+	 * @throws UnsupportedOperationException if virtual threads not supported.
+	 */
+	public static DispatchingScheduledExecutor newVirtualThreadExecutor() {
+		Method method = getVirtualThreadFactoryMethod();
+		if (method == null) {
+			throw new UnsupportedOperationException("virtual threads require Java 21 or later");
+		}
+		
+		try {
+			return new DispatchingScheduledExecutor((ExecutorService) method.invoke(null));
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("failed to create virtual thread executor", e);
+		}
+	}
+	
+	// Built against Java 8, so look up Java 21 API via reflection.
+	private static Method getVirtualThreadFactoryMethod() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+	
+	@Override
+	public void execute(Runnable command) {
+		this.executor.execute(command);
+	}
+	
+	@Override
+	public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+		return this.schedule(Executors.callable(command), delay, unit);
+	}
+	
+	@Override
+	public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+		return new Task<V>(callable, System.nanoTime() + unit.toNanos(delay), 0).schedule();
+	}
+	
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+		if (period <= 0) {
+			throw new IllegalArgumentException("period should be greater than 0");
+		}
+		
+		long time = System.nanoTime() + unit.toNanos(initialDelay);
+		return new Task<Object>(Executors.callable(command), time, unit.toNanos(period)).schedule();
+	}
+	
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+		if (delay <= 0) {
+			throw new IllegalArgumentException("delay should be greater than 0");
+		}
+		
+		long time = System.nanoTime() + unit.toNanos(initialDelay);
+		return new Task<Object>(Executors.callable(command), time, -unit.toNanos(delay)).schedule();
+	}
+	
+	@Override
+	public void shutdown() {
+		this.timer.shutdown();
+		this.executor.shutdown();
+	}
+	
+	@Override
+	public List<Runnable> shutdownNow() {
+		List<Runnable> tasks = new ArrayList<Runnable>(this.timer.shutdownNow());
+		tasks.addAll(this.executor.shutdownNow());
+		return tasks;
+	}
+	
+	@Override
+	public boolean isShutdown() {
+		return this.timer.isShutdown();
+	}
+	
+	@Override
+	public boolean isTerminated() {
+		return this.timer.isTerminated() && this.executor.isTerminated();
+	}
+	
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		
+		return this.timer.awaitTermination(timeout, unit)
+				&& this.executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Task that waits on timer and runs on executor.
+	 */
+	private class Task<V> implements ScheduledFuture<V>, Runnable {
+		
+		private Callable<V> callable;
+		// time in nanoseconds to run
+		private volatile long time;
+		// 0 for one-shot, positive for fixed rate, and negative for fixed delay.
+		private long period;
+		
+		private CompletableFuture<V> result = new CompletableFuture<V>();
+		private volatile ScheduledFuture<?> timerFuture;
+		
+		Task(Callable<V> callable, long time, long period) {
+			this.callable = callable;
+			this.time = time;
+			this.period = period;
+		}
+		
+		Task<V> schedule() {
+			long delay = this.time - System.nanoTime();
+			this.timerFuture = DispatchingScheduledExecutor.this.timer.schedule(this::dispatch, delay, TimeUnit.NANOSECONDS);
+			
+			// cancelled concurrently
+			if (this.result.isDone()) {
+				this.timerFuture.cancel(false);
+			}
+			
+			return this;
+		}
+		
+		private void dispatch() {
+			try {
+				DispatchingScheduledExecutor.this.executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				this.result.completeExceptionally(e);
+			}
+		}
+		
+		@Override
+		public void run() {
+			if (this.result.isDone()) {
+				return;
+			}
+			
+			try {
+				if (this.period == 0) {
+					this.result.complete(this.callable.call());
+					return;
+				}
+				
+				this.callable.call();
+			} catch (Throwable e) {
+				this.result.completeExceptionally(e);
+				return;
+			}
+			
+			this.time = this.period > 0 ? this.time + this.period : System.nanoTime() - this.period;
+			
+			if (!this.result.isDone() && !DispatchingScheduledExecutor.this.isShutdown()) {
+				try {
+					this.schedule();
+				} catch (RejectedExecutionException e) {
+					this.result.completeExceptionally(e);
+				}
+			}
+		}
+		
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(this.time - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+		
+		@Override
+		public int compareTo(Delayed other) {
+			return Long.compare(this.getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+		
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = this.result.cancel(mayInterruptIfRunning);
+			
+			ScheduledFuture<?> future = this.timerFuture;
+			if (future != null) {
+				future.cancel(false);
+			}
+			
+			return cancelled;
+		}
+		
+		@Override
+		public boolean isCancelled() {
+			return this.result.isCancelled();
+		}
+		
+		@Override
+		public boolean isDone() {
+			return this.result.isDone();
+		}
+		
+		@Override
+		public V get() throws InterruptedException, ExecutionException {
+			return this.result.get();
+		}
+		
+		@Override
+		public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			return this.result.get(timeout, unit);
+		}
+	
+	}
+
+}
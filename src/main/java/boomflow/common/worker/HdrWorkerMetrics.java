@@ -0,0 +1,128 @@
+package boomflow.common.worker;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * In-memory worker metrics backed by HdrHistogram, including:
+ * <ul>
+ * <li>queue depth when data submitted.</li>
+ * <li>time in queue in nanoseconds, from data submitted to started.</li>
+ * <li>service time in nanoseconds of <code>doWork</code>.</li>
+ * <li>batch size of <code>BatchWorker</code>.</li>
+ * <li>number of pending and failures by reason.</li>
+ * </ul>
+ *
+ * Histograms are recorded without lock, and getters return a copy for reporting.
+ */
+public class HdrWorkerMetrics implements WorkerMetrics {
+	
+	private static final int SIGNIFICANT_DIGITS = 3;
+	
+	private Histogram queueDepth = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+	private Histogram queueLatency = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+	private Histogram serviceTime = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+	private Histogram batchSize = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+	
+	private ConcurrentMap<String, LongAdder> pendings = new ConcurrentHashMap<String, LongAdder>();
+	private ConcurrentMap<String, LongAdder> failures = new ConcurrentHashMap<String, LongAdder>();
+	
+	@Override
+	public void onSubmitted(int pending) {
+		this.queueDepth.recordValue(Math.max(0, pending));
+	}
+	
+	@Override
+	public void onStarted(long queuedNanos) {
+		this.queueLatency.recordValue(Math.max(0, queuedNanos));
+	}
+	
+	@Override
+	public void onCompleted(long serviceNanos) {
+		this.serviceTime.recordValue(Math.max(0, serviceNanos));
+	}
+	
+	@Override
+	public void onPending(String reason) {
+		this.pendings.computeIfAbsent(String.valueOf(reason), k -> new LongAdder()).increment();
+	}
+	
+	@Override
+	public void onFailure(long serviceNanos, Exception e) {
+		this.serviceTime.recordValue(Math.max(0, serviceNanos));
+		this.failures.computeIfAbsent(e.getClass().getName(), k -> new LongAdder()).increment();
+	}
+	
+	@Override
+	public void onBatch(int size) {
+		this.batchSize.recordValue(Math.max(0, size));
+	}
+	
+	/**
+	 * Returns the distribution of number of pending data when data submitted.
+	 */
+	public Histogram getQueueDepth() {
+		return this.queueDepth.copy();
+	}
+	
+	/**
+	 * Returns the distribution of time in nanoseconds from data submitted to started.
+	 */
+	public Histogram getQueueLatency() {
+		return this.queueLatency.copy();
+	}
+	
+	/**
+	 * Returns the distribution of time in nanoseconds to handle data, including failures.
+	 */
+	public Histogram getServiceTime() {
+		return this.serviceTime.copy();
+	}
+	
+	/**
+	 * Returns the distribution of batch size.
+	 */
+	public Histogram getBatchSize() {
+		return this.batchSize.copy();
+	}
+	
+	/**
+	 * Returns the number of pending by reason.
+	 */
+	public Map<String, Long> getPendingCounts() {
+		return snapshot(this.pendings);
+	}
+	
+	/**
+	 * Returns the number of failures by exception type.
+	 */
+	public Map<String, Long> getFailureCounts() {
+		return snapshot(this.failures);
+	}
+	
+	private static Map<String, Long> snapshot(ConcurrentMap<String, LongAdder> counters) {
+		Map<String, Long> result = new TreeMap<String, Long>();
+		
+		for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().sum());
+		}
+		
+		return result;
+	}
+	
+	public void reset() {
+		this.queueDepth.reset();
+		this.queueLatency.reset();
+		this.serviceTime.reset();
+		this.batchSize.reset();
+		this.pendings.clear();
+		this.failures.clear();
+	}
+
+}
@@ -0,0 +1,443 @@
+package boomflow.common.worker;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-ahead journal of worker queue, which appends submitted data and completion markers to
+ * memory-mapped segment files, so that only unfinished data is replayed when service restarted,
+ * instead of reloading all data from database.
+ *
+ * Record layout: <code>[int length][int crc32][byte type][long id][payload]</code>, where length
+ * and crc32 are of the bytes after crc32. Segments are compacted in background (see <code>schedule</code>),
+ * i.e. the oldest segment is removed once most data in it completed, and the unfinished data is copied
+ * to the latest segment.
+ *
+ * Note, data is written to memory-mapped files, which survives process crash, but requires
+ * <code>flush</code> to survive OS crash or power loss.
+ *
+ * @param <T> data of worker queue.
+ */
+public class Journal<T> implements Closeable {
+	
+	/**
+	 * Serializes data of worker queue in journal.
+	 */
+	public static interface Serializer<T> {
+		byte[] serialize(T data);
+		T deserialize(byte[] bytes);
+	}
+	
+	private static final Logger logger = LoggerFactory.getLogger(Journal.class);
+	
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	
+	private static final int MAGIC = 0x424A4E4C; // BJNL
+	private static final int VERSION = 1;
+	private static final int SEGMENT_HEADER_SIZE = 8;
+	// length, crc32, type and id
+	private static final int RECORD_HEADER_SIZE = 4 + 4 + 1 + 8;
+	
+	private static final byte TYPE_DATA = 1;
+	private static final byte TYPE_DONE = 2;
+	
+	// compact the oldest segment once unfinished data not more than 1/4 of it
+	private static final int COMPACT_LIVE_RATIO = 4;
+	// compact the oldest segment anyway if too many segments
+	private static final int MAX_SEGMENTS = 8;
+	
+	private File dir;
+	private Serializer<T> serializer;
+	private int segmentSize;
+	
+	// segments in order, and the last one is active to append
+	private LinkedList<Segment> segments = new LinkedList<Segment>();
+	// id => location of unfinished data
+	private Map<Long, Location> locations = new HashMap<Long, Location>();
+	private long nextId = 1;
+	
+	// unfinished data replayed when opened
+	private List<Map.Entry<Long, T>> unfinished;
+	
+	private CRC32 crc = new CRC32();
+	
+	public Journal(File dir, Serializer<T> serializer) throws IOException {
+		this(dir, serializer, DEFAULT_SEGMENT_SIZE);
+	}
+	
+	/**
+	 * Opens journal in the specified directory, and replays the unfinished data if any.
+	 */
+	public Journal(File dir, Serializer<T> serializer, int segmentSize) throws IOException {
+		if (segmentSize <= SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE) {
+			throw new IllegalArgumentException("segment size too small");
+		}
+		
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("failed to create journal directory " + dir);
+		}
+		
+		this.dir = dir;
+		this.serializer = serializer;
+		this.segmentSize = segmentSize;
+		
+		this.replay();
+	}
+	
+	private void replay() throws IOException {
+		File[] files = this.dir.listFiles((d, name) -> name.startsWith("journal-") && name.endsWith(".log"));
+		Arrays.sort(files);
+		
+		// ordered by id, since unfinished data may be copied to later segment when compacted
+		TreeMap<Long, Location> replayed = new TreeMap<Long, Location>();
+		
+		for (File file : files) {
+			long index = Long.parseLong(file.getName().substring(8, file.getName().length() - 4));
+			Segment segment = new Segment(file, index, false);
+			this.segments.add(segment);
+			
+			for (int offset = segment.position; ; offset = segment.position) {
+				Record record = segment.read(offset);
+				if (record == null) {
+					break;
+				}
+				
+				segment.position = offset + RECORD_HEADER_SIZE + record.payloadLength;
+				this.nextId = Math.max(this.nextId, record.id + 1);
+				
+				if (record.type == TYPE_DATA) {
+					segment.records++;
+					replayed.put(record.id, new Location(segment, offset));
+				} else {
+					replayed.remove(record.id);
+				}
+			}
+			
+			segment.truncate();
+		}
+		
+		this.unfinished = new ArrayList<Map.Entry<Long, T>>(replayed.size());
+		
+		for (Map.Entry<Long, Location> entry : replayed.entrySet()) {
+			Location location = entry.getValue();
+			location.segment.live++;
+			this.locations.put(entry.getKey(), location);
+			
+			T data = this.serializer.deserialize(location.segment.readPayload(location.offset));
+			this.unfinished.add(new AbstractMap.SimpleImmutableEntry<Long, T>(entry.getKey(), data));
+		}
+		
+		if (this.segments.isEmpty()) {
+			this.segments.add(new Segment(this.segmentFile(0), 0, true));
+		}
+		
+		logger.info("journal replayed, segments = {}, unfinished = {}", this.segments.size(), this.unfinished.size());
+	}
+	
+	private File segmentFile(long index) {
+		return new File(this.dir, String.format("journal-%020d.log", index));
+	}
+	
+	/**
+	 * Returns the unfinished data (id => data) replayed when opened in the order of appended,
+	 * and clears them to release memory.
+	 */
+	public synchronized List<Map.Entry<Long, T>> takeUnfinished() {
+		List<Map.Entry<Long, T>> result = this.unfinished;
+		this.unfinished = new ArrayList<Map.Entry<Long, T>>();
+		return result;
+	}
+	
+	/**
+	 * Appends the specified data and returns its id to complete later.
+	 */
+	public synchronized long append(T data) {
+		long id = this.nextId++;
+		byte[] payload = this.serializer.serialize(data);
+		
+		Location location = this.write(TYPE_DATA, id, payload, 0, payload.length);
+		location.segment.records++;
+		location.segment.live++;
+		this.locations.put(id, location);
+		
+		return id;
+	}
+	
+	/**
+	 * Appends completion marker of the specified data.
+	 */
+	public synchronized void complete(long id) {
+		Location location = this.locations.remove(id);
+		if (location == null) {
+			return;
+		}
+		
+		location.segment.live--;
+		this.write(TYPE_DONE, id, null, 0, 0);
+	}
+	
+	private Location write(byte type, long id, byte[] payload, int payloadOffset, int payloadLength) {
+		int size = RECORD_HEADER_SIZE + payloadLength;
+		if (size > this.segmentSize - SEGMENT_HEADER_SIZE) {
+			throw new IllegalArgumentException("data too large for journal segment, size = " + size);
+		}
+		
+		Segment segment = this.segments.getLast();
+		
+		if (segment.position + size > this.segmentSize) {
+			try {
+				segment = new Segment(this.segmentFile(segment.index + 1), segment.index + 1, true);
+			} catch (IOException e) {
+				throw new UncheckedIOException("failed to create journal segment", e);
+			}
+			
+			this.segments.add(segment);
+		}
+		
+		int offset = segment.position;
+		ByteBuffer buffer = segment.buffer;
+		
+		this.crc.reset();
+		this.crc.update(type);
+		for (int i = 56; i >= 0; i -= 8) {
+			this.crc.update((int) (id >>> i));
+		}
+		
+		if (payloadLength > 0) {
+			this.crc.update(payload, payloadOffset, payloadLength);
+		}
+		
+		// write length at last, so that torn record not recognized
+		buffer.putInt(offset + 4, (int) this.crc.getValue());
+		buffer.put(offset + 8, type);
+		buffer.putLong(offset + 9, id);
+		for (int i = 0; i < payloadLength; i++) {
+			buffer.put(offset + RECORD_HEADER_SIZE + i, payload[payloadOffset + i]);
+		}
+		buffer.putInt(offset, size - 8);
+		
+		segment.position = offset + size;
+		
+		return new Location(segment, offset);
+	}
+	
+	/**
+	 * Forces changes written to storage device.
+	 */
+	public synchronized void flush() {
+		this.segments.getLast().buffer.force();
+	}
+	
+	/**
+	 * Removes the oldest segments, of which most data completed. Unfinished data in removed
+	 * segments is copied to the latest segment. If too many segments, the oldest segments are
+	 * removed as long as any data completed, so that copying frees space.
+	 *
+	 * Segments created by copying are not compacted in the same round, so it stops after one
+	 * rotation at most, even if all data unfinished.
+	 *
+	 * @return the number of segments removed.
+	 */
+	public synchronized int compact() throws IOException {
+		int removed = 0;
+		// the active segment is excluded
+		int candidates = this.segments.size() - 1;
+		
+		for (int i = 0; i < candidates; i++) {
+			Segment oldest = this.segments.getFirst();
+			
+			boolean sparse = oldest.live * COMPACT_LIVE_RATIO <= oldest.records;
+			boolean tooMany = this.segments.size() > MAX_SEGMENTS && oldest.live < oldest.records;
+			if (!sparse && !tooMany) {
+				break;
+			}
+			
+			// copy unfinished data in order
+			if (oldest.live > 0) {
+				List<Long> ids = new ArrayList<Long>(oldest.live);
+				for (Map.Entry<Long, Location> entry : this.locations.entrySet()) {
+					if (entry.getValue().segment == oldest) {
+						ids.add(entry.getKey());
+					}
+				}
+				
+				ids.sort(null);
+				
+				for (Long id : ids) {
+					byte[] payload = oldest.readPayload(this.locations.get(id).offset);
+					Location location = this.write(TYPE_DATA, id, payload, 0, payload.length);
+					location.segment.records++;
+					location.segment.live++;
+					this.locations.put(id, location);
+				}
+			}
+			
+			// segment is only removed in order, so that the completion markers in it are not required
+			this.segments.removeFirst();
+			if (!oldest.file.delete()) {
+				logger.warn("failed to delete journal segment {}", oldest.file);
+			}
+			
+			removed++;
+		}
+		
+		return removed;
+	}
+	
+	/**
+	 * Schedule job to compact segments for the specified interval.
+	 */
+	public void schedule(ScheduledExecutorService executor, long delayMillis) {
+		executor.scheduleWithFixedDelay(() -> {
+			try {
+				int removed = this.compact();
+				if (removed > 0) {
+					logger.debug("journal compacted, segments removed = {}", removed);
+				}
+			} catch (Exception e) {
+				logger.error("failed to compact journal", e);
+			}
+		}, delayMillis, delayMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Returns the number of unfinished data.
+	 */
+	public synchronized int getUnfinishedCount() {
+		return this.locations.size();
+	}
+	
+	public synchronized int getSegmentCount() {
+		return this.segments.size();
+	}
+	
+	@Override
+	public synchronized void close() {
+		for (Segment segment : this.segments) {
+			segment.buffer.force();
+		}
+	}
+	
+	private class Location {
+		
+		Segment segment;
+		int offset;
+		
+		Location(Segment segment, int offset) {
+			this.segment = segment;
+			this.offset = offset;
+		}
+	
+	}
+	
+	private static class Record {
+		
+		byte type;
+		long id;
+		int payloadLength;
+	
+	}
+	
+	private class Segment {
+		
+		File file;
+		long index;
+		MappedByteBuffer buffer;
+		int position = SEGMENT_HEADER_SIZE;
+		
+		// number of data records
+		int records;
+		// number of unfinished data
+		int live;
+		
+		Segment(File file, long index, boolean create) throws IOException {
+			this.file = file;
+			this.index = index;
+			
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+				long size = create ? Journal.this.segmentSize : Math.max(channel.size(), SEGMENT_HEADER_SIZE);
+				this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			}
+			
+			if (create) {
+				this.buffer.putInt(0, MAGIC);
+				this.buffer.putInt(4, VERSION);
+			} else if (this.buffer.getInt(0) != MAGIC || this.buffer.getInt(4) != VERSION) {
+				throw new IOException("invalid journal segment " + file);
+			}
+		}
+		
+		/**
+		 * Reads record header at the specified offset, or null if no more valid record.
+		 */
+		Record read(int offset) {
+			if (offset + RECORD_HEADER_SIZE > this.buffer.capacity()) {
+				return null;
+			}
+			
+			int length = this.buffer.getInt(offset);
+			if (length < RECORD_HEADER_SIZE - 8 || offset + 8 + length > this.buffer.capacity()) {
+				return null;
+			}
+			
+			CRC32 crc = new CRC32();
+			for (int i = 0; i < length; i++) {
+				crc.update(this.buffer.get(offset + 8 + i));
+			}
+			
+			if ((int) crc.getValue() != this.buffer.getInt(offset + 4)) {
+				return null;
+			}
+			
+			Record record = new Record();
+			record.type = this.buffer.get(offset + 8);
+			record.id = this.buffer.getLong(offset + 9);
+			record.payloadLength = length - (RECORD_HEADER_SIZE - 8);
+			
+			return record;
+		}
+		
+		byte[] readPayload(int offset) {
+			int length = this.buffer.getInt(offset) - (RECORD_HEADER_SIZE - 8);
+			byte[] payload = new byte[length];
+			
+			ByteBuffer view = this.buffer.duplicate();
+			view.position(offset + RECORD_HEADER_SIZE);
+			view.get(payload);
+			
+			return payload;
+		}
+		
+		/**
+		 * Clears the torn record if any after the last valid record.
+		 */
+		void truncate() {
+			int end = Math.min(this.buffer.capacity(), this.position + RECORD_HEADER_SIZE);
+			for (int i = this.position; i < end; i++) {
+				this.buffer.put(i, (byte) 0);
+			}
+		}
+	
+	}
+
+}
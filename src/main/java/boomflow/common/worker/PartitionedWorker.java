@@ -0,0 +1,246 @@
+package boomflow.common.worker;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Asynchronous worker to handle data in parallel lanes, which are partitioned by key, e.g. user
+ * or contract address. Data of the same key is always routed to the same lane, and handled in
+ * sequence with the same semantics of <code>AsyncWorker</code> (FIFO and <code>PendingException</code>),
+ * while data in different lanes are handled concurrently on the shared executor.
+ *
+ * Settings of lanes, e.g. capacity and independent retry, are forwarded to each lane, whereas
+ * journal is not supported, since a journal could only be replayed into a single worker.
+ *
+ * @param <T> data to handle.
+ */
+public abstract class PartitionedWorker<T> {
+	
+	private List<Lane> lanes;
+	
+	/**
+	 * Create an instance of PartitionedWorker.
+	 * @param executor executor shared by all lanes.
+	 * @param lanes number of lanes, e.g. number of CPU cores.
+	 */
+	protected PartitionedWorker(ScheduledExecutorService executor, int lanes) {
+		if (lanes <= 0) {
+			throw new IllegalArgumentException("lanes should be greater than 0");
+		}
+		
+		this.lanes = new ArrayList<Lane>(lanes);
+		for (int i = 0; i < lanes; i++) {
+			this.lanes.add(new Lane(executor));
+		}
+	}
+	
+	/**
+	 * Returns the key to partition the specified data, e.g. user address.
+	 */
+	protected abstract Object getPartitionKey(T data);
+	
+	/**
+	 * Handle the specified data from queue of lane.
+	 */
+	protected abstract void doWork(T data) throws PendingException, Exception;
+	
+	/**
+	 * Handle the failure case except the PendingException.
+	 */
+	protected abstract void onFailure(T data, Exception e);
+	
+	/**
+	 * Handle the specified data from queue of lane and returns the result. By default, it delegates
+	 * to the lane, see <code>AsyncWorker.handle</code>.
+	 *
+	 * @see AsyncWorker#handle(Object)
+	 */
+	protected WorkResult handle(T data) {
+		// all lanes delegate to doWork, so the partition key is not required
+		return this.lanes.get(0).handleDefault(data);
+	}
+	
+	/**
+	 * Retrieve data from specified queue of lane to handle. By default, the first data in
+	 * queue is retrieved to handle with.
+	 *
+	 * @see AsyncWorker#prepareData(Deque)
+	 */
+	protected T prepareData(Deque<T> queue) throws PendingException {
+		return queue.pollFirst();
+	}
+	
+	/**
+	 * Returns the number of lanes.
+	 */
+	public int getLanes() {
+		return this.lanes.size();
+	}
+	
+	/**
+	 * Returns the lane index of the specified data.
+	 */
+	public int getLane(T data) {
+		Object key = this.getPartitionKey(data);
+		if (key == null) {
+			return 0;
+		}
+		
+		int hash = key.hashCode();
+		hash ^= hash >>> 16;
+		return Math.floorMod(hash * 0x9E3779B9, this.lanes.size());
+	}
+	
+	/**
+	 * Returns the number of pending data to handle in all lanes.
+	 */
+	public int getPendingCount() {
+		int count = 0;
+		
+		for (Lane lane : this.lanes) {
+			count += lane.getPendingCount();
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Returns the number of pending data to handle in the specified lane.
+	 */
+	public int getPendingCount(int lane) {
+		return this.lanes.get(lane).getPendingCount();
+	}
+	
+	/**
+	 * Indicates whether any lane is working.
+	 */
+	public boolean isWorking() {
+		for (Lane lane : this.lanes) {
+			if (lane.isWorking()) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Indicates whether the worker is paused.
+	 */
+	public boolean isPaused() {
+		return this.lanes.get(0).isPaused();
+	}
+	
+	/**
+	 * Pause or unpause all lanes.
+	 */
+	public void setPaused(boolean paused) {
+		for (Lane lane : this.lanes) {
+			lane.setPaused(paused);
+		}
+	}
+	
+	public long getPauseIntervalMillis() {
+		return this.lanes.get(0).getPauseIntervalMillis();
+	}
+	
+	/**
+	 * Set the interval in milliseconds to wait for the next schedule when worker is paused.
+	 */
+	public void setPauseIntervalMillis(long pauseIntervalMillis) {
+		for (Lane lane : this.lanes) {
+			lane.setPauseIntervalMillis(pauseIntervalMillis);
+		}
+	}
+	
+	/**
+	 * Set the metrics shared by all lanes, or disable if <code>null</code>.
+	 */
+	public void setMetrics(WorkerMetrics metrics) {
+		for (Lane lane : this.lanes) {
+			lane.setMetrics(metrics);
+		}
+	}
+	
+	public boolean isIndependentRetry() {
+		return this.lanes.get(0).isIndependentRetry();
+	}
+	
+	/**
+	 * Enable to retry data independently in each lane.
+	 *
+	 * @see AsyncWorker#setIndependentRetry(boolean)
+	 */
+	public void setIndependentRetry(boolean independentRetry) {
+		for (Lane lane : this.lanes) {
+			lane.setIndependentRetry(independentRetry);
+		}
+	}
+	
+	/**
+	 * Returns the maximum number of pending data in each lane.
+	 */
+	public int getCapacity() {
+		return this.lanes.get(0).getCapacity();
+	}
+	
+	/**
+	 * Set the maximum number of pending data in each lane, which is unbounded by default.
+	 *
+	 * @see AsyncWorker#setCapacity(int)
+	 */
+	public void setCapacity(int capacity) {
+		for (Lane lane : this.lanes) {
+			lane.setCapacity(capacity);
+		}
+	}
+	
+	/**
+	 * Append the specified data in the end of its lane to handle asynchronously.
+	 */
+	public void submit(T data) {
+		this.submit(data, false);
+	}
+	
+	/**
+	 * Append the specified data in the front or end of its lane to handle asynchronously.
+	 */
+	public void submit(T data, boolean asFirst) {
+		this.lanes.get(this.getLane(data)).submit(data, asFirst);
+	}
+	
+	private class Lane extends AsyncWorker<T> {
+		
+		Lane(ScheduledExecutorService executor) {
+			super(executor);
+		}
+		
+		@Override
+		protected T prepareData(Deque<T> queue) throws PendingException {
+			return PartitionedWorker.this.prepareData(queue);
+		}
+		
+		@Override
+		protected void doWork(T data) throws PendingException, Exception {
+			PartitionedWorker.this.doWork(data);
+		}
+		
+		@Override
+		protected WorkResult handle(T data) {
+			return PartitionedWorker.this.handle(data);
+		}
+		
+		WorkResult handleDefault(T data) {
+			return super.handle(data);
+		}
+		
+		@Override
+		protected void onFailure(T data, Exception e) {
+			PartitionedWorker.this.onFailure(data, e);
+		}
+	
+	}
+
+}
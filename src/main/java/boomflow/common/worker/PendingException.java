@@ -2,16 +2,37 @@ package boomflow.common.worker;
 
 /**
  * Throws when any data requires to handle later.
+ *
+ * Since it is thrown as control flow, e.g. to wait for more data in batch, use <code>stackless</code>
+ * to avoid filling stack trace, which could also be preallocated for the constant timeout and reason.
+ * Alternatively, override <code>AsyncWorker.handle</code> to return <code>WorkResult</code> without exception.
  */
 @SuppressWarnings("serial")
 public class PendingException extends Exception {
 	
 	private long timeoutMillis;
+	private String reason;
 	
 	public PendingException(long timeoutMillis, String causeFormat, Object... causeArgs) {
-		super(String.format(causeFormat, causeArgs));
+		super(causeArgs.length == 0 ? causeFormat : String.format(causeFormat, causeArgs));
 		
 		this.timeoutMillis = timeoutMillis;
+		this.reason = causeFormat;
+	}
+	
+	private PendingException(String reason, long timeoutMillis) {
+		super(reason, null, false, false);
+		
+		this.timeoutMillis = timeoutMillis;
+		this.reason = reason;
+	}
+	
+	/**
+	 * Creates an exception without stack trace and suppression, which is immutable and could be
+	 * preallocated and thrown repeatedly.
+	 */
+	public static PendingException stackless(long timeoutMillis, String reason) {
+		return new PendingException(reason, timeoutMillis);
 	}
 	
 	/**
@@ -21,4 +42,11 @@ public class PendingException extends Exception {
 		return timeoutMillis;
 	}
 
+	/**
+	 * Return the unformatted cause, which is used to group metrics by reason.
+	 */
+	public String getReason() {
+		return reason;
+	}
+
 }
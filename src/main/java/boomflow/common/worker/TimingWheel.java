@@ -0,0 +1,102 @@
+package boomflow.common.worker;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel to hold delayed elements, where elements are hashed into buckets by deadline
+ * tick, so that add and expire are O(1) regardless of number of elements.
+ *
+ * Note, it is thread safe but not designed for high contention.
+ */
+class TimingWheel<T> {
+	
+	private static class Entry<T> {
+		
+		T value;
+		long deadlineTick;
+		
+		Entry(T value, long deadlineTick) {
+			this.value = value;
+			this.deadlineTick = deadlineTick;
+		}
+	
+	}
+	
+	private long tickNanos;
+	private List<List<Entry<T>>> buckets;
+	private int mask;
+	
+	private long startNanos = System.nanoTime();
+	// next tick to expire
+	private long currentTick;
+	private int size;
+	
+	/**
+	 * Create an instance of TimingWheel.
+	 * @param tickMillis duration of a tick in milliseconds.
+	 * @param wheelSize number of buckets, which is rounded up to power of 2.
+	 */
+	TimingWheel(long tickMillis, int wheelSize) {
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+		
+		int n = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+		this.buckets = new ArrayList<List<Entry<T>>>(n);
+		for (int i = 0; i < n; i++) {
+			this.buckets.add(new ArrayList<Entry<T>>());
+		}
+		
+		this.mask = n - 1;
+	}
+	
+	long getTickNanos() {
+		return tickNanos;
+	}
+	
+	/**
+	 * Adds an element to expire after the specified delay in milliseconds.
+	 */
+	synchronized void add(T value, long delayMillis) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis) - this.startNanos;
+		// round up, so as to not expire in advance
+		long tick = Math.max(this.currentTick, (deadline + this.tickNanos - 1) / this.tickNanos);
+		
+		this.buckets.get((int) (tick & this.mask)).add(new Entry<T>(value, tick));
+		this.size++;
+	}
+	
+	/**
+	 * Removes all expired elements until now, which are roughly in the order of deadline.
+	 */
+	synchronized List<T> expire() {
+		long nowTick = (System.nanoTime() - this.startNanos) / this.tickNanos;
+		List<T> expired = new ArrayList<T>();
+		
+		// skip a whole round at most, since all buckets visited
+		long lastTick = Math.min(nowTick, this.currentTick + this.mask);
+		
+		for (; this.currentTick <= lastTick && this.size > 0; this.currentTick++) {
+			Iterator<Entry<T>> it = this.buckets.get((int) (this.currentTick & this.mask)).iterator();
+			
+			while (it.hasNext()) {
+				Entry<T> entry = it.next();
+				if (entry.deadlineTick <= nowTick) {
+					expired.add(entry.value);
+					it.remove();
+					this.size--;
+				}
+			}
+		}
+		
+		this.currentTick = Math.max(this.currentTick, nowTick + 1);
+		
+		return expired;
+	}
+	
+	synchronized int size() {
+		return this.size;
+	}
+
+}
@@ -0,0 +1,456 @@
+package boomflow.common.worker;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free multi-producer single-consumer queue used by <code>AsyncWorker</code>.
+ *
+ * Producers append to the tail of a linked queue with a single atomic swap, and insert in front
+ * via a separate lock-free stack, which is drained by consumer into a private front deque. The
+ * number of elements is maintained by an atomic counter, so <code>size</code> is O(1). Elements
+ * are counted before published, and consumer waits for the counted but unpublished ones.
+ *
+ * Only <code>addFirst</code>, <code>addLast</code> and their variants could be called concurrently.
+ * Others should be called by the single consumer. Methods on the last element, removal of occurrence
+ * and descending iterator move all published elements to the front deque at first, which is O(n)
+ * but only required by custom <code>AsyncWorker.prepareData</code>.
+ */
+class WorkQueue<T> extends AbstractQueue<T> implements Deque<T> {
+	
+	private static class Node<T> {
+		
+		T value;
+		volatile Node<T> next;
+		long enqueuedNanos = System.nanoTime();
+		
+		Node(T value) {
+			this.value = value;
+		}
+	
+	}
+	
+	// consumer only, which is a stub node whose next is the first element.
+	private Node<T> head = new Node<T>(null);
+	private AtomicReference<Node<T>> tail = new AtomicReference<Node<T>>(this.head);
+	
+	// elements inserted in front by producers, in LIFO order.
+	private AtomicReference<Node<T>> frontStack = new AtomicReference<Node<T>>();
+	// consumer only, elements drained from the front stack.
+	private ArrayDeque<Node<T>> front = new ArrayDeque<Node<T>>();
+	
+	// consumer only, enqueued time of the earliest polled element since last taken.
+	private long polledNanos;
+	private boolean polled;
+	
+	private AtomicInteger size = new AtomicInteger();
+	
+	@Override
+	public void addFirst(T value) {
+		if (value == null) {
+			throw new NullPointerException();
+		}
+		
+		Node<T> node = new Node<T>(value);
+		Node<T> top;
+		
+		// count before published, so that consumer always sees the size not less than elements
+		this.size.incrementAndGet();
+		
+		do {
+			top = this.frontStack.get();
+			node.next = top;
+		} while (!this.frontStack.compareAndSet(top, node));
+	}
+	
+	/**
+	 * Inserts the specified elements in front at once, and the first one is the first of queue.
+	 */
+	public void addAllFirst(List<T> values) {
+		if (values.isEmpty()) {
+			return;
+		}
+		
+		Node<T> first = null;
+		Node<T> last = null;
+		
+		for (int i = values.size() - 1; i >= 0; i--) {
+			if (values.get(i) == null) {
+				throw new NullPointerException();
+			}
+			
+			Node<T> node = new Node<T>(values.get(i));
+			node.next = first;
+			first = node;
+			
+			if (last == null) {
+				last = node;
+			}
+		}
+		
+		// count before published, so that consumer always sees the size not less than elements
+		this.size.addAndGet(values.size());
+		
+		Node<T> top;
+		
+		do {
+			top = this.frontStack.get();
+			last.next = top;
+		} while (!this.frontStack.compareAndSet(top, first));
+	}
+	
+	@Override
+	public boolean offerFirst(T value) {
+		this.addFirst(value);
+		return true;
+	}
+	
+	@Override
+	public void push(T value) {
+		this.addFirst(value);
+	}
+	
+	@Override
+	public void addLast(T value) {
+		if (value == null) {
+			throw new NullPointerException();
+		}
+		
+		Node<T> node = new Node<T>(value);
+		
+		// count before published, so that consumer always sees the size not less than elements
+		this.size.incrementAndGet();
+		
+		Node<T> prev = this.tail.getAndSet(node);
+		prev.next = node;
+	}
+	
+	@Override
+	public boolean offerLast(T value) {
+		this.addLast(value);
+		return true;
+	}
+	
+	@Override
+	public boolean offer(T value) {
+		this.addLast(value);
+		return true;
+	}
+	
+	/**
+	 * Moves elements from the front stack to the front deque, where the latest one is the first.
+	 */
+	private void drainFront() {
+		Node<T> node = this.frontStack.getAndSet(null);
+		if (node == null) {
+			return;
+		}
+		
+		// reverse so as to insert the earliest one first
+		Node<T> reversed = null;
+		while (node != null) {
+			Node<T> next = node.next;
+			node.next = reversed;
+			reversed = node;
+			node = next;
+		}
+		
+		for (; reversed != null; reversed = reversed.next) {
+			this.front.addFirst(reversed);
+		}
+	}
+	
+	/**
+	 * Waits until the first element published if any, and returns whether queue is not empty.
+	 */
+	private boolean awaitFirst() {
+		for (;;) {
+			this.drainFront();
+		
+			if (!this.front.isEmpty() || this.head.next != null) {
+				return true;
+			}
+			
+			// producer is publishing the counted element
+			if (this.size.get() <= 0) {
+				return false;
+			}
+			
+			Thread.yield();
+		}
+	}
+	
+	@Override
+	public T pollFirst() {
+		if (!this.awaitFirst()) {
+			return null;
+		}
+		
+		Node<T> node = this.front.pollFirst();
+		T value;
+		
+		if (node == null) {
+			node = this.head.next;
+			value = node.value;
+			node.value = null;
+			this.head = node;
+		} else {
+			value = node.value;
+		}
+		
+		this.onPolled(node);
+		
+		return value;
+	}
+	
+	private void onPolled(Node<T> node) {
+		this.size.decrementAndGet();
+		
+		if (!this.polled || node.enqueuedNanos - this.polledNanos < 0) {
+			this.polledNanos = node.enqueuedNanos;
+			this.polled = true;
+		}
+	}
+	
+	@Override
+	public T poll() {
+		return this.pollFirst();
+	}
+	
+	@Override
+	public T removeFirst() {
+		T value = this.pollFirst();
+		if (value == null) {
+			throw new NoSuchElementException();
+		}
+		
+		return value;
+	}
+	
+	@Override
+	public T pop() {
+		return this.removeFirst();
+	}
+	
+	@Override
+	public T peekFirst() {
+		if (!this.awaitFirst()) {
+			return null;
+		}
+		
+		Node<T> node = this.front.peekFirst();
+		return node == null ? this.head.next.value : node.value;
+	}
+	
+	@Override
+	public T peek() {
+		return this.peekFirst();
+	}
+	
+	@Override
+	public T getFirst() {
+		T value = this.peekFirst();
+		if (value == null) {
+			throw new NoSuchElementException();
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Returns the time in nanoseconds when the first element was enqueued, or current time if empty.
+	 * It should be called by consumer.
+	 */
+	long peekEnqueuedNanos() {
+		if (!this.awaitFirst()) {
+			return System.nanoTime();
+		}
+		
+		Node<T> node = this.front.peekFirst();
+		return node == null ? this.head.next.enqueuedNanos : node.enqueuedNanos;
+	}
+	
+	/**
+	 * Returns the time in nanoseconds since the earliest element polled after last call was enqueued,
+	 * or -1 if no element polled. It should be called by consumer.
+	 */
+	long takeQueuedNanos() {
+		if (!this.polled) {
+			return -1;
+		}
+		
+		this.polled = false;
+		
+		return System.nanoTime() - this.polledNanos;
+	}
+	
+	@Override
+	public int size() {
+		return this.size.get();
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return this.size() == 0;
+	}
+	
+	/**
+	 * Returns a read-only iterator, which should be called by consumer.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		this.drainFront();
+		
+		Iterator<Node<T>> frontIterator = this.front.iterator();
+		
+		return new Iterator<T>() {
+			
+			private Node<T> node = WorkQueue.this.head;
+			
+			@Override
+			public boolean hasNext() {
+				return frontIterator.hasNext() || this.node.next != null;
+			}
+			
+			@Override
+			public T next() {
+				if (frontIterator.hasNext()) {
+					return frontIterator.next().value;
+				}
+				
+				Node<T> next = this.node.next;
+				if (next == null) {
+					throw new NoSuchElementException();
+				}
+				
+				this.node = next;
+				return next.value;
+			}
+		
+		};
+	}
+	
+	/**
+	 * Moves all published elements to the front deque, so as to access the last element.
+	 */
+	private void drainAll() {
+		this.drainFront();
+		
+		for (Node<T> node = this.head.next; node != null; node = node.next) {
+			// the node becomes stub, so move a copy
+			Node<T> copy = new Node<T>(node.value);
+			copy.enqueuedNanos = node.enqueuedNanos;
+			this.front.addLast(copy);
+			
+			node.value = null;
+			this.head = node;
+		}
+	}
+	
+	@Override
+	public boolean removeFirstOccurrence(Object o) {
+		this.drainAll();
+		return this.removeOccurrence(this.front.iterator(), o);
+	}
+	
+	@Override
+	public boolean removeLastOccurrence(Object o) {
+		this.drainAll();
+		return this.removeOccurrence(this.front.descendingIterator(), o);
+	}
+	
+	private boolean removeOccurrence(Iterator<Node<T>> iterator, Object o) {
+		if (o == null) {
+			return false;
+		}
+		
+		while (iterator.hasNext()) {
+			Node<T> node = iterator.next();
+			if (o.equals(node.value)) {
+				iterator.remove();
+				this.onPolled(node);
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	@Override
+	public boolean remove(Object o) {
+		return this.removeFirstOccurrence(o);
+	}
+	
+	@Override
+	public T pollLast() {
+		this.drainAll();
+		
+		Node<T> node = this.front.pollLast();
+		if (node == null) {
+			return null;
+		}
+		
+		this.onPolled(node);
+		
+		return node.value;
+	}
+	
+	@Override
+	public T removeLast() {
+		T value = this.pollLast();
+		if (value == null) {
+			throw new NoSuchElementException();
+		}
+		
+		return value;
+	}
+	
+	@Override
+	public T peekLast() {
+		this.drainAll();
+		
+		Node<T> node = this.front.peekLast();
+		return node == null ? null : node.value;
+	}
+	
+	@Override
+	public T getLast() {
+		T value = this.peekLast();
+		if (value == null) {
+			throw new NoSuchElementException();
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Returns a read-only descending iterator, which should be called by consumer.
+	 */
+	@Override
+	public Iterator<T> descendingIterator() {
+		this.drainAll();
+		
+		Iterator<Node<T>> iterator = this.front.descendingIterator();
+		
+		return new Iterator<T>() {
+			
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+			
+			@Override
+			public T next() {
+				return iterator.next().value;
+			}
+		
+		};
+	}
+
+}
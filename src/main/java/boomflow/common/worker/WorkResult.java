@@ -0,0 +1,72 @@
+package boomflow.common.worker;
+
+/**
+ * Result to handle data by <code>AsyncWorker.handle</code>, so as to retry without throwing
+ * <code>PendingException</code>. Results with constant delay and reason could be preallocated.
+ */
+public class WorkResult {
+	
+	public static enum Status {
+		/**
+		 * Data handled successfully.
+		 */
+		Done,
+		/**
+		 * Data requires to handle again after delay.
+		 */
+		Retry,
+		/**
+		 * Failed to handle data.
+		 */
+		Fail,
+	}
+	
+	public static final WorkResult DONE = new WorkResult(Status.Done, 0, null, null);
+	
+	private Status status;
+	private long delayMillis;
+	private String reason;
+	private Exception error;
+	
+	private WorkResult(Status status, long delayMillis, String reason, Exception error) {
+		this.status = status;
+		this.delayMillis = delayMillis;
+		this.reason = reason;
+		this.error = error;
+	}
+	
+	/**
+	 * Returns a result to handle data again after the specified delay in milliseconds.
+	 */
+	public static WorkResult retryAfter(long delayMillis, String reason) {
+		return new WorkResult(Status.Retry, delayMillis, reason, null);
+	}
+	
+	/**
+	 * Returns a failure result, which is handled by <code>AsyncWorker.onFailure</code>.
+	 */
+	public static WorkResult fail(Exception error) {
+		if (error == null) {
+			throw new IllegalArgumentException("error not specified");
+		}
+		
+		return new WorkResult(Status.Fail, 0, null, error);
+	}
+	
+	public Status getStatus() {
+		return status;
+	}
+	
+	public long getDelayMillis() {
+		return delayMillis;
+	}
+	
+	public String getReason() {
+		return reason;
+	}
+	
+	public Exception getError() {
+		return error;
+	}
+
+}
@@ -0,0 +1,49 @@
+package boomflow.common.worker;
+
+/**
+ * Metrics SPI to instrument <code>AsyncWorker</code> and its subclasses. All methods are no-op
+ * by default, and should be thread safe.
+ *
+ * @see HdrWorkerMetrics
+ */
+public interface WorkerMetrics {
+	
+	/**
+	 * Metrics that records nothing, which is used by default.
+	 */
+	WorkerMetrics NONE = new WorkerMetrics() {};
+	
+	/**
+	 * Called when data submitted, with the number of pending data after submitted.
+	 */
+	default void onSubmitted(int pending) {}
+	
+	/**
+	 * Called when data is about to handle, with the time in nanoseconds since the earliest data
+	 * to handle submitted.
+	 */
+	default void onStarted(long queuedNanos) {}
+	
+	/**
+	 * Called when data handled successfully, with the time in nanoseconds of <code>doWork</code>.
+	 */
+	default void onCompleted(long serviceNanos) {}
+	
+	/**
+	 * Called when <code>PendingException</code> thrown to handle data later.
+	 *
+	 * @param reason unformatted cause of pending, see <code>PendingException.getReason</code>.
+	 */
+	default void onPending(String reason) {}
+	
+	/**
+	 * Called when failed to handle data, with the time in nanoseconds of <code>doWork</code>.
+	 */
+	default void onFailure(long serviceNanos, Exception e) {}
+	
+	/**
+	 * Called when a batch of data prepared to handle by <code>BatchWorker</code>.
+	 */
+	default void onBatch(int size) {}
+
+}
@@ -1,37 +1,35 @@
 package boomflow.eip712;
 
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-import org.web3j.abi.datatypes.StaticStruct;
-import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.abi.datatypes.Type;
 
 import boomflow.common.Address;
 import boomflow.eip712.core.Domain;
 import boomflow.eip712.core.Entry;
+import boomflow.eip712.core.LazyStaticStruct;
+import boomflow.eip712.core.NonceTable;
 import boomflow.eip712.core.TypedData;
+import boomflow.processor.Struct;
+import boomflow.processor.StructField;
 
-public class TypedAdjustMarginRateRequest extends StaticStruct implements TypedData {
-	
-	private static final String PRIMARY_TYPE = "AdjustMarginRateRequest";
-	
-	private static final Map<String, List<Entry>> SCHEMAS = Collections.singletonMap(PRIMARY_TYPE, Arrays.asList(
-			new Entry("userAddress", "address"),
-			new Entry("contractId", "uint256"),
-			new Entry("marginType", "uint256"),
-			new Entry("initMarginRate", "uint256"),
-			new Entry("posiSide", "int256"),
-			new Entry("posiId", "uint256"),
-			new Entry("nonce", "uint256")));
+@Struct("AdjustMarginRateRequest")
+public class TypedAdjustMarginRateRequest extends LazyStaticStruct implements TypedData {
 	
+	@StructField(type = "address")
 	public String userAddress;
+	@StructField(type = "uint256")
 	public long contractId;
+	@StructField(type = "uint256")
 	public long marginType;
+	@StructField(type = "uint256")
 	public long initMarginRate;
+	@StructField(type = "int256", abiType = "uint256")
 	public long posiSide;
+	@StructField(type = "uint256")
 	public long posiId;
+	@StructField(type = "uint256")
 	public long nonce;
 	
 	private Address signer;
@@ -39,9 +37,6 @@ public class TypedAdjustMarginRateRequest extends StaticStruct implements TypedD
 	
 	public TypedAdjustMarginRateRequest(Address userAddress, long contractId, long marginType, long initMarginRate, 
 			long posiSide, long posiId, long nonce, String signature) {
-		super(userAddress.toABI(), new Uint256(contractId), new Uint256(marginType), new Uint256(initMarginRate),
-				new Uint256(posiSide), new Uint256(posiId), new Uint256(nonce));
-		
 		this.userAddress = userAddress.toHex();
 		this.contractId = contractId;
 		this.marginType = marginType;
@@ -56,12 +51,38 @@ public class TypedAdjustMarginRateRequest extends StaticStruct implements TypedD
 
 	@Override
 	public String primaryType() {
-		return PRIMARY_TYPE;
+		return TypedAdjustMarginRateRequestCodec.PRIMARY_TYPE;
 	}
 
 	@Override
 	public Map<String, List<Entry>> schemas() {
-		return SCHEMAS;
+		return TypedAdjustMarginRateRequestCodec.SCHEMAS;
+	}
+
+	@Override
+	public Object[] values() {
+		return TypedAdjustMarginRateRequestCodec.values(this);
+	}
+	
+	@Override
+	public byte[] hash() {
+		return TypedAdjustMarginRateRequestCodec.hash(this);
+	}
+
+	@Override
+	public boolean checkNonce(NonceTable table) {
+		return table.checkAndAdvance(this.userAddress, NonceTable.Type.AdjustMarginRate, this.nonce);
+	}
+	
+	@SuppressWarnings("rawtypes")
+	@Override
+	protected List<Type> createValues() {
+		return TypedAdjustMarginRateRequestCodec.types(this);
+	}
+	
+	@Override
+	protected String abiType() {
+		return TypedAdjustMarginRateRequestCodec.ABI_TYPE;
 	}
 
 	@Override
@@ -1,43 +1,38 @@
 package boomflow.eip712;
 
 import java.math.BigInteger;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-import org.web3j.abi.datatypes.StaticStruct;
-import org.web3j.abi.datatypes.generated.Int256;
-import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.abi.datatypes.Type;
 
 import boomflow.common.Address;
 import boomflow.eip712.core.Domain;
 import boomflow.eip712.core.Entry;
+import boomflow.eip712.core.LazyStaticStruct;
+import boomflow.eip712.core.NonceTable;
 import boomflow.eip712.core.TypedData;
+import boomflow.processor.Struct;
+import boomflow.processor.StructField;
 
-public class TypedAdjustMarginRequest extends StaticStruct implements TypedData {
-	
-	private static final String PRIMARY_TYPE = "AdjustMarginRequest";
-	
-	private static final Map<String, List<Entry>> SCHEMAS = Collections.singletonMap(PRIMARY_TYPE, Arrays.asList(
-			new Entry("userAddress", "address"),
-			new Entry("contractId", "uint256"),
-			new Entry("margin", "int256"),
-			new Entry("posiSide", "int256"),
-			new Entry("nonce", "uint256")));
+@Struct("AdjustMarginRequest")
+public class TypedAdjustMarginRequest extends LazyStaticStruct implements TypedData {
 	
+	@StructField(type = "address")
 	public String userAddress;
+	@StructField(type = "uint256")
 	public long contractId;
+	@StructField(type = "int256")
 	public BigInteger margin;
+	@StructField(type = "int256")
 	public long posiSide;
+	@StructField(type = "uint256")
 	public long nonce;
 	
 	private Address signer;
 	private String signature;
 	
 	public TypedAdjustMarginRequest(Address userAddress, long contractId, BigInteger margin, long posiSide, long nonce, String signature) {
-		super(userAddress.toABI(), new Uint256(contractId), new Int256(margin), new Int256(posiSide), new Uint256(nonce));
-		
 		this.userAddress = userAddress.toHex();
 		this.contractId = contractId;
 		this.margin = margin;
@@ -50,12 +45,38 @@ public class TypedAdjustMarginRequest extends StaticStruct implements TypedData
 
 	@Override
 	public String primaryType() {
-		return PRIMARY_TYPE;
+		return TypedAdjustMarginRequestCodec.PRIMARY_TYPE;
 	}
 
 	@Override
 	public Map<String, List<Entry>> schemas() {
-		return SCHEMAS;
+		return TypedAdjustMarginRequestCodec.SCHEMAS;
+	}
+
+	@Override
+	public Object[] values() {
+		return TypedAdjustMarginRequestCodec.values(this);
+	}
+	
+	@Override
+	public byte[] hash() {
+		return TypedAdjustMarginRequestCodec.hash(this);
+	}
+
+	@Override
+	public boolean checkNonce(NonceTable table) {
+		return table.checkAndAdvance(this.userAddress, NonceTable.Type.AdjustMargin, this.nonce);
+	}
+	
+	@SuppressWarnings("rawtypes")
+	@Override
+	protected List<Type> createValues() {
+		return TypedAdjustMarginRequestCodec.types(this);
+	}
+	
+	@Override
+	protected String abiType() {
+		return TypedAdjustMarginRequestCodec.ABI_TYPE;
 	}
 
 	@Override
@@ -1,49 +1,45 @@
 package boomflow.eip712;
 
 import java.math.BigInteger;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-import org.web3j.abi.datatypes.StaticStruct;
-import org.web3j.abi.datatypes.generated.Int256;
-import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.utils.Numeric;
 
 import boomflow.common.Address;
 import boomflow.eip712.core.Domain;
 import boomflow.eip712.core.Entry;
+import boomflow.eip712.core.LazyStaticStruct;
+import boomflow.eip712.core.ReplayIndex;
 import boomflow.eip712.core.TypedData;
+import boomflow.processor.Struct;
+import boomflow.processor.StructField;
 
-public class TypedOrder extends StaticStruct implements TypedData {
-	
-	private static final String PRIMARY_TYPE = "Order";
-	
-	private static final List<Entry> SCHEMA = Arrays.asList(
-			new Entry("userAddress", "address"),
-			new Entry("quantity", "uint256"),
-			new Entry("price", "uint256"),
-			new Entry("orderType", "uint256"),
-			new Entry("side", "int256"),
-			new Entry("salt", "uint256"),
-			new Entry("contractId", "uint256"),
-			new Entry("positionEffect", "uint256"),
-			new Entry("marginType", "uint256"),
-			new Entry("marginRate", "uint256"),
-			new Entry("posiId", "uint256"));
-	
-	private static final Map<String, List<Entry>> SCHEMAS = Collections.singletonMap(PRIMARY_TYPE, SCHEMA);
+@Struct("Order")
+public class TypedOrder extends LazyStaticStruct implements TypedData {
 	
+	@StructField(type = "address")
 	public String userAddress;
+	@StructField(type = "uint256")
 	public BigInteger quantity;
+	@StructField(type = "uint256")
 	public BigInteger price;
+	@StructField(type = "uint256")
 	public long orderType;
+	@StructField(type = "int256")
 	public long side;
+	@StructField(type = "uint256")
 	public long salt;
+	@StructField(type = "uint256")
 	public long contractId;
+	@StructField(type = "uint256")
 	public long positionEffect;
+	@StructField(type = "uint256")
 	public long marginType;
+	@StructField(type = "uint256")
 	public long marginRate;
+	@StructField(type = "uint256")
 	public long posiId;
 	
 	private Address signer;
@@ -51,10 +47,6 @@ public class TypedOrder extends StaticStruct implements TypedData {
 	
 	public TypedOrder(Address userAddress, BigInteger quantity, BigInteger price, long orderType, long side, long salt, long contractId,
 			long positionEffect, long marginType, long marginRate, long posiId, String signature) {
-		super(userAddress.toABI(), new Uint256(quantity), new Uint256(price), new Uint256(orderType), new Int256(side),
-				new Uint256(salt), new Uint256(contractId), new Uint256(positionEffect), new Uint256(marginType),
-				new Uint256(marginRate), new Uint256(posiId));
-		
 		this.userAddress = userAddress.toHex();
 		this.quantity = quantity;
 		this.price = price;
@@ -73,12 +65,41 @@ public class TypedOrder extends StaticStruct implements TypedData {
 
 	@Override
 	public String primaryType() {
-		return PRIMARY_TYPE;
+		return TypedOrderCodec.PRIMARY_TYPE;
 	}
 
 	@Override
 	public Map<String, List<Entry>> schemas() {
-		return SCHEMAS;
+		return TypedOrderCodec.SCHEMAS;
+	}
+
+	@Override
+	public Object[] values() {
+		return TypedOrderCodec.values(this);
+	}
+	
+	@Override
+	public byte[] hash() {
+		return TypedOrderCodec.hash(this);
+	}
+
+	/**
+	 * Order is identified by user address, salt and contract id.
+	 */
+	@Override
+	public ReplayIndex.Key replayKey() {
+		return new ReplayIndex.Key(Numeric.hexStringToByteArray(this.userAddress), this.salt, this.contractId);
+	}
+	
+	@SuppressWarnings("rawtypes")
+	@Override
+	protected List<Type> createValues() {
+		return TypedOrderCodec.types(this);
+	}
+	
+	@Override
+	protected String abiType() {
+		return TypedOrderCodec.ABI_TYPE;
 	}
 
 	@Override
@@ -1,39 +1,35 @@
 package boomflow.eip712;
 
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-import org.web3j.abi.datatypes.StaticStruct;
-import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.abi.datatypes.Type;
 
 import boomflow.common.Address;
 import boomflow.eip712.core.Domain;
 import boomflow.eip712.core.Entry;
+import boomflow.eip712.core.LazyStaticStruct;
+import boomflow.eip712.core.NonceTable;
 import boomflow.eip712.core.TypedData;
+import boomflow.processor.Struct;
+import boomflow.processor.StructField;
 
-public class TypedOrderCancellation extends StaticStruct implements TypedData {
-	
-	private static final String PRIMARY_TYPE = "CancelRequest";
-	
-	private static final Map<String, List<Entry>> SCHEMAS = Collections.singletonMap(PRIMARY_TYPE, Arrays.asList(
-			new Entry("userAddress", "address"),
-			new Entry("contractId", "uint256"),
-			new Entry("originalOrderId", "uint256"),
-			new Entry("nonce", "uint256")));
+@Struct("CancelRequest")
+public class TypedOrderCancellation extends LazyStaticStruct implements TypedData {
 	
+	@StructField(type = "address")
 	public String userAddress;
+	@StructField(type = "uint256")
 	public long contractId;
+	@StructField(type = "uint256")
 	public long originalOrderId;
+	@StructField(type = "uint256")
 	public long nonce;
 	
 	private Address signer;
 	private String signature;
 	
 	public TypedOrderCancellation(Address userAddress, long contractId, long orderId, long nonce, String signature) {
-		super(userAddress.toABI(), new Uint256(contractId), new Uint256(orderId), new Uint256(nonce));
-		
 		this.userAddress = userAddress.toHex();
 		this.contractId = contractId;
 		this.originalOrderId = orderId;
@@ -45,12 +41,38 @@ public class TypedOrderCancellation extends StaticStruct implements TypedData {
 
 	@Override
 	public String primaryType() {
-		return PRIMARY_TYPE;
+		return TypedOrderCancellationCodec.PRIMARY_TYPE;
 	}
 
 	@Override
 	public Map<String, List<Entry>> schemas() {
-		return SCHEMAS;
+		return TypedOrderCancellationCodec.SCHEMAS;
+	}
+
+	@Override
+	public Object[] values() {
+		return TypedOrderCancellationCodec.values(this);
+	}
+	
+	@Override
+	public byte[] hash() {
+		return TypedOrderCancellationCodec.hash(this);
+	}
+
+	@Override
+	public boolean checkNonce(NonceTable table) {
+		return table.checkAndAdvance(this.userAddress, NonceTable.Type.OrderCancellation, this.nonce);
+	}
+	
+	@SuppressWarnings("rawtypes")
+	@Override
+	protected List<Type> createValues() {
+		return TypedOrderCancellationCodec.types(this);
+	}
+	
+	@Override
+	protected String abiType() {
+		return TypedOrderCancellationCodec.ABI_TYPE;
 	}
 
 	@Override
@@ -1,47 +1,44 @@
 package boomflow.eip712;
 
 import java.math.BigInteger;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.web3j.abi.datatypes.DynamicStruct;
-import org.web3j.abi.datatypes.Utf8String;
-import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.abi.datatypes.Type;
 
 import boomflow.common.Address;
-import boomflow.common.EncodeUtils;
 import boomflow.eip712.core.Domain;
 import boomflow.eip712.core.Entry;
+import boomflow.eip712.core.LazyDynamicStruct;
 import boomflow.eip712.core.TypedData;
+import boomflow.processor.Struct;
+import boomflow.processor.StructField;
 
-public class TypedPosition extends DynamicStruct implements TypedData {
+@Struct("Position")
+public class TypedPosition extends LazyDynamicStruct implements TypedData {
 	
-	private static final String PRIMARY_TYPE = "Position";
-	
-	private static final Map<String, List<Entry>> SCHEMAS = new HashMap<String, List<Entry>>();
-	
-	static {
-		SCHEMAS.put(PRIMARY_TYPE, Arrays.asList(
-				new Entry("nonce", "uint256"),
-				new Entry("userAddress", "address"),
-				new Entry("clearAccountAddress", "address"),
-				new Entry("tokenAddress", "address"),
-				new Entry("settlement", TypedSettlement.PRIMARY_TYPE),
-				new Entry("symbol", "string")));
-		SCHEMAS.put(TypedSettlement.PRIMARY_TYPE, TypedSettlement.SCHEMA);
-	}
+	/**
+	 * ABI tuple type of this struct.
+	 */
+	public static final String ABI_TYPE = TypedPositionCodec.ABI_TYPE;
 	
+	@StructField(type = "uint256")
 	public long nonce;
+	@StructField(type = "address")
 	public String userAddress;
+	@StructField(type = "address")
 	public String clearAccountAddress;
+	@StructField(type = "address")
 	public String tokenAddress;
+	@StructField
 	public TypedSettlement settlement;
+	@StructField(type = "string")
 	public String symbol;
 	
-	private Address signer;
-	private String signature;
+	@StructField(type = "address", eip712 = false)
+	Address signer;
+	@StructField(type = "bytes", eip712 = false)
+	String signature;
 	
 	public TypedPosition(long nonce, long opType, 
 			Address userAddress, Address clearAccountAddress, Address tokenAddress,
@@ -49,11 +46,6 @@ public class TypedPosition extends DynamicStruct implements TypedData {
 			BigInteger deltaMargin, BigInteger totalMargin,
 			BigInteger deltaAmount, String symbol,
 			BigInteger fee, Address gasFeeToken, BigInteger gasFee, Address signer, String signature) {
-		super(new Uint256(nonce),
-				userAddress.toABI(), clearAccountAddress.toABI(), tokenAddress.toABI(),
-				new TypedSettlement(opType, deltaMatchAmt, deltaMatchQty, deltaMargin, totalMargin, deltaAmount, fee, gasFeeToken, gasFee),
-				new Utf8String(symbol), signer.toABI(), EncodeUtils.hex2Bytes(signature));
-		
 		this.nonce = nonce;
 		this.userAddress = userAddress.toHex();
 		this.clearAccountAddress = clearAccountAddress.toHex();
@@ -67,12 +59,56 @@ public class TypedPosition extends DynamicStruct implements TypedData {
 
 	@Override
 	public String primaryType() {
-		return PRIMARY_TYPE;
+		return TypedPositionCodec.PRIMARY_TYPE;
 	}
 
 	@Override
 	public Map<String, List<Entry>> schemas() {
-		return SCHEMAS;
+		return TypedPositionCodec.SCHEMAS;
+	}
+
+	@Override
+	public Object[] values() {
+		return TypedPositionCodec.values(this);
+	}
+	
+	public long getOpType() {
+		return this.settlement.opType;
+	}
+	
+	/**
+	 * Returns the ABI encoded calldata of function with this struct as the only parameter,
+	 * which is encoded directly without web3j types.
+	 * 
+	 * @param selector function selector, see <code>EncodeUtils.selector</code> and <code>ABI_TYPE</code>.
+	 */
+	public byte[] encodeCall(byte[] selector) {
+		return TypedPositionCodec.encodeCall(this, selector);
+	}
+	
+	/**
+	 * Returns the ABI encoded calldata of function with the position array as the only parameter.
+	 * 
+	 * @param selector function selector, see <code>EncodeUtils.selector</code> and <code>ABI_TYPE</code>.
+	 */
+	public static byte[] encodeArrayCall(List<TypedPosition> positions, byte[] selector) {
+		return TypedPositionCodec.encodeArrayCall(positions, selector);
+	}
+	
+	@Override
+	public byte[] hash() {
+		return TypedPositionCodec.hash(this);
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	protected List<Type> createValues() {
+		return TypedPositionCodec.types(this);
+	}
+	
+	@Override
+	protected String abiType() {
+		return TypedPositionCodec.ABI_TYPE;
 	}
 
 	@Override
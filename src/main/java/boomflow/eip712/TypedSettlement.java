@@ -1,45 +1,39 @@
 package boomflow.eip712;
 
 import java.math.BigInteger;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-import org.web3j.abi.datatypes.StaticStruct;
-import org.web3j.abi.datatypes.generated.Int256;
-import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.abi.datatypes.Type;
 
 import boomflow.common.Address;
 import boomflow.eip712.core.Domain;
 import boomflow.eip712.core.Entry;
+import boomflow.eip712.core.LazyStaticStruct;
 import boomflow.eip712.core.TypedData;
+import boomflow.processor.Struct;
+import boomflow.processor.StructField;
 
-class TypedSettlement extends StaticStruct implements TypedData {
-	
-	static final String PRIMARY_TYPE = "Settlement";
-	
-	static final List<Entry> SCHEMA = Arrays.asList(
-			new Entry("opType", "uint256"),
-			new Entry("deltaMatchAmt", "uint256"),
-			new Entry("deltaMatchQty", "uint256"),
-			new Entry("deltaMargin", "int256"),
-			new Entry("totalMargin", "uint256"),
-			new Entry("deltaAmount", "int256"),
-			new Entry("fee", "uint256"),
-			new Entry("gasFeeToken", "address"),
-			new Entry("gasFee", "uint256"));
-	
-	private static final Map<String, List<Entry>> SCHEMAS = Collections.singletonMap(PRIMARY_TYPE, SCHEMA);
+@Struct("Settlement")
+class TypedSettlement extends LazyStaticStruct implements TypedData {
 	
+	@StructField(type = "uint256")
 	public long opType;
+	@StructField(type = "uint256")
 	public BigInteger deltaMatchAmt;
+	@StructField(type = "uint256")
 	public BigInteger deltaMatchQty;
+	@StructField(type = "int256")
 	public BigInteger deltaMargin;
+	@StructField(type = "uint256")
 	public BigInteger totalMargin;
+	@StructField(type = "int256")
 	public BigInteger deltaAmount;
+	@StructField(type = "uint256")
 	public BigInteger fee;
+	@StructField(type = "address")
 	public String gasFeeToken;
+	@StructField(type = "uint256")
 	public BigInteger gasFee;
 	
 	public TypedSettlement(long opType,
@@ -47,12 +41,6 @@ class TypedSettlement extends StaticStruct implements TypedData {
 			BigInteger deltaMargin, BigInteger totalMargin,
 			BigInteger deltaAmount,
 			BigInteger fee, Address gasFeeToken, BigInteger gasFee) {
-		super(new Uint256(opType), 
-				new Uint256(deltaMatchAmt), new Uint256(deltaMatchQty),
-				new Int256(deltaMargin), new Uint256(totalMargin),
-				new Int256(deltaAmount),
-				new Uint256(fee), gasFeeToken.toABI(), new Uint256(gasFee));
-		
 		this.opType = opType;
 		this.deltaMatchAmt = deltaMatchAmt;
 		this.deltaMatchQty = deltaMatchQty;
@@ -66,12 +54,33 @@ class TypedSettlement extends StaticStruct implements TypedData {
 
 	@Override
 	public String primaryType() {
-		return PRIMARY_TYPE;
+		return TypedSettlementCodec.PRIMARY_TYPE;
 	}
 
 	@Override
 	public Map<String, List<Entry>> schemas() {
-		return SCHEMAS;
+		return TypedSettlementCodec.SCHEMAS;
+	}
+
+	@Override
+	public Object[] values() {
+		return TypedSettlementCodec.values(this);
+	}
+	
+	@Override
+	public byte[] hash() {
+		return TypedSettlementCodec.hash(this);
+	}
+
+	@SuppressWarnings("rawtypes")
+	@Override
+	protected List<Type> createValues() {
+		return TypedSettlementCodec.types(this);
+	}
+	
+	@Override
+	protected String abiType() {
+		return TypedSettlementCodec.ABI_TYPE;
 	}
 
 	@Override
@@ -1,60 +1,71 @@
 package boomflow.eip712;
 
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-import org.web3j.abi.datatypes.Bool;
-import org.web3j.abi.datatypes.DynamicStruct;
-import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.abi.datatypes.Type;
 
 import boomflow.common.Address;
-import boomflow.common.EncodeUtils;
 import boomflow.eip712.core.Domain;
 import boomflow.eip712.core.Entry;
+import boomflow.eip712.core.LazyDynamicStruct;
 import boomflow.eip712.core.TypedData;
+import boomflow.processor.Struct;
+import boomflow.processor.StructField;
 
 /**
  * Withdraw request that supports to validate against EIP712 signature.
  */
-public class TypedWithdraw extends DynamicStruct implements TypedData {
+@Struct("WithdrawRequest")
+public class TypedWithdraw extends LazyDynamicStruct implements TypedData {
 	
-	private static final Map<String, List<Entry>> SCHEMAS;
-	
-	static {
-		List<Entry> types = new ArrayList<Entry>(TypedWithdrawUser.SCHEMA);
-		types.add(new Entry("gasFeeToken", "address"));
-		types.add(new Entry("gasFeeAmount", "uint256"));
-		types.add(new Entry("gasFeeRecipient", "address"));
-		SCHEMAS = Collections.singletonMap(TypedWithdrawUser.PRIMARY_TYPE, types);
-	}
+	/**
+	 * ABI tuple type of this struct.
+	 */
+	public static final String ABI_TYPE = TypedWithdrawCodec.ABI_TYPE;
 	
+	@StructField(type = "address")
 	public String userAddress;
+	@StructField(type = "uint256")
 	public BigInteger amount;
+	@StructField(type = "address")
 	public String recipient;
+	@StructField(type = "bool")
 	public boolean burn;
-	public long nonce;
+	
+	@StructField(type = "uint256", eip712 = false)
+	long userNonce;
+	@StructField(type = "bytes", eip712 = false)
+	String userSignature;
+	
+	@StructField(type = "address")
 	public String gasFeeToken;
+	@StructField(type = "uint256")
 	public BigInteger gasFeeAmount;
+	@StructField(type = "address")
 	public String gasFeeRecipient;
 	
+	// signer nonce, which is the 5th field in EIP712 schema
+	@StructField(type = "uint256", eip712Index = 4)
+	public long nonce;
+	
+	@StructField(type = "address", eip712 = false)
+	Address signer;
+	@StructField(type = "bytes", eip712 = false)
+	String signature;
+	
 	private Address contractAddress;
-	private Address signer;
-	private String signature;
 	
 	public TypedWithdraw(Address userAddress, BigInteger amount, Address recipient, boolean burn, long userNonce, String userSignature,
 			Address gasFeeToken, BigInteger gasFeeAmount, Address gasFeeRecipient, long signerNonce,
 			Address contractAddress, Address signer, String signature) {
-		super(userAddress.toABI(), new Uint256(amount), recipient.toABI(), new Bool(burn), new Uint256(userNonce), EncodeUtils.hex2Bytes(userSignature),
-				gasFeeToken.toABI(), new Uint256(gasFeeAmount), gasFeeRecipient.toABI(), new Uint256(signerNonce),
-				signer.toABI(), EncodeUtils.hex2Bytes(signature));
-		
 		this.userAddress = userAddress.toHex();
 		this.amount = amount;
 		this.recipient = recipient.toHex();
 		this.burn = burn;
+		this.userNonce = userNonce;
+		this.userSignature = userSignature;
 		this.nonce = signerNonce;
 		
 		this.gasFeeToken = gasFeeToken.toHex();
@@ -68,12 +79,43 @@ public class TypedWithdraw extends DynamicStruct implements TypedData {
 
 	@Override
 	public String primaryType() {
-		return TypedWithdrawUser.PRIMARY_TYPE;
+		return TypedWithdrawCodec.PRIMARY_TYPE;
 	}
 
 	@Override
 	public Map<String, List<Entry>> schemas() {
-		return SCHEMAS;
+		return TypedWithdrawCodec.SCHEMAS;
+	}
+	
+	@Override
+	public Object[] values() {
+		return TypedWithdrawCodec.values(this);
+	}
+	
+	/**
+	 * Returns the ABI encoded calldata of function with this struct as the only parameter,
+	 * which is encoded directly without web3j types.
+	 * 
+	 * @param selector function selector, see <code>EncodeUtils.selector</code> and <code>ABI_TYPE</code>.
+	 */
+	public byte[] encodeCall(byte[] selector) {
+		return TypedWithdrawCodec.encodeCall(this, selector);
+	}
+	
+	@Override
+	public byte[] hash() {
+		return TypedWithdrawCodec.hash(this);
+	}
+	
+	@SuppressWarnings("rawtypes")
+	@Override
+	protected List<Type> createValues() {
+		return TypedWithdrawCodec.types(this);
+	}
+	
+	@Override
+	protected String abiType() {
+		return TypedWithdrawCodec.ABI_TYPE;
 	}
 	
 	@Override
@@ -1,47 +1,41 @@
 package boomflow.eip712;
 
 import java.math.BigInteger;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-import org.web3j.abi.datatypes.Bool;
-import org.web3j.abi.datatypes.DynamicStruct;
-import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.abi.datatypes.Type;
 
 import boomflow.common.Address;
-import boomflow.common.EncodeUtils;
 import boomflow.eip712.core.Domain;
 import boomflow.eip712.core.Entry;
+import boomflow.eip712.core.LazyDynamicStruct;
+import boomflow.eip712.core.NonceTable;
 import boomflow.eip712.core.TypedData;
+import boomflow.processor.Struct;
+import boomflow.processor.StructField;
 
-public class TypedWithdrawUser extends DynamicStruct implements TypedData {
-	
-	static final String PRIMARY_TYPE = "WithdrawRequest";
-	
-	static final List<Entry> SCHEMA = Arrays.asList(
-			new Entry("userAddress", "address"),
-			new Entry("amount", "uint256"),
-			new Entry("recipient", "address"),
-			new Entry("burn", "bool"),
-			new Entry("nonce", "uint256"));
-	
-	private static final Map<String, List<Entry>> SCHEMAS = Collections.singletonMap(PRIMARY_TYPE, SCHEMA);
+@Struct("WithdrawRequest")
+public class TypedWithdrawUser extends LazyDynamicStruct implements TypedData {
 	
+	@StructField(type = "address")
 	public String userAddress;
+	@StructField(type = "uint256")
 	public BigInteger amount;
+	@StructField(type = "address")
 	public String recipient;
+	@StructField(type = "bool")
 	public boolean burn;
+	@StructField(type = "uint256")
 	public long nonce;
 	
+	@StructField(type = "bytes", eip712 = false)
+	String signature;
+	
 	private Address contractAddress;
 	private Address signer;
-	private String signature;
 	
 	public TypedWithdrawUser(Address userAddress, BigInteger amount, Address recipient, boolean burn, long nonce, Address contractAddress, String signature) {
-		super(userAddress.toABI(), new Uint256(amount), recipient.toABI(), new Bool(burn), new Uint256(nonce), EncodeUtils.hex2Bytes(signature));
-		
 		this.userAddress = userAddress.toHex();
 		this.amount = amount;
 		this.recipient = recipient.toHex();
@@ -55,12 +49,38 @@ public class TypedWithdrawUser extends DynamicStruct implements TypedData {
 
 	@Override
 	public String primaryType() {
-		return PRIMARY_TYPE;
+		return TypedWithdrawUserCodec.PRIMARY_TYPE;
 	}
 
 	@Override
 	public Map<String, List<Entry>> schemas() {
-		return SCHEMAS;
+		return TypedWithdrawUserCodec.SCHEMAS;
+	}
+
+	@Override
+	public Object[] values() {
+		return TypedWithdrawUserCodec.values(this);
+	}
+	
+	@Override
+	public byte[] hash() {
+		return TypedWithdrawUserCodec.hash(this);
+	}
+
+	@Override
+	public boolean checkNonce(NonceTable table) {
+		return table.checkAndAdvance(this.userAddress, NonceTable.Type.Withdraw, this.nonce);
+	}
+	
+	@SuppressWarnings("rawtypes")
+	@Override
+	protected List<Type> createValues() {
+		return TypedWithdrawUserCodec.types(this);
+	}
+	
+	@Override
+	protected String abiType() {
+		return TypedWithdrawUserCodec.ABI_TYPE;
 	}
 
 	@Override
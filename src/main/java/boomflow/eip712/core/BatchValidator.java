@@ -0,0 +1,211 @@
+package boomflow.eip712.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * BatchValidator validates a batch of typed data (e.g. orders, cancellations or withdraws)
+ * in parallel, which is useful to handle a burst of user requests.
+ *
+ * Typed data are grouped by domain, so that the domain separator is computed only once
+ * for each group. Then, hashing and signature recovery are spread across a ForkJoin pool,
+ * and the stateful replay and nonce checks are applied in order afterwards.
+ */
+public class BatchValidator {
+	
+	// minimum number of items to validate in a single task.
+	private static final int DEFAULT_TASK_SIZE = 16;
+	
+	private ForkJoinPool pool;
+	private int taskSize;
+	
+	/**
+	 * Create an instance with the common ForkJoin pool.
+	 */
+	public BatchValidator() {
+		this(ForkJoinPool.commonPool());
+	}
+	
+	public BatchValidator(ForkJoinPool pool) {
+		this(pool, DEFAULT_TASK_SIZE);
+	}
+	
+	/**
+	 * Create an instance of BatchValidator.
+	 * @param pool ForkJoin pool to validate typed data in parallel.
+	 * @param taskSize minimum number of items to validate in a single task, which should not be too small to reduce the scheduling overhead.
+	 */
+	public BatchValidator(ForkJoinPool pool, int taskSize) {
+		if (taskSize <= 0) {
+			throw new IllegalArgumentException("taskSize should be greater than 0");
+		}
+		
+		this.pool = pool;
+		this.taskSize = taskSize;
+	}
+	
+	/**
+	 * Validates all the specified typed data as new user requests with the signer address and signature,
+	 * including the replay and nonce check, see <code>TypedData.validateRequest</code>.
+	 *
+	 * Note, any exception will be caught and returned as the failure reason of result.
+	 *
+	 * @return validation results in the same order of specified typed data.
+	 */
+	@SuppressWarnings("serial")
+	public List<Result> validate(Collection<? extends TypedData> data) {
+		TypedData[] items = data.toArray(new TypedData[data.size()]);
+		Result[] results = new Result[items.length];
+		
+		// group by domain
+		Map<Domain, List<Integer>> groups = new IdentityHashMap<Domain, List<Integer>>();
+		for (int i = 0; i < items.length; i++) {
+			try {
+				groups.computeIfAbsent(items[i].domain(), d -> new ArrayList<Integer>()).add(i);
+			} catch (Exception e) {
+				results[i] = Result.failure(items[i], e);
+			}
+		}
+		
+		List<ValidateTask> tasks = new ArrayList<ValidateTask>(groups.size());
+		for (Map.Entry<Domain, List<Integer>> group : groups.entrySet()) {
+			// compute the domain separator only once for each group,
+			// and any error will be reported for each item in group.
+			try {
+				StructHasher.domainSeparator(group.getKey());
+			} catch (Exception e) {
+				// ignore
+			}
+			
+			int[] indices = group.getValue().stream().mapToInt(Integer::intValue).toArray();
+			tasks.add(new ValidateTask(items, results, indices, 0, indices.length));
+		}
+		
+		this.pool.invoke(new RecursiveAction() {
+			
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		
+		});
+		
+		// accept in order, so that the result is deterministic for requests of the same user
+		for (int i = 0; i < items.length; i++) {
+			if (!results[i].isValid()) {
+				continue;
+			}
+			
+			try {
+				items[i].acceptRequest();
+			} catch (Exception e) {
+				results[i] = Result.failure(items[i], e);
+			}
+		}
+		
+		return Arrays.asList(results);
+	}
+	
+	/**
+	 * Validates the hash and signature of a single typed data, which is stateless.
+	 */
+	static Result validate(TypedData data) {
+		try {
+			data.rejectReplayed();
+			return Result.success(data, data.validate());
+		} catch (Exception e) {
+			return Result.failure(data, e);
+		}
+	}
+	
+	@SuppressWarnings("serial")
+	private class ValidateTask extends RecursiveAction {
+		
+		private TypedData[] items;
+		private Result[] results;
+		private int[] indices;
+		private int from;
+		private int to;
+		
+		ValidateTask(TypedData[] items, Result[] results, int[] indices, int from, int to) {
+			this.items = items;
+			this.results = results;
+			this.indices = indices;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= BatchValidator.this.taskSize) {
+				for (int i = this.from; i < this.to; i++) {
+					int index = this.indices[i];
+					this.results[index] = validate(this.items[index]);
+				}
+			} else {
+				int mid = (this.from + this.to) >>> 1;
+				invokeAll(new ValidateTask(this.items, this.results, this.indices, this.from, mid),
+						new ValidateTask(this.items, this.results, this.indices, mid, this.to));
+			}
+		}
+	
+	}
+	
+	/**
+	 * Validation result of a single typed data.
+	 */
+	public static class Result {
+		
+		private TypedData data;
+		private String hash;
+		private String error;
+		
+		private Result(TypedData data, String hash, String error) {
+			this.data = data;
+			this.hash = hash;
+			this.error = error;
+		}
+		
+		static Result success(TypedData data, String hash) {
+			return new Result(data, hash, null);
+		}
+		
+		static Result failure(TypedData data, Exception e) {
+			String error = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+			return new Result(data, null, error);
+		}
+		
+		public TypedData getData() {
+			return data;
+		}
+		
+		/**
+		 * Indicates whether the signature is valid.
+		 */
+		public boolean isValid() {
+			return this.error == null;
+		}
+		
+		/**
+		 * Returns the typed data hash in HEX format if validated, otherwise <code>null</code>.
+		 */
+		public String getHash() {
+			return hash;
+		}
+		
+		/**
+		 * Returns the failure reason if failed to validate, otherwise <code>null</code>.
+		 */
+		public String getError() {
+			return error;
+		}
+	
+	}
+
+}
@@ -33,6 +33,9 @@ public class Domain {
 	private long chainId;
 	private Address verifyingContractAddress;
 	
+	// domain separator cached by StructHasher
+	transient volatile byte[] separator;
+	
 	public Domain(String name, Address contract) {
 		this(name, defaultVersion, defaultChainId, contract);
 	}
@@ -0,0 +1,83 @@
+package boomflow.eip712.core;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.web3j.abi.datatypes.DynamicStruct;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.generated.Uint256;
+
+/**
+ * DynamicStruct whose web3j field types are created on demand, e.g. when ABI encoded via
+ * <code>FunctionEncoder</code>. So, typed data that only hashed and validated will not
+ * allocate any web3j type.
+ */
+@SuppressWarnings("rawtypes")
+public abstract class LazyDynamicStruct extends DynamicStruct {
+	
+	// web3j requires at least one field, which is never used.
+	private static final Type PLACEHOLDER = Uint256.DEFAULT;
+	
+	private volatile List<Type> values;
+	
+	protected LazyDynamicStruct() {
+		super(PLACEHOLDER);
+	}
+	
+	/**
+	 * Creates web3j types of fields in ABI order.
+	 */
+	protected abstract List<Type> createValues();
+	
+	/**
+	 * Returns the ABI tuple type, e.g. (address,uint256).
+	 */
+	protected abstract String abiType();
+	
+	@Override
+	public List<Type> getValue() {
+		List<Type> values = this.values;
+		
+		if (values == null) {
+			values = Collections.unmodifiableList(this.createValues());
+			this.values = values;
+		}
+		
+		return values;
+	}
+	
+	@Override
+	public String getTypeAsString() {
+		return this.abiType();
+	}
+	
+	@Override
+	public int bytes32PaddedLength() {
+		// offset of dynamic struct
+		int length = 32;
+		for (Type value : this.getValue()) {
+			length += value.bytes32PaddedLength();
+		}
+		
+		return length;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		
+		if (obj == null || this.getClass() != obj.getClass()) {
+			return false;
+		}
+		
+		return this.getValue().equals(((LazyDynamicStruct) obj).getValue());
+	}
+	
+	@Override
+	public int hashCode() {
+		return this.getValue().hashCode();
+	}
+
+}
@@ -0,0 +1,422 @@
+package boomflow.eip712.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * NonceTable tracks the last nonce of each user for signed requests, e.g. withdraw or order
+ * cancellation, so as to reject replayed requests. Nonce should be monotonically increasing
+ * for each user and request type.
+ *
+ * Users are keyed by the 20 bytes address (not HEX string), and stored in primitive arrays
+ * of open addressing hash tables. The table is split into stripes with a lock for each.
+ */
+public class NonceTable {
+	
+	/**
+	 * Request types that have individual nonce.
+	 */
+	public static enum Type {
+		Withdraw,
+		OrderCancellation,
+		AdjustMargin,
+		AdjustMarginRate,
+	}
+	
+	private static final int TYPES = Type.values().length;
+	
+	private static final int SNAPSHOT_MAGIC = 0x4E4F4E43;	// NONC
+	private static final int SNAPSHOT_VERSION = 1;
+	
+	private static final int DEFAULT_STRIPES = 64;
+	private static final int INITIAL_CAPACITY = 64;
+	
+	private static volatile NonceTable instance;
+	
+	private Stripe[] stripes;
+	private int stripeMask;
+	
+	public NonceTable() {
+		this(DEFAULT_STRIPES);
+	}
+	
+	/**
+	 * Create a table with specified number of stripes, which will be rounded up to power of 2.
+	 */
+	public NonceTable(int stripes) {
+		if (stripes <= 0 || stripes > (1 << 16)) {
+			throw new IllegalArgumentException("stripes should be in range [1, 65536]");
+		}
+		
+		int bits = 32 - Integer.numberOfLeadingZeros(stripes - 1);
+		this.stripes = new Stripe[1 << bits];
+		this.stripeMask = this.stripes.length - 1;
+		
+		for (int i = 0; i < this.stripes.length; i++) {
+			this.stripes[i] = new Stripe();
+		}
+	}
+	
+	/**
+	 * Returns the table used by <code>TypedData.validateRequest</code>, or <code>null</code> if disabled.
+	 */
+	public static NonceTable getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Enables the nonce check in <code>TypedData.validateRequest</code>, or disables if <code>null</code>.
+	 */
+	public static void setInstance(NonceTable table) {
+		NonceTable.instance = table;
+	}
+	
+	/**
+	 * Advances the nonce of specified user and request type if greater than the last one.
+	 *
+	 * @param user 20 bytes user address.
+	 * @param type request type.
+	 * @param nonce non-negative nonce in request.
+	 * @return <code>false</code> if nonce is not greater than the last one, i.e. replayed.
+	 */
+	public boolean checkAndAdvance(byte[] user, Type type, long nonce) {
+		if (user.length != 20) {
+			throw new IllegalArgumentException("user address should be 20 bytes");
+		}
+		
+		return this.checkAndAdvance(readLong(user, 0), readLong(user, 8), readInt(user, 16), type, nonce);
+	}
+	
+	/**
+	 * Advances the nonce of specified user in HEX format, which is decoded without allocation.
+	 *
+	 * @see #checkAndAdvance(byte[], Type, long)
+	 */
+	public boolean checkAndAdvance(String hexUser, Type type, long nonce) {
+		int offset = checkHexAddress(hexUser);
+		return this.checkAndAdvance(parseLong(hexUser, offset, 16), parseLong(hexUser, offset + 16, 16),
+				(int) parseLong(hexUser, offset + 32, 8), type, nonce);
+	}
+	
+	private boolean checkAndAdvance(long k0, long k1, int k2, Type type, long nonce) {
+		if (nonce < 0) {
+			throw new IllegalArgumentException("nonce should not be negative");
+		}
+		
+		long hash = hash(k0, k1, k2);
+		Stripe stripe = this.stripe(hash);
+		
+		synchronized (stripe) {
+			int slot = stripe.findOrInsert(k0, k1, k2, hash);
+			int index = slot * TYPES + type.ordinal();
+			
+			if (nonce <= stripe.nonces[index]) {
+				return false;
+			}
+			
+			stripe.nonces[index] = nonce;
+			return true;
+		}
+	}
+	
+	/**
+	 * Returns the last nonce of specified user and request type, or -1 if not found.
+	 */
+	public long get(byte[] user, Type type) {
+		if (user.length != 20) {
+			throw new IllegalArgumentException("user address should be 20 bytes");
+		}
+		
+		return this.get(readLong(user, 0), readLong(user, 8), readInt(user, 16), type);
+	}
+	
+	/**
+	 * Returns the last nonce of specified user in HEX format and request type, or -1 if not found.
+	 */
+	public long get(String hexUser, Type type) {
+		int offset = checkHexAddress(hexUser);
+		return this.get(parseLong(hexUser, offset, 16), parseLong(hexUser, offset + 16, 16),
+				(int) parseLong(hexUser, offset + 32, 8), type);
+	}
+	
+	private long get(long k0, long k1, int k2, Type type) {
+		long hash = hash(k0, k1, k2);
+		Stripe stripe = this.stripe(hash);
+		
+		synchronized (stripe) {
+			int slot = stripe.find(k0, k1, k2, hash);
+			return slot < 0 ? -1 : stripe.nonces[slot * TYPES + type.ordinal()];
+		}
+	}
+	
+	/**
+	 * Returns the number of users.
+	 */
+	public int size() {
+		int size = 0;
+		
+		for (Stripe stripe : this.stripes) {
+			synchronized (stripe) {
+				size += stripe.size;
+			}
+		}
+		
+		return size;
+	}
+	
+	/**
+	 * Writes all nonces into the specified stream in a compact format:
+	 * magic, version, number of types, then for each user: 20 bytes address and nonces (plus 1)
+	 * as unsigned variable-length integer, and ends with a zero byte.
+	 *
+	 * Stripes are locked one by one, so concurrent updates on other stripes are allowed.
+	 */
+	public void snapshot(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(SNAPSHOT_MAGIC);
+		data.writeByte(SNAPSHOT_VERSION);
+		data.writeByte(TYPES);
+		
+		for (Stripe stripe : this.stripes) {
+			synchronized (stripe) {
+				for (int slot = 0; slot < stripe.used.length; slot++) {
+					if (!stripe.used[slot]) {
+						continue;
+					}
+					
+					data.writeByte(1);
+					data.writeLong(stripe.keys0[slot]);
+					data.writeLong(stripe.keys1[slot]);
+					data.writeInt(stripe.keys2[slot]);
+					
+					for (int i = 0; i < TYPES; i++) {
+						writeVarLong(data, stripe.nonces[slot * TYPES + i] + 1);
+					}
+				}
+			}
+		}
+		
+		data.writeByte(0);
+		data.flush();
+	}
+	
+	/**
+	 * Restores nonces from the specified stream written by <code>snapshot</code>. Existing
+	 * nonce in table will be kept if greater than the restored one.
+	 *
+	 * @return number of users restored.
+	 */
+	public int restore(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		
+		if (data.readInt() != SNAPSHOT_MAGIC) {
+			throw new IOException("invalid nonce snapshot");
+		}
+		
+		int version = data.readUnsignedByte();
+		if (version != SNAPSHOT_VERSION) {
+			throw new IOException("unsupported nonce snapshot version " + version);
+		}
+		
+		int types = data.readUnsignedByte();
+		int users = 0;
+		
+		while (data.readUnsignedByte() != 0) {
+			long k0 = data.readLong();
+			long k1 = data.readLong();
+			int k2 = data.readInt();
+			
+			long hash = hash(k0, k1, k2);
+			Stripe stripe = this.stripe(hash);
+			long[] nonces = new long[types];
+			for (int i = 0; i < types; i++) {
+				nonces[i] = readVarLong(data) - 1;
+			}
+			
+			synchronized (stripe) {
+				int slot = stripe.findOrInsert(k0, k1, k2, hash);
+				
+				// ignore unknown types of newer version
+				for (int i = 0, len = Math.min(types, TYPES); i < len; i++) {
+					int index = slot * TYPES + i;
+					stripe.nonces[index] = Math.max(stripe.nonces[index], nonces[i]);
+				}
+			}
+			
+			users++;
+		}
+		
+		return users;
+	}
+	
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		
+		out.writeByte((int) value);
+	}
+	
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		
+		throw new IOException("malformed variable-length integer");
+	}
+	
+	/**
+	 * Selects stripe by the high 32 bits of hash, since the low 32 bits are used for slot in stripe.
+	 * So, slots are not correlated with stripe no matter how large a stripe grows.
+	 */
+	private Stripe stripe(long hash) {
+		return this.stripes[(int) (hash >>> 32) & this.stripeMask];
+	}
+	
+	private static long hash(long k0, long k1, int k2) {
+		long h = k0 * 0x9E3779B97F4A7C15L + k1;
+		h = (h ^ (h >>> 32)) * 0xC2B2AE3D27D4EB4FL + k2;
+		return h ^ (h >>> 29);
+	}
+	
+	private static long readLong(byte[] bytes, int offset) {
+		long value = 0;
+		for (int i = offset; i < offset + 8; i++) {
+			value = (value << 8) | (bytes[i] & 0xFF);
+		}
+		
+		return value;
+	}
+	
+	private static int readInt(byte[] bytes, int offset) {
+		return (int) (readLong(bytes, offset - 4) & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Returns the offset of 40 HEX characters, which may be prefixed with 0x.
+	 */
+	private static int checkHexAddress(String hex) {
+		if (hex.length() == 42 && hex.charAt(0) == '0' && (hex.charAt(1) == 'x' || hex.charAt(1) == 'X')) {
+			return 2;
+		}
+		
+		if (hex.length() == 40) {
+			return 0;
+		}
+		
+		throw new IllegalArgumentException("invalid user address " + hex);
+	}
+	
+	private static long parseLong(String hex, int offset, int len) {
+		long value = 0;
+		
+		for (int i = offset; i < offset + len; i++) {
+			int digit = Character.digit(hex.charAt(i), 16);
+			if (digit < 0) {
+				throw new IllegalArgumentException("invalid user address " + hex);
+			}
+			
+			value = (value << 4) | digit;
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Open addressing hash table with linear probing.
+	 */
+	private static class Stripe {
+		
+		long[] keys0 = new long[INITIAL_CAPACITY];
+		long[] keys1 = new long[INITIAL_CAPACITY];
+		int[] keys2 = new int[INITIAL_CAPACITY];
+		boolean[] used = new boolean[INITIAL_CAPACITY];
+		long[] nonces = new long[INITIAL_CAPACITY * TYPES];
+		int size;
+		
+		int find(long k0, long k1, int k2, long hash) {
+			int mask = this.used.length - 1;
+			
+			for (int slot = (int) hash & mask; this.used[slot]; slot = (slot + 1) & mask) {
+				if (this.keys0[slot] == k0 && this.keys1[slot] == k1 && this.keys2[slot] == k2) {
+					return slot;
+				}
+			}
+			
+			return -1;
+		}
+		
+		int findOrInsert(long k0, long k1, int k2, long hash) {
+			int mask = this.used.length - 1;
+			int slot = (int) hash & mask;
+			
+			for (; this.used[slot]; slot = (slot + 1) & mask) {
+				if (this.keys0[slot] == k0 && this.keys1[slot] == k1 && this.keys2[slot] == k2) {
+					return slot;
+				}
+			}
+			
+			// keep load factor under 0.5
+			if (2 * (this.size + 1) > this.used.length) {
+				this.resize();
+				return this.findOrInsert(k0, k1, k2, hash);
+			}
+			
+			this.used[slot] = true;
+			this.keys0[slot] = k0;
+			this.keys1[slot] = k1;
+			this.keys2[slot] = k2;
+			for (int i = slot * TYPES; i < (slot + 1) * TYPES; i++) {
+				this.nonces[i] = -1;
+			}
+			
+			this.size++;
+			return slot;
+		}
+		
+		private void resize() {
+			long[] keys0 = this.keys0;
+			long[] keys1 = this.keys1;
+			int[] keys2 = this.keys2;
+			boolean[] used = this.used;
+			long[] nonces = this.nonces;
+			
+			int capacity = used.length * 2;
+			this.keys0 = new long[capacity];
+			this.keys1 = new long[capacity];
+			this.keys2 = new int[capacity];
+			this.used = new boolean[capacity];
+			this.nonces = new long[capacity * TYPES];
+			
+			int mask = capacity - 1;
+			for (int i = 0; i < used.length; i++) {
+				if (!used[i]) {
+					continue;
+				}
+				
+				int slot = (int) hash(keys0[i], keys1[i], keys2[i]) & mask;
+				while (this.used[slot]) {
+					slot = (slot + 1) & mask;
+				}
+				
+				this.used[slot] = true;
+				this.keys0[slot] = keys0[i];
+				this.keys1[slot] = keys1[i];
+				this.keys2[slot] = keys2[i];
+				System.arraycopy(nonces, i * TYPES, this.nonces, slot * TYPES, TYPES);
+			}
+		}
+	
+	}
+
+}
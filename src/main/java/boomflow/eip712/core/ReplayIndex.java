@@ -0,0 +1,328 @@
+package boomflow.eip712.core;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ReplayIndex detects replayed typed data (e.g. orders identified by user address, salt and contract id),
+ * so that duplicates could be rejected before signature recovery.
+ *
+ * It consists of an off-heap bloom filter in front, and an exact set bounded by size and TTL.
+ * New requests will be filtered by the bloom filter in most cases, and only the suspected
+ * duplicates are looked up in the exact set.
+ *
+ * Memory is flat over time: the bloom filter has 2 generations that rotate every TTL period,
+ * and the oldest entries of exact set are evicted once expired or the maximum size exceeded.
+ * So, replays are detected for at least TTL, as long as the maximum size not exceeded.
+ * A spare generation is pre-cleared outside of lock, so that rotation does not block requests.
+ */
+public class ReplayIndex {
+	
+	private static volatile ReplayIndex instance;
+	
+	private long bits;
+	private int hashes;
+	private long ttlNanos;
+	
+	// 2 generations of bloom filter, and the current one to add
+	private volatile LongBuffer currentFilter;
+	private volatile LongBuffer previousFilter;
+	// cleared filter for the next generation, or null if being cleared
+	private LongBuffer spareFilter;
+	private long generationStart = System.nanoTime();
+	
+	private int maxSize;
+	// key => expiration time in nanoseconds
+	private ConcurrentMap<Key, Long> entries = new ConcurrentHashMap<Key, Long>();
+	// keys in the order of insertion, which is also the order of expiration.
+	private ConcurrentLinkedQueue<Key> keys = new ConcurrentLinkedQueue<Key>();
+	private AtomicInteger size = new AtomicInteger();
+	
+	private LongAdder replays = new LongAdder();
+	
+	/**
+	 * Create an instance of ReplayIndex.
+	 * @param expectedInsertions expected number of requests in a TTL period, to size the bloom filter.
+	 * @param fpp false positive probability of bloom filter, e.g. 0.01.
+	 * @param maxSize maximum number of requests in exact set.
+	 * @param ttl time to live since added.
+	 * @param unit time unit of TTL.
+	 */
+	public ReplayIndex(long expectedInsertions, double fpp, int maxSize, long ttl, TimeUnit unit) {
+		if (expectedInsertions <= 0) {
+			throw new IllegalArgumentException("expectedInsertions should be greater than 0");
+		}
+		
+		if (fpp <= 0 || fpp >= 1) {
+			throw new IllegalArgumentException("fpp should be in range (0, 1)");
+		}
+		
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize should be greater than 0");
+		}
+		
+		if (ttl <= 0) {
+			throw new IllegalArgumentException("ttl should be greater than 0");
+		}
+		
+		long words = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)) / 64);
+		if (words > Integer.MAX_VALUE / 8) {
+			throw new IllegalArgumentException("bloom filter too large, please reduce expectedInsertions or increase fpp");
+		}
+		
+		this.bits = words * 64;
+		this.hashes = Math.max(1, (int) Math.round((double) this.bits / expectedInsertions * Math.log(2)));
+		this.ttlNanos = unit.toNanos(ttl);
+		this.maxSize = maxSize;
+		
+		this.currentFilter = ByteBuffer.allocateDirect((int) words * 8).asLongBuffer();
+		this.previousFilter = ByteBuffer.allocateDirect((int) words * 8).asLongBuffer();
+		this.spareFilter = ByteBuffer.allocateDirect((int) words * 8).asLongBuffer();
+	}
+	
+	/**
+	 * Returns the index used by <code>TypedData.validateRequest</code>, or <code>null</code> if disabled.
+	 */
+	public static ReplayIndex getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Enables the replay detection in <code>TypedData.validateRequest</code>, or disables if <code>null</code>.
+	 */
+	public static void setInstance(ReplayIndex index) {
+		ReplayIndex.instance = index;
+	}
+	
+	/**
+	 * Indicates whether the specified key had been added and not expired.
+	 */
+	public boolean contains(Key key) {
+		if (!this.mightContain(key)) {
+			return false;
+		}
+		
+		Long expiration = this.entries.get(key);
+		if (expiration != null && expiration - System.nanoTime() > 0) {
+			this.replays.increment();
+			return true;
+		}
+		
+		return false;
+	}
+	
+	private boolean mightContain(Key key) {
+		return this.mightContain(this.currentFilter, key) || this.mightContain(this.previousFilter, key);
+	}
+	
+	private boolean mightContain(LongBuffer filter, Key key) {
+		long hash = key.hash1;
+		
+		for (int i = 0; i < this.hashes; i++, hash += key.hash2) {
+			long index = (hash & Long.MAX_VALUE) % this.bits;
+			if ((filter.get((int) (index >>> 6)) & (1L << index)) == 0) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Adds the specified key, which should be called after request validated.
+	 *
+	 * @return <code>false</code> if key already added and not expired, i.e. replayed.
+	 */
+	public boolean add(Key key) {
+		long now = System.nanoTime();
+		Long expiration = now + this.ttlNanos;
+		
+		Long previous = this.entries.putIfAbsent(key, expiration);
+		if (previous == null) {
+			this.keys.offer(key);
+			this.size.incrementAndGet();
+		} else if (previous - now > 0 || !this.entries.replace(key, previous, expiration)) {
+			this.replays.increment();
+			return false;
+		}
+		
+		this.addFilter(key, now);
+		this.evict(now);
+		
+		return true;
+	}
+	
+	private void addFilter(Key key, long now) {
+		LongBuffer expired = null;
+		
+		synchronized (this) {
+			// rotate with the pre-cleared spare, or later if it is still being cleared
+			if (now - this.generationStart >= this.ttlNanos && this.spareFilter != null) {
+				expired = this.previousFilter;
+				this.previousFilter = this.currentFilter;
+				this.currentFilter = this.spareFilter;
+				this.spareFilter = null;
+				this.generationStart = now;
+			}
+			
+			LongBuffer filter = this.currentFilter;
+			long hash = key.hash1;
+			
+			for (int i = 0; i < this.hashes; i++, hash += key.hash2) {
+				long index = (hash & Long.MAX_VALUE) % this.bits;
+				int word = (int) (index >>> 6);
+				filter.put(word, filter.get(word) | (1L << index));
+			}
+		}
+		
+		// clear the expired generation outside of lock to reuse as spare
+		if (expired != null) {
+			clear(expired);
+			
+			synchronized (this) {
+				this.spareFilter = expired;
+			}
+		}
+	}
+	
+	private static void clear(LongBuffer filter) {
+		for (int i = 0, len = filter.capacity(); i < len; i++) {
+			filter.put(i, 0);
+		}
+	}
+	
+	/**
+	 * Evicts expired entries, and the oldest entries if maximum size exceeded.
+	 */
+	private void evict(long now) {
+		while (true) {
+			Key oldest = this.keys.peek();
+			if (oldest == null) {
+				break;
+			}
+			
+			Long expiration = this.entries.get(oldest);
+			if (this.size.get() <= this.maxSize && expiration != null && expiration - now > 0) {
+				break;
+			}
+			
+			Key key = this.keys.poll();
+			if (key == null) {
+				break;
+			}
+			
+			if (this.entries.remove(key) != null) {
+				this.size.decrementAndGet();
+			}
+		}
+	}
+	
+	public synchronized void clear() {
+		clear(this.currentFilter);
+		clear(this.previousFilter);
+		if (this.spareFilter != null) {
+			clear(this.spareFilter);
+		}
+		
+		Key key;
+		while ((key = this.keys.poll()) != null) {
+			if (this.entries.remove(key) != null) {
+				this.size.decrementAndGet();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of keys in exact set, including the expired ones not evicted yet.
+	 */
+	public int size() {
+		return this.size.get();
+	}
+	
+	/**
+	 * Returns the number of replays detected.
+	 */
+	public long getReplays() {
+		return this.replays.sum();
+	}
+	
+	/**
+	 * Key to identify a request, e.g. user address, salt and contract id for order.
+	 */
+	public static class Key {
+		
+		private byte[] user;
+		private long id;
+		private long scope;
+		
+		private long hash1;
+		private long hash2;
+		
+		/**
+		 * Create a key.
+		 * @param user 20 bytes user address.
+		 * @param id unique id of request for user, e.g. salt or nonce.
+		 * @param scope scope of id, e.g. contract id.
+		 */
+		public Key(byte[] user, long id, long scope) {
+			this.user = user;
+			this.id = id;
+			this.scope = scope;
+			
+			long hash = 0x9E3779B97F4A7C15L;
+			for (int i = 0; i < user.length; i += 8) {
+				long word = 0;
+				for (int j = i, end = Math.min(i + 8, user.length); j < end; j++) {
+					word = (word << 8) | (user[j] & 0xFF);
+				}
+				
+				hash = mix(hash ^ word);
+			}
+			
+			hash = mix(hash ^ id);
+			hash = mix(hash ^ scope);
+			
+			this.hash1 = hash;
+			// odd to cover all bits of filter
+			this.hash2 = mix(hash ^ 0xC2B2AE3D27D4EB4FL) | 1;
+		}
+		
+		/**
+		 * Finalization mix of MurmurHash3.
+		 */
+		private static long mix(long h) {
+			h ^= h >>> 33;
+			h *= 0xFF51AFD7ED558CCDL;
+			h ^= h >>> 33;
+			h *= 0xC4CEB9FE1A85EC53L;
+			h ^= h >>> 33;
+			return h;
+		}
+		
+		@Override
+		public int hashCode() {
+			return (int) (this.hash1 ^ (this.hash1 >>> 32));
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			
+			Key other = (Key) obj;
+			return this.id == other.id
+					&& this.scope == other.scope
+					&& Arrays.equals(this.user, other.user);
+		}
+	
+	}
+
+}
@@ -0,0 +1,114 @@
+package boomflow.eip712.core;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+import org.web3j.crypto.Hash;
+import org.web3j.utils.Numeric;
+
+/**
+ * Utilities to encode struct fields for both EIP712 and ABI. Atomic types are encoded
+ * into 32 bytes in the same way, while dynamic types are hashed for EIP712 and
+ * length prefixed for ABI.
+ *
+ * Note, the 32 bytes to encode into should be zero filled.
+ */
+public class StructEncoding {
+	
+	public static void encodeAddress(String hex, byte[] out, int offset) {
+		byte[] address = Numeric.hexStringToByteArray(hex);
+		if (address.length > 32) {
+			throw new RuntimeException("invalid address " + hex);
+		}
+		
+		System.arraycopy(address, 0, out, offset + 32 - address.length, address.length);
+	}
+	
+	public static void encodeBool(boolean value, byte[] out, int offset) {
+		if (value) {
+			out[offset + 31] = 1;
+		}
+	}
+	
+	public static void encodeInt(long value, int bits, boolean signed, byte[] out, int offset) {
+		if (value < 0 && !signed) {
+			throw new RuntimeException("negative value for unsigned integer: " + value);
+		}
+		
+		if (bits < 64) {
+			int maxBits = signed ? bits - 1 : bits;
+			if ((value < 0 ? ~value : value) >>> maxBits != 0) {
+				throw new RuntimeException(String.format("value out of range for %sint%d: %d", signed ? "" : "u", bits, value));
+			}
+		}
+		
+		if (value < 0) {
+			for (int i = offset; i < offset + 24; i++) {
+				out[i] = (byte) 0xFF;
+			}
+		}
+		
+		for (int i = offset + 31; i >= offset + 24; i--) {
+			out[i] = (byte) value;
+			value >>= 8;
+		}
+	}
+	
+	public static void encodeInt(BigInteger value, int bits, boolean signed, byte[] out, int offset) {
+		int maxBits = signed ? bits - 1 : bits;
+		if ((!signed && value.signum() < 0) || value.bitLength() > maxBits) {
+			throw new RuntimeException(String.format("value out of range for %sint%d: %s", signed ? "" : "u", bits, value));
+		}
+		
+		byte[] bytes = value.toByteArray();
+		int len = Math.min(bytes.length, 32);
+		
+		if (value.signum() < 0) {
+			for (int i = offset; i < offset + 32 - len; i++) {
+				out[i] = (byte) 0xFF;
+			}
+		}
+		
+		System.arraycopy(bytes, bytes.length - len, out, offset + 32 - len, len);
+	}
+	
+	/**
+	 * Encodes EIP712 string, which is the hash of UTF-8 bytes.
+	 */
+	public static void hashString(String value, byte[] out, int offset) {
+		hashBytes(value.getBytes(StandardCharsets.UTF_8), out, offset);
+	}
+	
+	/**
+	 * Encodes EIP712 bytes in HEX format, which is the hash of bytes.
+	 */
+	public static void hashBytes(String hex, byte[] out, int offset) {
+		hashBytes(Numeric.hexStringToByteArray(hex), out, offset);
+	}
+	
+	public static void hashBytes(byte[] value, byte[] out, int offset) {
+		System.arraycopy(Hash.sha3(value), 0, out, offset, 32);
+	}
+	
+	/**
+	 * Encodes ABI string in tail, which is the length followed by UTF-8 bytes padded to 32 bytes.
+	 */
+	public static byte[] encodeString(String value) {
+		return encodeBytes(value.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Encodes ABI bytes in HEX format in tail, which is the length followed by bytes padded to 32 bytes.
+	 */
+	public static byte[] encodeBytes(String hex) {
+		return encodeBytes(Numeric.hexStringToByteArray(hex));
+	}
+	
+	public static byte[] encodeBytes(byte[] value) {
+		byte[] encoded = new byte[32 + (value.length + 31) / 32 * 32];
+		encodeInt(value.length, 256, false, encoded, 0);
+		System.arraycopy(value, 0, encoded, 32, value.length);
+		return encoded;
+	}
+
+}
@@ -0,0 +1,320 @@
+package boomflow.eip712.core;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.web3j.crypto.Hash;
+
+/**
+ * StructHasher is a compiled EIP712 encoder for a struct type. The schema is
+ * compiled only once into type hash and field encoders, so that typed data could
+ * be hashed from its field values directly, without JSON serialization.
+ *
+ * Any typed data that not provides field values or contains unsupported types
+ * (e.g. array) will be hashed via <code>Template</code> as before.
+ */
+public class StructHasher {
+	
+	private static final byte[] EIP712_PREFIX = new byte[] { 0x19, 0x01 };
+	
+	// typed data class => compiled hasher, or UNSUPPORTED if failed to compile.
+	private static ConcurrentMap<Class<?>, StructHasher> hashers = new ConcurrentHashMap<Class<?>, StructHasher>();
+	
+	private static final StructHasher UNSUPPORTED = new StructHasher();
+	private static final StructHasher DOMAIN = compile(Domain.PRIMARY_TYPE, Domain.SCHEMA, null);
+	
+	private String primaryType;
+	private byte[] typeHash;
+	private FieldEncoder[] encoders;
+	
+	private StructHasher() {
+	}
+	
+	private StructHasher(String primaryType, byte[] typeHash, FieldEncoder[] encoders) {
+		this.primaryType = primaryType;
+		this.typeHash = typeHash;
+		this.encoders = encoders;
+	}
+	
+	/**
+	 * Returns the hash of specified typed data, which is the same as <code>StructuredDataEncoder</code>.
+	 */
+	public static byte[] hash(TypedData data) {
+		Object[] values = data.values();
+		StructHasher hasher = values == null ? UNSUPPORTED : hashers.computeIfAbsent(data.getClass(), c -> {
+			try {
+				return compile(data.primaryType(), data.schemas());
+			} catch (RuntimeException e) {
+				return UNSUPPORTED;
+			}
+		});
+		
+		if (hasher == UNSUPPORTED) {
+			return new Template(data).hash();
+		}
+		
+		return hash(data.domain(), hasher.hashStruct(values));
+	}
+	
+	/**
+	 * Returns the hash of typed data with specified domain and struct hash.
+	 */
+	public static byte[] hash(Domain domain, byte[] structHash) {
+		byte[] encoded = new byte[66];
+		System.arraycopy(EIP712_PREFIX, 0, encoded, 0, 2);
+		System.arraycopy(domainSeparator(domain), 0, encoded, 2, 32);
+		System.arraycopy(structHash, 0, encoded, 34, 32);
+		return Hash.sha3(encoded);
+	}
+	
+	/**
+	 * Returns the domain separator, which is cached in the specified domain.
+	 */
+	public static byte[] domainSeparator(Domain domain) {
+		byte[] separator = domain.separator;
+		
+		if (separator == null) {
+			separator = DOMAIN.hashStruct(new Object[] {
+					domain.getName(), domain.getVersion(), domain.getChainId(), domain.getVerifyingContract(),
+			});
+			domain.separator = separator;
+		}
+		
+		return separator;
+	}
+	
+	/**
+	 * Compile the primary type in specified schemas.
+	 *
+	 * @throws RuntimeException if any unsupported type found.
+	 */
+	public static StructHasher compile(String primaryType, Map<String, List<Entry>> schemas) {
+		List<Entry> schema = schemas.get(primaryType);
+		if (schema == null) {
+			throw new RuntimeException("schema not found for type " + primaryType);
+		}
+		
+		return compile(primaryType, schema, schemas);
+	}
+	
+	private static StructHasher compile(String primaryType, List<Entry> schema, Map<String, List<Entry>> schemas) {
+		FieldEncoder[] encoders = new FieldEncoder[schema.size()];
+		for (int i = 0; i < encoders.length; i++) {
+			String type = schema.get(i).getType();
+			encoders[i] = schemas != null && schemas.containsKey(type)
+					? new StructEncoder(compile(type, schemas.get(type), schemas))
+					: compileAtomic(type);
+		}
+		
+		String encodedType = encodeType(primaryType, schema, schemas);
+		byte[] typeHash = Hash.sha3(encodedType.getBytes(StandardCharsets.UTF_8));
+		
+		return new StructHasher(primaryType, typeHash, encoders);
+	}
+	
+	/**
+	 * Encode type in format "Primary(type1 name1,...)Dependency1(...)Dependency2(...)",
+	 * and dependencies are sorted by name.
+	 */
+	private static String encodeType(String primaryType, List<Entry> schema, Map<String, List<Entry>> schemas) {
+		TreeSet<String> dependencies = new TreeSet<String>();
+		if (schemas != null) {
+			collectDependencies(schema, schemas, dependencies);
+			dependencies.remove(primaryType);
+		}
+		
+		StringBuilder builder = new StringBuilder();
+		appendType(builder, primaryType, schema);
+		for (String dependency : dependencies) {
+			appendType(builder, dependency, schemas.get(dependency));
+		}
+		
+		return builder.toString();
+	}
+	
+	private static void collectDependencies(List<Entry> schema, Map<String, List<Entry>> schemas, TreeSet<String> dependencies) {
+		for (Entry entry : schema) {
+			if (schemas.containsKey(entry.getType()) && dependencies.add(entry.getType())) {
+				collectDependencies(schemas.get(entry.getType()), schemas, dependencies);
+			}
+		}
+	}
+	
+	private static void appendType(StringBuilder builder, String type, List<Entry> schema) {
+		builder.append(type).append('(');
+		
+		for (int i = 0, len = schema.size(); i < len; i++) {
+			if (i > 0) {
+				builder.append(',');
+			}
+			
+			builder.append(schema.get(i).getType()).append(' ').append(schema.get(i).getName());
+		}
+		
+		builder.append(')');
+	}
+	
+	private static FieldEncoder compileAtomic(String type) {
+		switch (type) {
+		case "address":
+			return AddressEncoder.INSTANCE;
+		case "bool":
+			return BoolEncoder.INSTANCE;
+		case "string":
+			return StringEncoder.INSTANCE;
+		case "bytes":
+			return BytesEncoder.INSTANCE;
+		default:
+			break;
+		}
+		
+		if (type.startsWith("uint")) {
+			return new IntegerEncoder(parseBits(type, 4), false);
+		}
+		
+		if (type.startsWith("int")) {
+			return new IntegerEncoder(parseBits(type, 3), true);
+		}
+		
+		throw new RuntimeException("unsupported EIP712 type " + type);
+	}
+	
+	private static int parseBits(String type, int offset) {
+		int bits = type.length() == offset ? 256 : Integer.parseInt(type.substring(offset));
+		if (bits <= 0 || bits > 256 || bits % 8 != 0) {
+			throw new RuntimeException("invalid EIP712 type " + type);
+		}
+		
+		return bits;
+	}
+	
+	public String getPrimaryType() {
+		return primaryType;
+	}
+	
+	public byte[] getTypeHash() {
+		return typeHash.clone();
+	}
+	
+	/**
+	 * Returns the struct hash for the specified field values in schema order.
+	 */
+	public byte[] hashStruct(Object[] values) {
+		if (values.length != this.encoders.length) {
+			throw new RuntimeException(String.format("%s requires %d fields, but %d provided", this.primaryType, this.encoders.length, values.length));
+		}
+		
+		byte[] encoded = new byte[32 * (values.length + 1)];
+		System.arraycopy(this.typeHash, 0, encoded, 0, 32);
+		
+		for (int i = 0; i < values.length; i++) {
+			this.encoders[i].encode(values[i], encoded, 32 * (i + 1));
+		}
+		
+		return Hash.sha3(encoded);
+	}
+	
+	/**
+	 * Encodes a field value into 32 bytes at the specified offset.
+	 */
+	private static interface FieldEncoder {
+		void encode(Object value, byte[] out, int offset);
+	}
+	
+	private static class AddressEncoder implements FieldEncoder {
+		
+		static final AddressEncoder INSTANCE = new AddressEncoder();
+		
+		@Override
+		public void encode(Object value, byte[] out, int offset) {
+			StructEncoding.encodeAddress(value.toString(), out, offset);
+		}
+	
+	}
+	
+	private static class BoolEncoder implements FieldEncoder {
+		
+		static final BoolEncoder INSTANCE = new BoolEncoder();
+		
+		@Override
+		public void encode(Object value, byte[] out, int offset) {
+			StructEncoding.encodeBool((Boolean) value, out, offset);
+		}
+	
+	}
+	
+	private static class StringEncoder implements FieldEncoder {
+		
+		static final StringEncoder INSTANCE = new StringEncoder();
+		
+		@Override
+		public void encode(Object value, byte[] out, int offset) {
+			StructEncoding.hashString(value.toString(), out, offset);
+		}
+	
+	}
+	
+	private static class BytesEncoder implements FieldEncoder {
+		
+		static final BytesEncoder INSTANCE = new BytesEncoder();
+		
+		@Override
+		public void encode(Object value, byte[] out, int offset) {
+			if (value instanceof byte[]) {
+				StructEncoding.hashBytes((byte[]) value, out, offset);
+			} else {
+				StructEncoding.hashBytes(value.toString(), out, offset);
+			}
+		}
+	
+	}
+	
+	private static class IntegerEncoder implements FieldEncoder {
+		
+		private int bits;
+		private boolean signed;
+		
+		IntegerEncoder(int bits, boolean signed) {
+			this.bits = bits;
+			this.signed = signed;
+		}
+		
+		@Override
+		public void encode(Object value, byte[] out, int offset) {
+			if (value instanceof Long || value instanceof Integer) {
+				StructEncoding.encodeInt(((Number) value).longValue(), this.bits, this.signed, out, offset);
+			} else if (value instanceof BigInteger) {
+				StructEncoding.encodeInt((BigInteger) value, this.bits, this.signed, out, offset);
+			} else {
+				throw new RuntimeException("invalid integer value " + value);
+			}
+		}
+	
+	}
+	
+	private static class StructEncoder implements FieldEncoder {
+		
+		private StructHasher hasher;
+		
+		StructEncoder(StructHasher hasher) {
+			this.hasher = hasher;
+		}
+		
+		@Override
+		public void encode(Object value, byte[] out, int offset) {
+			Object[] values = ((TypedData) value).values();
+			if (values == null) {
+				throw new RuntimeException("field values not provided for type " + this.hasher.primaryType);
+			}
+			
+			System.arraycopy(this.hasher.hashStruct(values), 0, out, offset, 32);
+		}
+	
+	}
+
+}
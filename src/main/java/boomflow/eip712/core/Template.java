@@ -1,9 +1,12 @@
 package boomflow.eip712.core;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.web3j.crypto.StructuredDataEncoder;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -48,6 +51,18 @@ public class Template {
 		}
 	}
 	
+	/**
+	 * Returns the hash of typed data via <code>StructuredDataEncoder</code>, which parses
+	 * the JSON format of this template.
+	 */
+	public byte[] hash() {
+		try {
+			return new StructuredDataEncoder(this.toJson()).hashStructuredData();
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to create StructuredDataEncoder", e);
+		}
+	}
+	
 	@Override
 	public String toString() {
 		return this.toJson();
@@ -1,14 +1,13 @@
 package boomflow.eip712.core;
 
-import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
-import org.web3j.crypto.StructuredDataEncoder;
 import org.web3j.utils.Numeric;
 
 import boomflow.common.Address;
 import boomflow.common.SignUtils;
+import boomflow.common.ValidationException;
 
 /**
  * TypedData is implemented by any EIP712 object.
@@ -24,17 +23,21 @@ public interface TypedData {
 	Address signer();
 	String signature();
 	
+	/**
+	 * Returns the field values of primary type in schema order, so that <code>StructHasher</code>
+	 * could hash without JSON serialization. Nested struct should be returned as <code>TypedData</code>.
+	 * 
+	 * By default, returns <code>null</code> to hash via JSON template.
+	 */
+	default Object[] values() {
+		return null;
+	}
+	
 	/**
 	 * Returns the hash of this typed data.
 	 */
 	default byte[] hash() {
-		Template template = new Template(this);
-		
-		try {
-			return new StructuredDataEncoder(template.toJson()).hashStructuredData();
-		} catch (IOException e) {
-			throw new RuntimeException("Failed to create StructuredDataEncoder", e);
-		}
+		return StructHasher.hash(this);
 	}
 	
 	/**
@@ -45,7 +48,27 @@ public interface TypedData {
 	}
 	
 	/**
-	 * Validates this typed data with the signer address and signature.
+	 * Returns the key to detect replayed request via <code>ReplayIndex</code>.
+	 * 
+	 * By default, returns <code>null</code> to not detect.
+	 */
+	default ReplayIndex.Key replayKey() {
+		return null;
+	}
+	
+	/**
+	 * Checks and advances the user nonce of request via <code>NonceTable</code>.
+	 * 
+	 * By default, returns <code>true</code> for request without user nonce.
+	 * @return <code>false</code> if nonce is not greater than the last one, i.e. replayed.
+	 */
+	default boolean checkNonce(NonceTable table) {
+		return true;
+	}
+	
+	/**
+	 * Validates this typed data with the signer address and signature, which could be called repeatedly.
+	 * 
 	 * @return typed data hash in HEX format.
 	 */
 	default String validate() {
@@ -53,5 +76,50 @@ public interface TypedData {
 		SignUtils.validate(this.signer(), this.signature(), hash, false);
 		return Numeric.toHexString(hash);
 	}
+	
+	/**
+	 * Validates this typed data as a new user request, which is stateful and fails if called again.
+	 * 
+	 * If <code>ReplayIndex</code> enabled, replayed request will be rejected before signature validated.
+	 * If <code>NonceTable</code> enabled, user nonce will be advanced after signature validated.
+	 * @return typed data hash in HEX format.
+	 */
+	default String validateRequest() {
+		this.rejectReplayed();
+		String hash = this.validate();
+		this.acceptRequest();
+		return hash;
+	}
+	
+	/**
+	 * Rejects the known replayed request via <code>ReplayIndex</code> if enabled, which is read only
+	 * and should be called before signature validated.
+	 */
+	default void rejectReplayed() {
+		ReplayIndex index = ReplayIndex.getInstance();
+		ReplayIndex.Key key = index == null ? null : this.replayKey();
+		if (key != null && index.contains(key)) {
+			throw new ValidationException("replayed request");
+		}
+	}
+		
+	/**
+	 * Records this request via <code>ReplayIndex</code> and advances the user nonce via <code>NonceTable</code>
+	 * if enabled, which should be called after signature validated.
+	 *
+	 * Note, requests of the same user should be accepted in order, otherwise the result is nondeterministic.
+	 */
+	default void acceptRequest() {
+		ReplayIndex index = ReplayIndex.getInstance();
+		ReplayIndex.Key key = index == null ? null : this.replayKey();
+		if (key != null && !index.add(key)) {
+			throw new ValidationException("replayed request");
+		}
+		
+		NonceTable table = NonceTable.getInstance();
+		if (table != null && !this.checkNonce(table)) {
+			throw new ValidationException("invalid nonce");
+		}
+	}
 
 }
@@ -3,6 +3,7 @@ package boomflow.worker;
 import java.math.BigInteger;
 import java.util.Optional;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.web3j.crypto.Hash;
 
@@ -11,7 +12,6 @@ import boomflow.worker.settle.Settleable;
 import boomflow.worker.settle.SettlementStatus;
 import boomflow.worker.settle.TransactionRecorder;
 import conflux.web3j.Account;
-import conflux.web3j.Cfx;
 import conflux.web3j.CfxUnit;
 import conflux.web3j.RpcException;
 import conflux.web3j.types.RawTransaction;
@@ -22,8 +22,14 @@ public class CfxSettlementWorker extends SettlementWorker {
 	private static final BigInteger CHECK_NONCE_INTERVAL = BigInteger.valueOf(100);
 	private static final BigInteger CHECK_NONCE_FUTURE_THRESHOLD = BigInteger.valueOf(1000);
 	
+	// epoch height of transaction is valid in a large range, so it is unnecessary to query for every transaction
+	private static final long EPOCH_CACHE_NANOS = TimeUnit.SECONDS.toNanos(1);
+	
 	private Account admin;
 	
+	private BigInteger cachedEpoch;
+	private long cachedEpochNanos;
+	
 	public CfxSettlementWorker(ScheduledExecutorService executor, Account admin, SettlementHandler handler) {
 		super(executor, handler, new CfxTransactionConfirmationMonitor(admin.getCfx()));
 		
@@ -54,7 +60,7 @@ public class CfxSettlementWorker extends SettlementWorker {
 		this.handler.onNonceTooFuture(offChainNonce, onChainNonce);
 		
 		// wait for a while until pending transactions packed on chain
-		throw new PendingException(this.getPauseIntervalMillis(), "too many pending transactions");
+		throw PendingException.stackless(this.getPauseIntervalMillis(), "too many pending transactions");
 	}
 
 	@Override
@@ -82,29 +88,78 @@ public class CfxSettlementWorker extends SettlementWorker {
 		boolean resend = recorder != null && recorder.getLast().isLongUnexecuted();
 		
 		BigInteger nonce = resend ? recorder.getNonce() : this.admin.getNonce();
+		String signedTx = this.signTransaction(data, nonce, resend ? recorder : null);
 		
-		Cfx cfx = this.admin.getCfx();
-		BigInteger epoch = cfx.getEpochNumber().sendAndGet();
-		RawTransaction tx = data.getSettlementContext().buildCfxTx(nonce, epoch);
+		SendTransactionResult result = resend
+				? this.admin.getCfx().sendRawTransactionAndGet(signedTx)
+				: this.admin.send(signedTx);	// nonce++ if succeeded
+		
+		this.checkSendResult(data, signedTx, result, resend ? recorder : null);
+	}
+	
+	@Override
+	protected BigInteger getNextNonce() {
+		return this.admin.getNonce();
+	}
+	
+	@Override
+	protected void setNextNonce(BigInteger nonce) {
+		this.admin.setNonce(nonce);
+	}
+	
+	@Override
+	protected String signTransaction(Settleable data, BigInteger nonce) throws Exception {
+		return this.signTransaction(data, nonce, null);
+	}
+	
+	@Override
+	protected void sendSignedTransaction(Settleable data, String signedTx) throws Exception {
+		SendTransactionResult result = this.admin.getCfx().sendRawTransactionAndGet(signedTx);
+		this.checkSendResult(data, signedTx, result, null);
+	}
+	
+	/**
+	 * Builds and signs transaction with the specified nonce, and updates the settlement status.
+	 * 
+	 * @param resendRecorder previous transactions if re-send, otherwise <code>null</code>.
+	 */
+	private String signTransaction(Settleable data, BigInteger nonce, TransactionRecorder resendRecorder) throws Exception {
+		RawTransaction tx = data.getSettlementContext().buildCfxTx(nonce, this.getEpochNumber());
 		
 		// increase gas price if re-send transaction.
-		if (resend) {
-			this.increaseGasPriceOnResend(tx, recorder);
+		if (resendRecorder != null) {
+			this.increaseGasPriceOnResend(tx, resendRecorder);
 		}
 		
 		String signedTx = this.admin.sign(tx);
 		String txHash = Hash.sha3(signedTx);
 		
-		if (!resend) {
+		if (resendRecorder == null) {
 			this.handler.persistTxHashAndNonce(txHash, nonce);
 		}
 		
 		data.updateSettlement(SettlementStatus.OffChainSettled, txHash, tx);
 		
-		SendTransactionResult result = resend
-				? cfx.sendRawTransactionAndGet(signedTx)
-				: this.admin.send(signedTx);	// nonce++ if succeeded
+		return signedTx;
+	}
+		
+	private BigInteger getEpochNumber() throws RpcException {
+		long now = System.nanoTime();
+		
+		if (this.cachedEpoch == null || now - this.cachedEpochNanos > EPOCH_CACHE_NANOS) {
+			this.cachedEpoch = this.admin.getCfx().getEpochNumber().sendAndGet();
+			this.cachedEpochNanos = now;
+		}
 		
+		return this.cachedEpoch;
+	}
+	
+	/**
+	 * Handles the result to send transaction to full node.
+	 * 
+	 * @param resendRecorder previous transactions if re-send, otherwise <code>null</code>.
+	 */
+	private void checkSendResult(Settleable data, String signedTx, SendTransactionResult result, TransactionRecorder resendRecorder) throws Exception {
 		// succeeded to send transaction
 		if (result.getRawError() == null) {
 			this.relayTx(signedTx);
@@ -118,7 +173,7 @@ public class CfxSettlementWorker extends SettlementWorker {
 		case InvalidNonceTooStale:
 			// Sometimes, transaction will be re-sent due to temporary IO error,
 			// and cause TxAlreadyExists error. Just go ahead in this case.
-			if (resend && recorder.getReceipt(cfx).isPresent()) {
+			if (resendRecorder != null && resendRecorder.getReceipt(this.admin.getCfx()).isPresent()) {
 				// Failed to re-send transaction due to previous sent transaction already executed.
 				// In this case, just ignore the error, and go ahead.
 			} else {
@@ -130,7 +185,7 @@ public class CfxSettlementWorker extends SettlementWorker {
 		case TxPoolFull:
 			// In this case, client have to wait for a while and re-send transaction again.
 			this.handler.onTransactionPoolFull(data);
-			throw new PendingException(this.getPauseIntervalMillis(), "txpool is full");
+			throw PendingException.stackless(this.getPauseIntervalMillis(), "txpool is full");
 			
 		case Rlp:
 		case InvalidEpochHeight:
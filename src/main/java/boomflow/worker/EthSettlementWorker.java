@@ -4,20 +4,23 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Optional;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.web3j.crypto.Credentials;
-import org.web3j.crypto.Hash;
 import org.web3j.crypto.RawTransaction;
 import org.web3j.protocol.core.DefaultBlockParameterName;
 import org.web3j.tx.RawTransactionManager;
 import org.web3j.utils.Strings;
 
+import boomflow.common.EthTransactionSigner;
+import boomflow.common.EthTransactionSigner.SignedTransaction;
 import boomflow.common.EthWeb3Wrapper;
 import boomflow.common.Utils;
 import boomflow.common.worker.PendingException;
 import boomflow.worker.settle.Settleable;
+import boomflow.worker.settle.SettlementContext;
 import boomflow.worker.settle.SettlementStatus;
 import boomflow.worker.settle.TransactionRecorder;
 import conflux.web3j.RpcException;
@@ -28,17 +31,30 @@ public class EthSettlementWorker extends SettlementWorker {
 	private static final BigInteger CHECK_NONCE_FUTURE_THRESHOLD = BigInteger.valueOf(500);
 	
 	private static final BigDecimal DEFAULT_GAS_PRICE_BUMPUP = BigDecimal.valueOf(1.1); // 10%
+	// gas price changes slowly, so it is unnecessary to query for every transaction
+	private static final long GAS_PRICE_CACHE_NANOS = TimeUnit.SECONDS.toNanos(1);
+	
+	private static final PendingException SEND_IO_ERROR = PendingException.stackless(1000, "failed to send raw transaction due to IO error");
+	private static final PendingException GAS_PRICE_TOO_LOW = PendingException.stackless(300, "gas price too low");
 	
 	private static Logger logger = LoggerFactory.getLogger(EthSettlementWorker.class);
 	
 	private EthWeb3Wrapper web3j;
 	private RawTransactionManager manager;
+	private EthTransactionSigner signer;
+	
+	// nonce maintained locally in pipelined mode
+	private volatile BigInteger nextNonce;
+	
+	private BigInteger cachedGasPrice;
+	private long cachedGasPriceNanos;
 
 	public EthSettlementWorker(ScheduledExecutorService executor, EthWeb3Wrapper web3j, Credentials admin, SettlementHandler handler) {
 		super(executor, handler, EthTransactionConfirmationMonitor.createBSC(web3j));
 		
 		this.web3j = web3j;
 		this.manager = new RawTransactionManager(web3j.getWeb3j(), admin);
+		this.signer = new EthTransactionSigner(admin);
 	}
 	
 	@Override
@@ -53,7 +69,7 @@ public class EthSettlementWorker extends SettlementWorker {
 	@Override
 	protected void validatePendingNonce() throws PendingException, RpcException {
 		// check once every N settlements
-		BigInteger offChainNonce = this.getAdminNonce();
+		BigInteger offChainNonce = this.isPipelined() ? this.getNextNonce() : this.getAdminNonce();
 		if (offChainNonce.divideAndRemainder(CHECK_NONCE_INTERVAL)[1].compareTo(BigInteger.ZERO) != 0) {
 			return;
 		}
@@ -67,7 +83,7 @@ public class EthSettlementWorker extends SettlementWorker {
 		this.handler.onNonceTooFuture(offChainNonce, onChainNonce);
 		
 		// wait for a while until pending transactions packed on chain
-		throw new PendingException(this.getPauseIntervalMillis(), "too many pending transactions");
+		throw PendingException.stackless(this.getPauseIntervalMillis(), "too many pending transactions");
 	}
 
 	@Override
@@ -97,21 +113,61 @@ public class EthSettlementWorker extends SettlementWorker {
 		// Otherwise, retrieve the pending nonce to send for the first time.
 		BigInteger nonce = recorder == null ? this.getAdminNonce() : recorder.getNonce();
 		
-		BigInteger price = this.getBestGasPrice(recorder);
+		String signedTx = this.signTransaction(data, nonce);
+		
+		this.sendRawTransaction(data, recorder, signedTx);
+	}
+	
+	@Override
+	protected BigInteger getNextNonce() throws RpcException {
+		if (this.nextNonce == null) {
+			this.nextNonce = this.getAdminNonce();
+		}
+		
+		return this.nextNonce;
+	}
+	
+	@Override
+	protected void setNextNonce(BigInteger nonce) {
+		this.nextNonce = nonce;
+	}
+	
+	@Override
+	protected void resyncNextNonce() {
+		this.nextNonce = null;
+	}
+	
+	@Override
+	protected String signTransaction(Settleable data, BigInteger nonce) throws Exception {
+		BigInteger price = this.getBestGasPrice(data.getRecorder());
 		
-		RawTransaction tx = data.getSettlementContext().buildEthTx(nonce, price);
-		String signedTx = this.manager.sign(tx);
-		String txHash = Hash.sha3(signedTx);
+		SettlementContext context = data.getSettlementContext();
+		RawTransaction tx = context.buildEthTx(nonce, price);
+		SignedTransaction signed = this.signer.sign(tx, context.getData());
 	
-		data.updateSettlement(SettlementStatus.OffChainSettled, txHash, tx);
+		data.updateSettlement(SettlementStatus.OffChainSettled, signed.getHashHex(), tx);
 		
+		return signed.getRawHex();
+	}
+	
+	@Override
+	protected void sendSignedTransaction(Settleable data, String signedTx) throws Exception {
+		this.sendRawTransaction(data, null, signedTx);
+	}
+	
+	/**
+	 * Sends the signed transaction to full node.
+	 * 
+	 * @param recorder previous transactions before signed, or <code>null</code> if sent for the first time.
+	 */
+	private void sendRawTransaction(Settleable data, TransactionRecorder recorder, String signedTx) throws Exception {
 		try {
 			this.web3j.sendRawTransaction(signedTx);
 		} catch (RpcException e) {
 			// possible temp IO error
 			if (!Utils.isRpcError(e)) {
 				// It's up to heartbeat service to monitor the health of full node.
-				throw new PendingException(1000, "failed to send raw transaction due to IO error");
+				throw SEND_IO_ERROR;
 			}
 			
 			String msg = e.getError().getMessage();
@@ -128,7 +184,7 @@ public class EthSettlementWorker extends SettlementWorker {
 			case "replacement transaction underpriced":
 				// mark as long unexecuted and throw again to re-send with higher gas price.
 				data.getRecorder().getLast().setLongUnexecuted(true);
-				throw new PendingException(300, "gas price too low");
+				throw GAS_PRICE_TOO_LOW;
 				
 			case "insufficient funds for gas * price + value":
 				// generally, the balance should be monitored, and always be enough.
@@ -138,6 +194,13 @@ public class EthSettlementWorker extends SettlementWorker {
 				// Transaction with same nonce already executed. In this case,
 				// 1) If receipt found, just ignore this error and do not relay transaction anymore.
 				// 2) Otherwise, it is the case that service restarted and previous sent information missed.
+				// 3) Nonce out of sync if sent for the first time, e.g. account used outside.
+				if (recorder == null) {
+					// re-sync the nonce maintained locally in pipelined mode once in-flight transactions drained
+					this.requestNonceResync();
+					throw new Exception("Nonce too low to send transaction for the first time", e);
+				}
+				
 				if (!recorder.getReceipt(this.web3j).isPresent()) {
 					logger.info("Transaction already executed, but cannot find the historical record");
 				}
@@ -164,14 +227,14 @@ public class EthSettlementWorker extends SettlementWorker {
 	private BigInteger getBestGasPrice(TransactionRecorder recorder) {
 		// send for the first time
 		if (recorder == null) {
-			return this.web3j.getGasPrice();
+			return this.getGasPrice();
 		}
 		
 		Optional<BigInteger> prevGasPrice = recorder.getLast().getGasPrice();
 		
 		// service restarted
 		if (!prevGasPrice.isPresent()) {
-			return this.web3j.getGasPrice();
+			return this.getGasPrice();
 		}
 		
 		// re-send on any error
@@ -181,7 +244,18 @@ public class EthSettlementWorker extends SettlementWorker {
 		
 		// re-send with higher gas price for acceleration
 		BigInteger bumpupPrice = new BigDecimal(prevGasPrice.get()).multiply(DEFAULT_GAS_PRICE_BUMPUP).toBigInteger();
-		return this.web3j.getGasPrice().max(bumpupPrice);
+		return this.getGasPrice().max(bumpupPrice);
+	}
+	
+	private BigInteger getGasPrice() {
+		long now = System.nanoTime();
+		
+		if (this.cachedGasPrice == null || now - this.cachedGasPriceNanos > GAS_PRICE_CACHE_NANOS) {
+			this.cachedGasPrice = this.web3j.getGasPrice();
+			this.cachedGasPriceNanos = now;
+		}
+		
+		return this.cachedGasPrice;
 	}
 
 }
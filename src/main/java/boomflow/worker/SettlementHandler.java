@@ -8,6 +8,10 @@ import boomflow.worker.settle.Settleable;
 
 /**
  * SettlementHandler is used to handle important events that fired in <code>SettlementWorker</code>.
+ *
+ * If multicall enabled, transaction confirmation events are fired for each settlement packed in
+ * <code>MulticallSettlement</code>, whereas the other events are fired with the multicall settlement
+ * as a whole, whose items are available via <code>getItems</code>.
  */
 public interface SettlementHandler extends NonceKeeper, TransactionConfirmationHandler {
 	
@@ -44,6 +48,9 @@ public interface SettlementHandler extends NonceKeeper, TransactionConfirmationH
 	 * Once happened, worker will continue to re-settle the data again. Client could
 	 * pause the worker in manual if the failure not recovered in a reasonable period
 	 * of time.
+	 * 
+	 * Note, data is <code>null</code> if failed to batch data, e.g. exception thrown
+	 * by <code>Settleable.batchWith</code>.
 	 */
 	void onException(Settleable data, Exception e);
 
@@ -1,10 +1,24 @@
 package boomflow.worker;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import boomflow.common.worker.BatchWorker;
 import boomflow.common.worker.PendingException;
 import boomflow.event.Handler;
+import boomflow.worker.settle.MulticallSettlement;
+import boomflow.worker.settle.PositionSettlement;
 import boomflow.worker.settle.Settleable;
 import boomflow.worker.settle.SettlementStatus;
 import conflux.web3j.RpcException;
@@ -14,6 +28,11 @@ import conflux.web3j.RpcException;
  * 
  * When service restarted, application should reload off chain settled data 
  * and submit all of them to this worker to continue settlement.
+ *
+ * Alternatively, set a journal (see <code>setJournal</code>) whose serializer includes the transaction
+ * recorder of settlement. Settlement is journaled again once transaction signed, and completed only
+ * when transaction confirmed or failed on chain. So, settlements sent but not confirmed are replayed
+ * with the same nonce, instead of sending again with a new nonce.
  */
 public abstract class SettlementWorker extends BatchWorker<Settleable> {
 	
@@ -22,14 +41,37 @@ public abstract class SettlementWorker extends BatchWorker<Settleable> {
 	private static final int DEFAULT_WAIT_COUNTDOWN = 3;
 	private static final int DEFAULT_WAIT_INTERVAL_MILLIS = 1000;
 	
+	private static final PendingException PIPELINE_FULL = PendingException.stackless(50, "too many in-flight transactions");
+	private static final PendingException PIPELINE_DRAINING = PendingException.stackless(50, "wait for in-flight transactions acknowledged");
+	
+	private static Logger logger = LoggerFactory.getLogger(SettlementWorker.class);
+	
 	protected SettlementHandler handler;
 	protected TransactionConfirmationMonitor monitor;
 	private TransactionRelayer txRelayer;
+	private volatile boolean multicallEnabled;
+	
+	// maximum number of transactions sent but not acknowledged by full node, 1 means not pipelined
+	private volatile int pipelineWindow = 1;
+	private ScheduledExecutorService sendExecutor;
+	// in-flight transactions (nonce => Settleable) that sent asynchronously
+	private ConcurrentNavigableMap<BigInteger, Settleable> inFlight = new ConcurrentSkipListMap<BigInteger, Settleable>();
+	
+	// guards nonce assignment in pipelined mode, and the following states
+	private final Object pipelineLock = new Object();
+	// no more nonce assigned until all in-flight transactions acknowledged, e.g. to re-send or re-sync nonce
+	private boolean draining;
+	// failed in-flight transactions (nonce => Settleable) to re-send in series once drained
+	private NavigableMap<BigInteger, Settleable> resending = new TreeMap<BigInteger, Settleable>();
+	private boolean nonceResyncRequired;
 	
 	protected SettlementWorker(ScheduledExecutorService executor,
 			SettlementHandler handler,
 			TransactionConfirmationMonitor monitor) {
 		this(executor, handler, monitor, DEFAULT_BATCH_SIZE, DEFAULT_WAIT_COUNTDOWN, DEFAULT_WAIT_INTERVAL_MILLIS);
+		
+		// linger no more than the fixed waiting before, but adapt to settlement load
+		this.setAdaptiveBatching(TimeUnit.MILLISECONDS.toNanos(DEFAULT_WAIT_COUNTDOWN * DEFAULT_WAIT_INTERVAL_MILLIS));
 	}
 	
 	protected SettlementWorker(ScheduledExecutorService executor,
@@ -46,7 +88,10 @@ public abstract class SettlementWorker extends BatchWorker<Settleable> {
 			@Override
 			public void handle(Settleable data) {
 				SettlementWorker.this.submit(data, true);
-				SettlementWorker.this.handler.onTransactionLongUnexecuted(data);
+				
+				for (Settleable item : unwrap(data)) {
+					SettlementWorker.this.handler.onTransactionLongUnexecuted(item);
+				}
 			}
 			
 		});
@@ -54,13 +99,56 @@ public abstract class SettlementWorker extends BatchWorker<Settleable> {
 
 			@Override
 			public void handle(Settleable data) {
-				SettlementWorker.this.handler.onTransactionFailure(data);
+				SettlementWorker.this.completeJournal(data);
+				
+				for (Settleable item : unwrap(data)) {
+					SettlementWorker.this.handler.onTransactionFailure(item);
+				}
+				
 				SettlementWorker.this.setPaused(true);
 			}
+		
+		});
+		this.monitor.onTxConfirmed.addHandler(new Handler<Settleable>() {
+			
+			@Override
+			public void handle(Settleable data) {
+				SettlementWorker.this.completeJournal(data);
+				
+				// latency is unknown for transactions reloaded when service restarted
+				long sentNanos = data.getRecorder().getLast().getSentNanos();
+				if (sentNanos != 0) {
+					SettlementWorker.this.observeLatency(System.nanoTime() - sentNanos);
+				}
+			}
 			
 		});
 	}
 	
+	/**
+	 * Returns the settlements packed in multicall or batched positions, so that handler is notified
+	 * for each of them.
+	 */
+	private static List<Settleable> unwrap(Settleable data) {
+		if (data instanceof MulticallSettlement) {
+			List<Settleable> items = new ArrayList<Settleable>();
+			for (Settleable item : ((MulticallSettlement) data).getItems()) {
+				items.addAll(unwrap(item));
+			}
+			
+			return items;
+		}
+		
+		if (data instanceof PositionSettlement && !((PositionSettlement) data).getBatch().isEmpty()) {
+			List<Settleable> items = new ArrayList<Settleable>();
+			items.add(data);
+			items.addAll(((PositionSettlement) data).getBatch());
+			return items;
+		}
+		
+		return Collections.singletonList(data);
+	}
+	
 	@Override
 	public void setPaused(boolean paused) {
 		super.setPaused(paused);
@@ -76,6 +164,75 @@ public abstract class SettlementWorker extends BatchWorker<Settleable> {
 		this.txRelayer = txRelayer;
 	}
 	
+	public boolean isMulticallEnabled() {
+		return multicallEnabled;
+	}
+	
+	/**
+	 * Enable to pack settlements bound for the same contract, e.g. Boomflow or CRCL, into a single
+	 * multicall transaction, which requires contract to support <code>multicall(bytes[])</code>.
+	 * 
+	 * @see MulticallSettlement
+	 */
+	public void setMulticallEnabled(boolean multicallEnabled) {
+		this.multicallEnabled = multicallEnabled;
+	}
+	
+	/**
+	 * Wraps settlement as <code>MulticallSettlement</code> if multicall enabled, so as to
+	 * batch with others, or restore with others packed in the same transaction if reloaded
+	 * when service restarted.
+	 */
+	@Override
+	public void submit(Settleable data, boolean asFirst) {
+		if (this.multicallEnabled && !(data instanceof MulticallSettlement)) {
+			data = new MulticallSettlement(data);
+		}
+		
+		super.submit(data, asFirst);
+	}
+	
+	public int getPipelineWindow() {
+		return pipelineWindow;
+	}
+	
+	public boolean isPipelined() {
+		return this.pipelineWindow > 1;
+	}
+	
+	/**
+	 * Enable to settle in pipeline, so that settlement TPS is not limited by RPC round trip time.
+	 * Nonce is assigned locally in order, and transactions are sent to full node asynchronously
+	 * by the specified executor, e.g. <code>DispatchingScheduledExecutor</code> with virtual threads.
+	 * Since nonce is assigned in order, transactions are executed on chain in order even though
+	 * acknowledged by full node out of order.
+	 * 
+	 * Note, only new settlements are pipelined, and re-settlements are sent in series as before.
+	 * Failed in-flight transactions are re-sent in nonce order once all in-flight ones acknowledged.
+	 * 
+	 * @param window maximum number of in-flight transactions, which are sent but not acknowledged
+	 * by full node yet. Set to 1 to disable pipeline.
+	 */
+	public void setPipelineWindow(int window, ScheduledExecutorService sendExecutor) {
+		if (window < 1) {
+			throw new IllegalArgumentException("window should be greater than 0");
+		}
+		
+		if (window > 1 && sendExecutor == null) {
+			throw new IllegalArgumentException("send executor not specified");
+		}
+		
+		this.sendExecutor = sendExecutor;
+		this.pipelineWindow = window;
+	}
+	
+	/**
+	 * Returns the number of transactions sent to full node asynchronously but not acknowledged yet.
+	 */
+	public int getInFlightCount() {
+		return this.inFlight.size();
+	}
+	
 	protected void relayTx(String signedTx) {
 		if (this.txRelayer != null) {
 			this.txRelayer.submit(signedTx);
@@ -106,12 +263,63 @@ public abstract class SettlementWorker extends BatchWorker<Settleable> {
 	 */
 	protected abstract void sendTransaction(Settleable data) throws Exception;
 	
+	/**
+	 * Returns the next nonce to send transaction in pipelined mode, which is maintained locally.
+	 */
+	protected abstract BigInteger getNextNonce() throws RpcException;
+	
+	/**
+	 * Updates the next nonce to send transaction in pipelined mode.
+	 */
+	protected abstract void setNextNonce(BigInteger nonce);
+	
+	/**
+	 * Re-syncs the next nonce with full node in pipelined mode, which is called once all in-flight
+	 * transactions acknowledged after <code>requestNonceResync</code>. By default, do nothing.
+	 */
+	protected void resyncNextNonce() {
+	}
+	
+	/**
+	 * Requests to re-sync the next nonce in pipelined mode, e.g. nonce out of sync since account
+	 * used outside. No more nonce assigned until all in-flight transactions acknowledged, so that
+	 * nonce is not re-synced while some transactions are still being sent.
+	 */
+	protected void requestNonceResync() {
+		synchronized (this.pipelineLock) {
+			this.nonceResyncRequired = true;
+			this.draining = true;
+			this.tryDrained();
+		}
+	}
+	
+	/**
+	 * Builds and signs transaction of new settlement with the specified nonce in pipelined mode,
+	 * including updating the settlement status in database.
+	 * 
+	 * @return the signed transaction to send.
+	 */
+	protected abstract String signTransaction(Settleable data, BigInteger nonce) throws Exception;
+	
+	/**
+	 * Sends the signed transaction to full node in pipelined mode.
+	 * 
+	 * @throws PendingException if requires to send again later.
+	 */
+	protected abstract void sendSignedTransaction(Settleable data, String signedTx) throws PendingException, Exception;
+	
 	@Override
 	protected void doWork(Settleable data) throws Exception {
+		if (this.isPipelined() && data.getRecorder() == null) {
+			this.sendInPipeline(data);
+			return;
+		}
+		
 		this.validatePendingNonce();
 		
 		if (!this.isSettledOnChain(data)) {
 			this.sendTransaction(data);
+			this.updateJournal(data);
 		}
 		
 		data.updateSettlement(SettlementStatus.OnChainSettled);
@@ -119,6 +327,145 @@ public abstract class SettlementWorker extends BatchWorker<Settleable> {
 		this.monitor.add(data);
 	}
 
+	private void sendInPipeline(Settleable data) throws Exception {
+		if (this.inFlight.size() >= this.pipelineWindow) {
+			throw PIPELINE_FULL;
+		}
+		
+		this.validatePendingNonce();
+		
+		BigInteger nonce;
+		String signedTx;
+		
+		synchronized (this.pipelineLock) {
+			if (this.draining) {
+				throw PIPELINE_DRAINING;
+			}
+			
+			// nonce is consumed only if signed successfully, so as to avoid nonce gap
+			nonce = this.getNextNonce();
+			signedTx = this.signTransaction(data, nonce);
+			this.setNextNonce(nonce.add(BigInteger.ONE));
+			
+			this.inFlight.put(nonce, data);
+		}
+		
+		// replayed with the signed transaction if crashed before confirmed
+		this.updateJournal(data);
+		
+		this.sendExecutor.submit(new InFlightTx(data, nonce, signedTx));
+	}
+	
+	/**
+	 * Removes the acknowledged in-flight transaction, or the failed one to re-send in series with the
+	 * same nonce. Failed transactions are re-queued once all in-flight transactions acknowledged, so
+	 * that they are re-sent in nonce order.
+	 */
+	private void removeInFlight(BigInteger nonce, Settleable resend) {
+		synchronized (this.pipelineLock) {
+			this.inFlight.remove(nonce);
+			
+			if (resend != null) {
+				this.resending.put(nonce, resend);
+				this.draining = true;
+			}
+			
+			this.tryDrained();
+		}
+	}
+	
+	private void tryDrained() {
+		if (!this.draining || !this.inFlight.isEmpty()) {
+			return;
+		}
+		
+		// re-queue in front at once, so the lowest nonce is re-sent at first
+		this.submitFirst(new ArrayList<Settleable>(this.resending.values()));
+		this.resending.clear();
+		
+		if (this.nonceResyncRequired) {
+			this.resyncNextNonce();
+			this.nonceResyncRequired = false;
+		}
+		
+		this.draining = false;
+	}
+	
+	/**
+	 * Transaction sent to full node asynchronously, which is acknowledged once added in monitor.
+	 */
+	private class InFlightTx implements Runnable {
+		
+		private Settleable data;
+		private BigInteger nonce;
+		private String signedTx;
+		private boolean sent;
+		
+		InFlightTx(Settleable data, BigInteger nonce, String signedTx) {
+			this.data = data;
+			this.nonce = nonce;
+			this.signedTx = signedTx;
+		}
+		
+		@Override
+		public void run() {
+			SettlementWorker worker = SettlementWorker.this;
+			
+			if (worker.isPaused()) {
+				this.retryLater(worker.getPauseIntervalMillis());
+				return;
+			}
+			
+			try {
+				if (!this.sent) {
+					worker.sendSignedTransaction(this.data, this.signedTx);
+					this.sent = true;
+					this.data.updateSettlement(SettlementStatus.OnChainSettled);
+				}
+				
+				worker.monitor.add(this.data);
+			} catch (PendingException e) {
+				if (this.data.getRecorder().getLast().isLongUnexecuted()) {
+					// re-send in series with the same nonce and higher gas price
+					worker.removeInFlight(this.nonce, this.data);
+				} else {
+					this.retryLater(e.getTimeoutMillis());
+				}
+				
+				return;
+			} catch (RpcException e) {
+				// temp IO error, e.g. failed to get block number when added in monitor
+				logger.debug("failed to acknowledge in-flight transaction, nonce = {}", this.nonce, e);
+				this.retryLater(worker.getPauseIntervalMillis());
+				return;
+			} catch (Exception e) {
+				// later transactions could not be executed due to nonce gap, so administrator must be involved.
+				worker.setPaused(true);
+				worker.onFailure(this.data, e);
+				
+				// mark to re-send in series with the same nonce, so as to fill the gap once resumed
+				this.data.getRecorder().getLast().setLongUnexecuted(true);
+				worker.removeInFlight(this.nonce, this.data);
+				return;
+			}
+			
+			worker.removeInFlight(this.nonce, null);
+		}
+		
+		private void retryLater(long delayMillis) {
+			SettlementWorker.this.sendExecutor.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+		}
+	
+	}
+	
+	/**
+	 * Settlement is not finished until transaction confirmed or failed on chain.
+	 */
+	@Override
+	protected boolean isFinishedOnDone(Settleable data) {
+		return false;
+	}
+	
 	@Override
 	protected void onFailure(Settleable data, Exception e) {
 		this.handler.onException(data, e);
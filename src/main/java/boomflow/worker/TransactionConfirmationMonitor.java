@@ -13,6 +13,7 @@ import org.web3j.protocol.core.methods.response.TransactionReceipt;
 
 import boomflow.common.EthWeb3Wrapper;
 import boomflow.event.Event;
+import boomflow.worker.settle.GasModel;
 import boomflow.worker.settle.Settleable;
 import boomflow.worker.settle.SettlementStatus;
 import boomflow.worker.settle.TransactionRecorder;
@@ -26,6 +27,8 @@ import conflux.web3j.response.Receipt;
  * 
  * When service restarted, application should reload on chain settled data 
  * and add all of them to queue to continue confiramtion status monitor.
+ * Settlements sent in the same transaction (e.g. batched positions) are restored
+ * together, see <code>Settleable.restoreWith</code>.
  */
 public abstract class TransactionConfirmationMonitor {
 	
@@ -59,6 +62,11 @@ public abstract class TransactionConfirmationMonitor {
 	 */
 	Event<Settleable> onTxFailed = new Event<Settleable>();
 	
+	/**
+	 * Fired when transaction confirmed on chain.
+	 */
+	Event<Settleable> onTxConfirmed = new Event<Settleable>();
+	
 	protected TransactionConfirmationMonitor(long confirmBlocksThreshold) {
 		this.setConfirmBlocksThreshold(confirmBlocksThreshold);
 	}
@@ -133,6 +141,12 @@ public abstract class TransactionConfirmationMonitor {
 			return;
 		}
 		
+		// reloaded separately when service restarted, but sent in the same transaction
+		Settleable existing = this.items.get(recorder.getNonce());
+		if (existing != null && existing.restoreWith(item)) {
+			return;
+		}
+		
 		if (!recorder.getLast().getBlockNumber().isPresent()) {
 			BigInteger blockNumber = this.getBlockNumber();
 			recorder.getLast().setBlockNumber(blockNumber);
@@ -183,6 +197,7 @@ public abstract class TransactionConfirmationMonitor {
 				break;
 			case Confirmed:
 				settleable.updateSettlement(SettlementStatus.OnChainConfirmed);
+				this.onTxConfirmed.fire(settleable);
 				numConfirmed++;
 				break;
 			default:
@@ -243,6 +258,31 @@ public abstract class TransactionConfirmationMonitor {
 		}
 	}
 	
+	/**
+	 * Learns the gas used of confirmed transaction if <code>GasModel</code> enabled.
+	 */
+	protected void learnGasUsed(Settleable settleable, BigInteger gasUsed) {
+		GasModel model = GasModel.getInstance();
+		String key = settleable.getGasKey();
+		
+		if (model != null && key != null) {
+			model.learn(key, gasUsed);
+		}
+	}
+	
+	/**
+	 * Raises the gas limit in <code>GasModel</code> if transaction failed due to out of gas.
+	 */
+	protected void learnGasExhausted(Settleable settleable, String txHash, BigInteger gasUsed) {
+		GasModel model = GasModel.getInstance();
+		String key = settleable.getGasKey();
+		Optional<BigInteger> gasLimit = settleable.getRecorder().getGasLimit(txHash);
+		
+		if (model != null && key != null && gasUsed != null && gasLimit.isPresent() && gasUsed.compareTo(gasLimit.get()) >= 0) {
+			model.learnExhausted(key, gasLimit.get());
+		}
+	}
+	
 	public CheckConfirmationResult checkConfirmation(BigInteger nonce) throws RpcException {
 		Settleable settleable = this.items.get(nonce);
 		if (settleable == null) {
@@ -324,6 +364,7 @@ class CfxTransactionConfirmationMonitor extends TransactionConfirmationMonitor {
 		}
 
 		if (receipt.getOutcomeStatus() != 0) {
+			this.learnGasExhausted(settleable, packedTxHash, receipt.getGasUsed());
 			return CheckConfirmationResult.ExecutionFailed;
 		}
 		
@@ -331,9 +372,13 @@ class CfxTransactionConfirmationMonitor extends TransactionConfirmationMonitor {
 			return CheckConfirmationResult.ReceiptValidationFailed;
 		}
 		
-		return receipt.getEpochNumber().compareTo(confirmedBlock) <= 0
-				? CheckConfirmationResult.Confirmed
-				: CheckConfirmationResult.NotConfirmed;
+		if (receipt.getEpochNumber().compareTo(confirmedBlock) > 0) {
+			return CheckConfirmationResult.NotConfirmed;
+		}
+		
+		this.learnGasUsed(settleable, receipt.getGasUsed());
+		
+		return CheckConfirmationResult.Confirmed;
 	}
 	
 }
@@ -386,6 +431,7 @@ class EthTransactionConfirmationMonitor extends TransactionConfirmationMonitor {
 		}
 
 		if (!receipt.isStatusOK()) {
+			this.learnGasExhausted(settleable, packedTxHash, receipt.getGasUsed());
 			return CheckConfirmationResult.ExecutionFailed;
 		}
 		
@@ -393,9 +439,13 @@ class EthTransactionConfirmationMonitor extends TransactionConfirmationMonitor {
 			return CheckConfirmationResult.ReceiptValidationFailed;
 		}
 		
-		return receipt.getBlockNumber().compareTo(confirmedBlock) <= 0
-				? CheckConfirmationResult.Confirmed
-				: CheckConfirmationResult.NotConfirmed;
+		if (receipt.getBlockNumber().compareTo(confirmedBlock) > 0) {
+			return CheckConfirmationResult.NotConfirmed;
+		}
+		
+		this.learnGasUsed(settleable, receipt.getGasUsed());
+		
+		return CheckConfirmationResult.Confirmed;
 	}
 	
 }
@@ -25,6 +25,9 @@ public abstract class TransactionRelayer extends AsyncWorker<String> {
 	
 	protected TransactionRelayer(ScheduledExecutorService executor) {
 		super(executor);
+		
+		// transactions are relayed independently, so do not block others when any one failed
+		this.setIndependentRetry(true);
 	}
 	
 	public static TransactionRelayer createCfxTransactionRelayer(ScheduledExecutorService executor) {
@@ -0,0 +1,182 @@
+package boomflow.worker.settle;
+
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * GasModel learns the actual gas used from confirmed transaction receipts, keyed by settlement
+ * type and batch size (see <code>Settleable.getGasKey</code>), so as to avoid over-reserving gas
+ * with a constant gas limit.
+ *
+ * For each key, the exponentially weighted mean and deviation of gas used are tracked, and the
+ * estimated gas limit is <code>(mean + 4 * deviation) * (1 + margin)</code>, but not less than the
+ * maximum gas used observed recently. The default gas limit is used until enough samples learned.
+ *
+ * Once a transaction ran out of gas, the gas limit is raised for the key, which decays as the
+ * maximum gas used does.
+ */
+public class GasModel {
+	
+	private static volatile GasModel instance;
+	
+	private static final double DEFAULT_MARGIN = 0.2;
+	private static final int DEFAULT_MIN_SAMPLES = 10;
+	// weight of new sample
+	private static final double ALPHA = 0.1;
+	// decay of maximum gas used for each new sample
+	private static final double MAX_DECAY = 0.99;
+	// raise of exhausted gas limit
+	private static final double EXHAUSTED_RAISE = 1.5;
+	
+	private double margin;
+	private int minSamples;
+	
+	private ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<String, Stats>();
+	
+	public GasModel() {
+		this(DEFAULT_MARGIN, DEFAULT_MIN_SAMPLES);
+	}
+	
+	/**
+	 * Create an instance of GasModel.
+	 * @param margin safety margin of estimated gas limit, e.g. 0.2 for 20%.
+	 * @param minSamples minimum number of receipts to learn before estimation.
+	 */
+	public GasModel(double margin, int minSamples) {
+		if (margin < 0) {
+			throw new IllegalArgumentException("margin should not be negative");
+		}
+		
+		if (minSamples <= 0) {
+			throw new IllegalArgumentException("minSamples should be greater than 0");
+		}
+		
+		this.margin = margin;
+		this.minSamples = minSamples;
+	}
+	
+	/**
+	 * Returns the model used by settlements and <code>TransactionConfirmationMonitor</code>,
+	 * or <code>null</code> if disabled.
+	 */
+	public static GasModel getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Enables the gas model, or disables if <code>null</code>.
+	 */
+	public static void setInstance(GasModel model) {
+		GasModel.instance = model;
+	}
+	
+	/**
+	 * Returns the gas limit learned by the enabled model for the specified key, or the default one
+	 * if model disabled or not learned yet.
+	 */
+	public static BigInteger gasLimit(String key, BigInteger defaultGasLimit) {
+		GasModel model = instance;
+		return model == null || key == null ? defaultGasLimit : model.estimate(key, defaultGasLimit);
+	}
+	
+	/**
+	 * Learns the gas used of a confirmed transaction.
+	 */
+	public void learn(String key, BigInteger gasUsed) {
+		if (gasUsed == null || gasUsed.signum() <= 0) {
+			return;
+		}
+		
+		Stats stats = this.stats.computeIfAbsent(key, k -> new Stats());
+		
+		synchronized (stats) {
+			stats.add(gasUsed.doubleValue());
+		}
+	}
+	
+	/**
+	 * Learns the gas limit exhausted by a failed transaction, so as to estimate a higher gas limit.
+	 */
+	public void learnExhausted(String key, BigInteger gasLimit) {
+		if (gasLimit == null || gasLimit.signum() <= 0) {
+			return;
+		}
+		
+		Stats stats = this.stats.computeIfAbsent(key, k -> new Stats());
+		
+		synchronized (stats) {
+			stats.raised = Math.max(stats.raised, gasLimit.doubleValue() * EXHAUSTED_RAISE);
+		}
+	}
+	
+	/**
+	 * Returns the estimated gas limit for the specified key, or the default one if not learned yet.
+	 */
+	public BigInteger estimate(String key, BigInteger defaultGasLimit) {
+		Stats stats = this.stats.get(key);
+		if (stats == null) {
+			return defaultGasLimit;
+		}
+		
+		double estimated;
+		
+		synchronized (stats) {
+			if (stats.count < this.minSamples) {
+				estimated = Math.max(defaultGasLimit.doubleValue(), stats.raised);
+			} else {
+				estimated = Math.max((stats.mean + 4 * stats.deviation) * (1 + this.margin), stats.max);
+				estimated = Math.max(estimated, stats.raised);
+			}
+		}
+		
+		return BigInteger.valueOf((long) Math.ceil(estimated));
+	}
+	
+	/**
+	 * Returns the number of receipts learned for the specified key.
+	 */
+	public long getSamples(String key) {
+		Stats stats = this.stats.get(key);
+		if (stats == null) {
+			return 0;
+		}
+		
+		synchronized (stats) {
+			return stats.count;
+		}
+	}
+	
+	public void clear() {
+		this.stats.clear();
+	}
+	
+	private static class Stats {
+		
+		long count;
+		double mean;
+		double deviation;
+		double max;
+		// gas limit raised after out of gas
+		double raised;
+		
+		void add(double gasUsed) {
+			this.raised *= MAX_DECAY;
+			
+			if (this.count++ == 0) {
+				this.mean = gasUsed;
+				this.max = gasUsed;
+				return;
+			}
+			
+			// simple average for the first few samples
+			double alpha = Math.max(ALPHA, 1.0 / this.count);
+			double delta = gasUsed - this.mean;
+			this.mean += alpha * delta;
+			this.deviation += alpha * (Math.abs(delta) - this.deviation);
+			this.max = Math.max(this.max * MAX_DECAY, gasUsed);
+		}
+	
+	}
+
+}
@@ -0,0 +1,380 @@
+package boomflow.worker.settle;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import org.web3j.abi.EventEncoder;
+import org.web3j.abi.TypeReference;
+import org.web3j.abi.datatypes.Bool;
+import org.web3j.abi.datatypes.Event;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.utils.Numeric;
+
+import boomflow.common.Address;
+import boomflow.common.EncodeUtils;
+import boomflow.common.worker.BatchWorker.Batchable;
+import boomflow.eip712.core.StructEncoding;
+import conflux.web3j.response.Log;
+import conflux.web3j.response.Receipt;
+import conflux.web3j.types.RawTransaction;
+
+/**
+ * MulticallSettlement packs settlements of any type bound for the same contract (e.g. Boomflow or CRCL)
+ * into a single <code>multicall(bytes[])</code> transaction, in which each call is executed independently.
+ *
+ * The contract should emit event <code>CallResult(uint256 index, bool success)</code> for each call,
+ * so that a failed call (e.g. withdraw) will be marked as <code>OnChainFailed</code> once transaction
+ * confirmed, and will not fail or pause the others.
+ *
+ * When service restarted, settlements reloaded with the same transaction are restored in the order
+ * of reloading, which should be the same as settled (e.g. by id) to match call results.
+ */
+public class MulticallSettlement extends Settleable {
+	
+	private static final String FUNCTION_NAME = "multicall";
+	private static final byte[] SELECTOR = EncodeUtils.selector(FUNCTION_NAME, "bytes[]");
+	
+	// event CallResult(uint256 index, bool success)
+	public static final String RESULT_EVENT_HASH = EventEncoder.encode(new Event("CallResult", Arrays.asList(
+			TypeReference.create(Uint256.class),
+			TypeReference.create(Bool.class))));
+	
+	private List<Settleable> items = new ArrayList<Settleable>();
+	private List<SettlementContext> contexts = new ArrayList<SettlementContext>();
+	
+	// results of calls decoded from receipt, or null if not decoded yet
+	private boolean[] results;
+	
+	/**
+	 * Create a multicall settlement with the first item, which could batch with others later.
+	 */
+	public MulticallSettlement(Settleable item) {
+		super(null, null);
+		
+		this.items.add(item);
+	}
+	
+	public List<Settleable> getItems() {
+		return Collections.unmodifiableList(this.items);
+	}
+	
+	/**
+	 * Returns the recorder of items, which share the same transaction.
+	 */
+	@Override
+	public TransactionRecorder getRecorder() {
+		return this.items.get(0).getRecorder();
+	}
+	
+	/**
+	 * Returns the items failed to execute on chain, which is available once receipt matched.
+	 */
+	public List<Settleable> getFailedItems() {
+		if (this.results == null) {
+			return Collections.emptyList();
+		}
+		
+		List<Settleable> failed = new ArrayList<Settleable>();
+		for (int i = 0; i < this.results.length; i++) {
+			if (!this.results[i]) {
+				failed.add(this.items.get(i));
+			}
+		}
+		
+		return failed;
+	}
+	
+	@Override
+	public boolean batchWith(Batchable other) {
+		if (!(other instanceof MulticallSettlement)) {
+			return false;
+		}
+		
+		MulticallSettlement multicall = (MulticallSettlement) other;
+		if (this.restoreWith(multicall)) {
+			return true;
+		}
+		
+		if (this.getRecorder() != null || multicall.getRecorder() != null) {
+			return false;
+		}
+		
+		try {
+			// only calls to the same contract could be packed together
+			if (!this.getContract().toHex().equalsIgnoreCase(multicall.getContract().toHex())) {
+				return false;
+			}
+		} catch (Exception e) {
+			// settle separately, and the failure will be handled when settled
+			return false;
+		}
+		
+		this.items.addAll(multicall.items);
+		this.contexts.addAll(multicall.contexts);
+		
+		return true;
+	}
+	
+	/**
+	 * Restores the settlement packed in the same transaction, which may be wrapped in multicall or not.
+	 */
+	@Override
+	public boolean restoreWith(Settleable other) {
+		if (!this.isSameTransaction(other)) {
+			return false;
+		}
+		
+		// contexts are created on demand in the order of items
+		if (other instanceof MulticallSettlement) {
+			this.items.addAll(((MulticallSettlement) other).items);
+		} else {
+			this.items.add(other);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the contract of calls, which should be the same for all items.
+	 */
+	private Address getContract() throws Exception {
+		List<SettlementContext> contexts = this.getContexts();
+		Address contract = contexts.get(0).getContract();
+		
+		for (int i = 1; i < contexts.size(); i++) {
+			if (!contexts.get(i).getContract().toHex().equalsIgnoreCase(contract.toHex())) {
+				throw new IllegalStateException("calls to different contracts packed in multicall");
+			}
+		}
+		
+		return contract;
+	}
+	
+	@Override
+	public int size() {
+		return this.items.size();
+	}
+	
+	private List<SettlementContext> getContexts() throws Exception {
+		for (int i = this.contexts.size(); i < this.items.size(); i++) {
+			this.contexts.add(this.items.get(i).getSettlementContext());
+		}
+		
+		return this.contexts;
+	}
+	
+	@Override
+	public SettlementContext getSettlementContext() throws Exception {
+		List<SettlementContext> contexts = this.getContexts();
+		
+		// no need to wrap single call
+		if (contexts.size() == 1) {
+			return contexts.get(0);
+		}
+		
+		BigInteger gasLimit = BigInteger.ZERO;
+		BigInteger storageLimit = BigInteger.ZERO;
+		int size = 68 + 32 * contexts.size();
+		
+		for (SettlementContext context : contexts) {
+			gasLimit = gasLimit.add(context.getGasLimit());
+			storageLimit = storageLimit.add(context.getStorageLimit());
+			size += 32 + (context.getData().length + 31) / 32 * 32;
+		}
+		
+		// multicall(bytes[] calls)
+		byte[] data = new byte[size];
+		System.arraycopy(SELECTOR, 0, data, 0, 4);
+		StructEncoding.encodeInt(32, 256, false, data, 4);
+		StructEncoding.encodeInt(contexts.size(), 256, false, data, 36);
+		
+		int offset = 32 * contexts.size();
+		for (int i = 0; i < contexts.size(); i++) {
+			byte[] call = contexts.get(i).getData();
+			StructEncoding.encodeInt(offset, 256, false, data, 68 + 32 * i);
+			StructEncoding.encodeInt(call.length, 256, false, data, 68 + offset);
+			System.arraycopy(call, 0, data, 68 + offset + 32, call.length);
+			offset += 32 + (call.length + 31) / 32 * 32;
+		}
+		
+		return new SettlementContext(this.getContract(), data, gasLimit, storageLimit);
+	}
+	
+	/**
+	 * Gas used is not learnable for mixed calls, and the gas limit is the sum of items.
+	 */
+	@Override
+	public String getGasKey() {
+		return this.items.size() == 1 ? this.items.get(0).getGasKey() : null;
+	}
+	
+	@Override
+	protected void update(SettlementStatus status) {
+		// updated for each item
+	}
+	
+	@Override
+	protected void update(SettlementStatus status, String txHash, BigInteger nonce) {
+		// updated for each item
+	}
+	
+	/**
+	 * Updates all items, and marks the failed calls as <code>OnChainFailed</code> once confirmed.
+	 */
+	@Override
+	public void updateSettlement(SettlementStatus status) {
+		super.updateSettlement(status);
+		
+		for (int i = 0; i < this.items.size(); i++) {
+			if (status == SettlementStatus.OnChainConfirmed && this.results != null && !this.results[i]) {
+				this.items.get(i).updateSettlement(SettlementStatus.OnChainFailed);
+			} else {
+				this.items.get(i).updateSettlement(status);
+			}
+		}
+	}
+	
+	@Override
+	public void updateSettlement(String txHash) {
+		// recorded in items only
+		for (Settleable item : this.items) {
+			item.updateSettlement(txHash);
+		}
+	}
+	
+	@Override
+	public void updateSettlement(SettlementStatus status, String txHash, RawTransaction tx) {
+		super.updateSettlement(status, txHash, tx);
+		
+		for (Settleable item : this.items) {
+			item.updateSettlement(status, txHash, tx);
+		}
+	}
+	
+	@Override
+	public void updateSettlement(SettlementStatus status, String txHash, org.web3j.crypto.RawTransaction tx) {
+		super.updateSettlement(status, txHash, tx);
+		
+		for (Settleable item : this.items) {
+			item.updateSettlement(status, txHash, tx);
+		}
+	}
+	
+	/**
+	 * Decodes the call results from receipt, and matches the receipt against succeeded items.
+	 */
+	@Override
+	public boolean matches(Receipt receipt) {
+		if (this.items.size() == 1) {
+			return this.items.get(0).matches(receipt);
+		}
+		
+		this.results = null;
+		boolean[] results = new boolean[this.items.size()];
+		BitSet decoded = new BitSet(results.length);
+		String contract = this.getContractHex();
+		
+		for (Log log : receipt.getLogs()) {
+			String address = Address.createCfxAddress(log.getAddress().getAddress()).toHex();
+			this.decodeResult(contract, address, log.getTopics(), log.getData(), results, decoded);
+		}
+		
+		// result of each call should be decoded
+		if (decoded.cardinality() != results.length) {
+			return false;
+		}
+		
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] && !this.items.get(i).matches(receipt)) {
+				return false;
+			}
+		}
+		
+		this.results = results;
+		
+		return true;
+	}
+	
+	@Override
+	public boolean matches(TransactionReceipt receipt) {
+		if (this.items.size() == 1) {
+			return this.items.get(0).matches(receipt);
+		}
+		
+		this.results = null;
+		boolean[] results = new boolean[this.items.size()];
+		BitSet decoded = new BitSet(results.length);
+		String contract = this.getContractHex();
+		
+		for (org.web3j.protocol.core.methods.response.Log log : receipt.getLogs()) {
+			this.decodeResult(contract, log.getAddress(), log.getTopics(), log.getData(), results, decoded);
+		}
+		
+		// result of each call should be decoded
+		if (decoded.cardinality() != results.length) {
+			return false;
+		}
+		
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] && !this.items.get(i).matches(receipt)) {
+				return false;
+			}
+		}
+		
+		this.results = results;
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the contract of calls in HEX format, or <code>null</code> if failed to create settlement context,
+	 * e.g. calls restored when service restarted.
+	 */
+	private String getContractHex() {
+		try {
+			return this.getContract().toHex();
+		} catch (Exception e) {
+			return null;
+		}
+	}
+	
+	private void decodeResult(String contract, String address, List<String> topics, String data, boolean[] results, BitSet decoded) {
+		if (topics.isEmpty() || !RESULT_EVENT_HASH.equalsIgnoreCase(topics.get(0)) || !address.equalsIgnoreCase(contract)) {
+			return;
+		}
+		
+		byte[] encoded = Numeric.hexStringToByteArray(data);
+		if (encoded.length != 64) {
+			return;
+		}
+		
+		BigInteger index = Numeric.toBigInt(encoded, 0, 32);
+		if (index.compareTo(BigInteger.valueOf(results.length)) >= 0) {
+			return;
+		}
+		
+		// duplicated index will be counted only once
+		results[index.intValue()] = encoded[63] != 0;
+		decoded.set(index.intValue());
+	}
+	
+	/**
+	 * Suppresses the transaction execution failure only if all items suppressed.
+	 */
+	@Override
+	public boolean suppressOnChainFailure() {
+		for (Settleable item : this.items) {
+			if (!item.suppressOnChainFailure()) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+
+}
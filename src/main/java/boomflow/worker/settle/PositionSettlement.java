@@ -1,15 +1,43 @@
 package boomflow.worker.settle;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
 
 import boomflow.common.EncodeUtils;
 import boomflow.common.worker.BatchWorker.Batchable;
 import boomflow.eip712.TypedPosition;
+import conflux.web3j.response.Receipt;
+import conflux.web3j.types.RawTransaction;
 
+/**
+ * Settlement for position update.
+ *
+ * If batch enabled, new position settlements will be batched into a single <code>batchUpdatePosition</code>
+ * transaction. The first one in batch is sent on chain on behalf of others, and the settlement
+ * status and transaction are updated for all positions in batch.
+ *
+ * When service restarted, positions reloaded with the same transaction are restored as a batch
+ * again, either batched by <code>SettlementWorker</code> or added in <code>TransactionConfirmationMonitor</code>.
+ */
 public abstract class PositionSettlement extends Settleable {
 	
 	private static final String FUNCTION_NAME = "updatePosition";
+	private static final byte[] SELECTOR = EncodeUtils.selector(FUNCTION_NAME, TypedPosition.ABI_TYPE);
+	private static final String BATCH_FUNCTION_NAME = "batchUpdatePosition";
+	private static final byte[] BATCH_SELECTOR = EncodeUtils.selector(BATCH_FUNCTION_NAME, TypedPosition.ABI_TYPE + "[]");
+	
 	public static BigInteger defaultGasLimit = BigInteger.valueOf(150000);
+	// disabled by default, since requires contract to support batchUpdatePosition
+	public static boolean batchEnabled = false;
+	
+	// other positions batched with this one
+	private List<PositionSettlement> batch = Collections.emptyList();
+	// key to learn gas used, which depends on the operation type of position
+	private String gasKey;
 
 	protected PositionSettlement(String txHash, BigInteger nonce) {
 		super(txHash, nonce);
@@ -18,21 +46,177 @@ public abstract class PositionSettlement extends Settleable {
 	// batch settlement if TPS limited
 	@Override
 	public boolean batchWith(Batchable other) {
-		return false;
+		if (!(other instanceof PositionSettlement)) {
+			return false;
+		}
+		
+		PositionSettlement position = (PositionSettlement) other;
+		if (this.restoreWith(position)) {
+			return true;
+		}
+		
+		if (!batchEnabled) {
+			return false;
+		}
+		
+		// only batch positions not settled on chain yet, re-settlement uses the recorded transaction
+		if (this.getRecorder() != null || position.getRecorder() != null || !position.batch.isEmpty()) {
+			return false;
+		}
+		
+		if (this.batch.isEmpty()) {
+			this.batch = new ArrayList<PositionSettlement>();
+		}
+		
+		this.batch.add(position);
+		
+		return true;
+	}
+	
+	/**
+	 * Restores the position batched in the same transaction, no matter batch enabled or not.
+	 */
+	@Override
+	public boolean restoreWith(Settleable other) {
+		if (!(other instanceof PositionSettlement) || !this.isSameTransaction(other)) {
+			return false;
+		}
+		
+		PositionSettlement position = (PositionSettlement) other;
+		
+		if (this.batch.isEmpty()) {
+			this.batch = new ArrayList<PositionSettlement>();
+		}
+		
+		this.batch.add(position);
+		this.batch.addAll(position.batch);
+		position.batch = Collections.emptyList();
+		
+		return true;
 	}
 
 	@Override
 	public int size() {
-		return 1;
+		return 1 + this.batch.size();
+	}
+	
+	/**
+	 * Returns the other positions batched with this one.
+	 */
+	public List<PositionSettlement> getBatch() {
+		return Collections.unmodifiableList(this.batch);
 	}
 	
 	protected abstract TypedPosition toTypedData();
 
 	@Override
 	public SettlementContext getSettlementContext() throws Exception {
-		TypedPosition position = this.toTypedData();
-		String data = EncodeUtils.encode(FUNCTION_NAME, position);
-		return SettlementContext.boomflow(data, defaultGasLimit, DEFAULT_STORAGE_LIMIT);
+		if (this.batch.isEmpty()) {
+			TypedPosition position = this.toTypedData();
+			byte[] data = position.encodeCall(SELECTOR);
+			this.gasKey = FUNCTION_NAME + "#" + position.getOpType();
+			return SettlementContext.boomflow(data, GasModel.gasLimit(this.gasKey, defaultGasLimit), DEFAULT_STORAGE_LIMIT);
+		}
+		
+		List<TypedPosition> positions = new ArrayList<TypedPosition>(this.size());
+		positions.add(this.toTypedData());
+		for (PositionSettlement settlement : this.batch) {
+			positions.add(settlement.toTypedData());
+		}
+		
+		byte[] data = TypedPosition.encodeArrayCall(positions, BATCH_SELECTOR);
+		BigInteger size = BigInteger.valueOf(positions.size());
+		this.gasKey = BATCH_FUNCTION_NAME + "#" + positions.size();
+		BigInteger gasLimit = GasModel.gasLimit(this.gasKey, defaultGasLimit.multiply(size));
+		return SettlementContext.boomflow(data, gasLimit, DEFAULT_STORAGE_LIMIT.multiply(size));
+	}
+	
+	@Override
+	public String getGasKey() {
+		return this.gasKey == null ? super.getGasKey() : this.gasKey;
+	}
+	
+	@Override
+	public void updateSettlement(SettlementStatus status) {
+		super.updateSettlement(status);
+		
+		for (PositionSettlement settlement : this.batch) {
+			settlement.updateSettlement(status);
+		}
+	}
+	
+	@Override
+	public void updateSettlement(String txHash) {
+		super.updateSettlement(txHash);
+		
+		for (PositionSettlement settlement : this.batch) {
+			settlement.updateSettlement(txHash);
+		}
+	}
+	
+	@Override
+	public void updateSettlement(SettlementStatus status, String txHash, RawTransaction tx) {
+		super.updateSettlement(status, txHash, tx);
+		
+		for (PositionSettlement settlement : this.batch) {
+			settlement.updateSettlement(status, txHash, tx);
+		}
+	}
+	
+	@Override
+	public void updateSettlement(SettlementStatus status, String txHash, org.web3j.crypto.RawTransaction tx) {
+		super.updateSettlement(status, txHash, tx);
+		
+		for (PositionSettlement settlement : this.batch) {
+			settlement.updateSettlement(status, txHash, tx);
+		}
+	}
+	
+	/**
+	 * Matches only if receipt matches all positions in batch.
+	 */
+	@Override
+	public boolean matches(Receipt receipt) {
+		if (!this.matchesPosition(receipt)) {
+			return false;
+		}
+		
+		for (PositionSettlement settlement : this.batch) {
+			if (!settlement.matchesPosition(receipt)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	@Override
+	public boolean matches(TransactionReceipt receipt) {
+		if (!this.matchesPosition(receipt)) {
+			return false;
+		}
+		
+		for (PositionSettlement settlement : this.batch) {
+			if (!settlement.matchesPosition(receipt)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Indicates whether the specified transaction receipt matches the off-chain values of this position only,
+	 * which could be overridden to validate event logs.
+	 */
+	protected boolean matchesPosition(Receipt receipt) {
+		// check nothing by default
+		return true;
+	}
+	
+	protected boolean matchesPosition(TransactionReceipt receipt) {
+		// check nothing by default
+		return true;
 	}
 
 }
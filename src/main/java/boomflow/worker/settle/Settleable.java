@@ -84,6 +84,30 @@ public abstract class Settleable implements Batchable {
 		}
 	}
 	
+	/**
+	 * Restores the other settlement sent in the same transaction with this one, e.g. batched or
+	 * packed in multicall, which is reloaded separately when service restarted. So, both of them
+	 * are confirmed or re-sent together.
+	 *
+	 * By default, returns <code>false</code> since sent in its own transaction.
+	 * @return <code>true</code> if restored into this one, otherwise <code>false</code>.
+	 */
+	public boolean restoreWith(Settleable other) {
+		return false;
+	}
+	
+	/**
+	 * Indicates whether the other settlement is sent in the same transaction with this one.
+	 */
+	protected boolean isSameTransaction(Settleable other) {
+		TransactionRecorder recorder = this.getRecorder();
+		TransactionRecorder otherRecorder = other.getRecorder();
+		
+		return this != other && recorder != null && otherRecorder != null
+				&& recorder.getNonce().equals(otherRecorder.getNonce())
+				&& recorder.getLast().getTxHash().equalsIgnoreCase(otherRecorder.getLast().getTxHash());
+	}
+	
 	/**
 	 * Indicates whether the specified transaction receipt matches the off-chain values.
 	 */
@@ -97,6 +121,14 @@ public abstract class Settleable implements Batchable {
 		return true;
 	}
 	
+	/**
+	 * Returns the key to learn gas used in <code>GasModel</code>, or <code>null</code> if not learnable.
+	 * By default, settlement type and batch size.
+	 */
+	public String getGasKey() {
+		return this.getClass().getName() + "#" + this.size();
+	}
+	
 	/**
 	 * Indicates whether to suppress the transaction execution failure.
 	 * 
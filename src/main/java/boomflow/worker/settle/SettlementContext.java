@@ -2,6 +2,8 @@ package boomflow.worker.settle;
 
 import java.math.BigInteger;
 
+import org.web3j.utils.Numeric;
+
 import boomflow.common.Address;
 import boomflow.eip712.core.Domain;
 import conflux.web3j.types.CfxAddress;
@@ -10,11 +12,15 @@ import conflux.web3j.types.RawTransaction;
 public class SettlementContext {
 	
 	private Address contract;
-	private String data;
+	private byte[] data;
 	private BigInteger gasLimit;
 	private BigInteger storageLimit;
 	
 	public SettlementContext(Address contract, String data, BigInteger gasLimit, BigInteger storageLimit) {
+		this(contract, Numeric.hexStringToByteArray(data), gasLimit, storageLimit);
+	}
+	
+	public SettlementContext(Address contract, byte[] data, BigInteger gasLimit, BigInteger storageLimit) {
 		this.contract = contract;
 		this.data = data;
 		this.gasLimit = gasLimit;
@@ -25,13 +31,36 @@ public class SettlementContext {
 		return new SettlementContext(Domain.boomflow().getVerifyingContractAddress(), data, gasLimit, storageLimit);
 	}
 	
+	public static SettlementContext boomflow(byte[] data, BigInteger gasLimit, BigInteger storageLimit) {
+		return new SettlementContext(Domain.boomflow().getVerifyingContractAddress(), data, gasLimit, storageLimit);
+	}
+	
+	public Address getContract() {
+		return contract;
+	}
+	
+	/**
+	 * Returns the ABI encoded calldata, which should not be modified.
+	 */
+	public byte[] getData() {
+		return data;
+	}
+	
+	public BigInteger getGasLimit() {
+		return gasLimit;
+	}
+	
+	public BigInteger getStorageLimit() {
+		return storageLimit;
+	}
+	
 	public RawTransaction buildCfxTx(BigInteger nonce, BigInteger epoch) {
 		CfxAddress contract = new CfxAddress(this.contract.toString());
-		return RawTransaction.call(nonce, this.gasLimit, contract, this.storageLimit, epoch, this.data);
+		return RawTransaction.call(nonce, this.gasLimit, contract, this.storageLimit, epoch, Numeric.toHexString(this.data));
 	}
 	
 	public org.web3j.crypto.RawTransaction buildEthTx(BigInteger nonce, BigInteger gasPrice) {
-		return org.web3j.crypto.RawTransaction.createTransaction(nonce, gasPrice, this.gasLimit, this.contract.toHex(), this.data);
+		return org.web3j.crypto.RawTransaction.createTransaction(nonce, gasPrice, this.gasLimit, this.contract.toHex(), Numeric.toHexString(this.data));
 	}
 
 }
@@ -7,6 +7,8 @@ import java.util.Optional;
 
 import org.web3j.protocol.core.methods.response.TransactionReceipt;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import boomflow.common.EthWeb3Wrapper;
 import conflux.web3j.Cfx;
 import conflux.web3j.RpcException;
@@ -34,7 +36,11 @@ public class TransactionRecorder {
 	// the tx hash and nonce.
 	public TransactionRecorder(String txHash, BigInteger nonce) {
 		this.nonce = nonce;
-		this.records.add(new Record(txHash));
+		
+		// sent time is unknown after restarted
+		Record record = new Record(txHash);
+		record.sentNanos = 0;
+		this.records.add(record);
 	}
 	
 	public TransactionRecorder(String txHash, RawTransaction tx) {
@@ -49,7 +55,7 @@ public class TransactionRecorder {
 		return nonce;
 	}
 	
-	private void addRecord(String txHash, BigInteger nonce, BigInteger gasPrice, BigInteger blockNumber) {
+	private void addRecord(String txHash, BigInteger nonce, BigInteger gasPrice, BigInteger blockNumber, BigInteger gasLimit) {
 		// in case of service restarted and admin nonce changed since last settlement
 		if (this.nonce.compareTo(nonce) < 0) {
 			this.nonce = nonce;
@@ -64,21 +70,36 @@ public class TransactionRecorder {
 			}
 		}
 		
-		this.records.add(new Record(txHash, gasPrice, blockNumber));
+		Record record = new Record(txHash, gasPrice, blockNumber);
+		record.gasLimit = gasLimit;
+		this.records.add(record);
 	}
 	
 	public void addRecord(String txHash, RawTransaction tx) {
-		this.addRecord(txHash, tx.getNonce(), tx.getGasPrice(), tx.getEpochHeight());
+		this.addRecord(txHash, tx.getNonce(), tx.getGasPrice(), tx.getEpochHeight(), tx.getGas());
 	}
 	
 	public void addRecord(String txHash, org.web3j.crypto.RawTransaction tx) {
-		this.addRecord(txHash, tx.getNonce(), tx.getGasPrice(), null);
+		this.addRecord(txHash, tx.getNonce(), tx.getGasPrice(), null, tx.getGasLimit());
 	}
 	
 	public Record getLast() {
 		return this.records.get(this.records.size() - 1);
 	}
 	
+	/**
+	 * Returns the gas limit of the specified transaction, which is unknown if reloaded when service restarted.
+	 */
+	public Optional<BigInteger> getGasLimit(String txHash) {
+		for (Record record : this.records) {
+			if (record.getTxHash().equalsIgnoreCase(txHash)) {
+				return Optional.ofNullable(record.gasLimit);
+			}
+		}
+		
+		return Optional.empty();
+	}
+	
 	/**
 	 * Try to get receipt for all sent transactions.
 	 */
@@ -135,6 +156,11 @@ public class TransactionRecorder {
 		private Optional<BigInteger> gasPrice = Optional.empty();
 		private Optional<BigInteger> blockNumber = Optional.empty();
 		private boolean longUnexecuted = false;
+		// local time when transaction sent, which is used to measure confirmation latency,
+		// or 0 if unknown, e.g. reloaded from database or deserialized.
+		private transient long sentNanos = System.nanoTime();
+		// gas limit of transaction, which is used to detect out of gas.
+		private transient BigInteger gasLimit;
 		
 		public Record(String txHash) {
 			this(txHash, null);
@@ -173,6 +199,14 @@ public class TransactionRecorder {
 		public void setLongUnexecuted(boolean longUnexecuted) {
 			this.longUnexecuted = longUnexecuted;
 		}
+		
+		/**
+		 * Returns the local time when transaction sent, or 0 if unknown, e.g. reloaded when service restarted.
+		 */
+		@JsonIgnore
+		public long getSentNanos() {
+			return sentNanos;
+		}
 	}
 
 }
@@ -12,6 +12,7 @@ import boomflow.eip712.TypedWithdraw;
 public abstract class WithdrawSettlement extends Settleable {
 	
 	private static final String FUNCTION_NAME = "withdraw";
+	private static final byte[] SELECTOR = EncodeUtils.selector(FUNCTION_NAME, TypedWithdraw.ABI_TYPE);
 	public static BigInteger defaultGasLimit = BigInteger.valueOf(200000);
 
 	protected WithdrawSettlement(String txHash, BigInteger nonce) {
@@ -33,8 +34,8 @@ public abstract class WithdrawSettlement extends Settleable {
 	@Override
 	public SettlementContext getSettlementContext() throws Exception {
 		TypedWithdraw withdraw = this.toTypedData();
-		String data = EncodeUtils.encode(FUNCTION_NAME, withdraw);
-		return new SettlementContext(withdraw.domain().getVerifyingContractAddress(), data, defaultGasLimit, DEFAULT_STORAGE_LIMIT);
+		byte[] data = withdraw.encodeCall(SELECTOR);
+		return new SettlementContext(withdraw.domain().getVerifyingContractAddress(), data, GasModel.gasLimit(this.getGasKey(), defaultGasLimit), DEFAULT_STORAGE_LIMIT);
 	}
 
 }
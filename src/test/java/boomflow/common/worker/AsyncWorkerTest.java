@@ -0,0 +1,75 @@
+package boomflow.common.worker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class AsyncWorkerTest {
+	
+	private ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+	
+	@After
+	public void tearDown() {
+		this.executor.shutdownNow();
+	}
+	
+	@Test
+	public void testPrepareDataFailed() throws Exception {
+		List<Integer> handled = Collections.synchronizedList(new ArrayList<Integer>());
+		List<Object> failed = Collections.synchronizedList(new ArrayList<Object>());
+		CountDownLatch latch = new CountDownLatch(2);
+		
+		AsyncWorker<Integer> worker = new AsyncWorker<Integer>(this.executor) {
+			
+			private boolean thrown;
+			
+			@Override
+			protected Integer prepareData(Deque<Integer> queue) throws PendingException {
+				if (!this.thrown) {
+					this.thrown = true;
+					throw new IllegalStateException("bug");
+				}
+				
+				return super.prepareData(queue);
+			}
+			
+			@Override
+			protected void doWork(Integer data) {
+				handled.add(data);
+				latch.countDown();
+			}
+			
+			@Override
+			protected void onFailure(Integer data, Exception e) {
+				failed.add(data);
+				failed.add(e.getMessage());
+			}
+		
+		};
+		
+		worker.setPauseIntervalMillis(10);
+		worker.submit(1);
+		worker.submit(2);
+		
+		// exception not swallowed, and worker continues to handle data later
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals(2, failed.size());
+		assertNull(failed.get(0));
+		assertEquals("bug", failed.get(1));
+		assertEquals(2, handled.size());
+		assertEquals(0, worker.getPendingCount());
+	}
+
+}
@@ -0,0 +1,151 @@
+package boomflow.common.worker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalTest {
+	
+	// 17 bytes header and 4 bytes payload, so 11 records in each segment
+	private static final int SEGMENT_SIZE = 8 + 21 * 11;
+	
+	private static final Journal.Serializer<Integer> SERIALIZER = new Journal.Serializer<Integer>() {
+		
+		@Override
+		public byte[] serialize(Integer data) {
+			return ByteBuffer.allocate(4).putInt(data).array();
+		}
+		
+		@Override
+		public Integer deserialize(byte[] bytes) {
+			return ByteBuffer.wrap(bytes).getInt();
+		}
+	
+	};
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private static List<Integer> values(List<Map.Entry<Long, Integer>> entries) {
+		List<Integer> values = new ArrayList<Integer>(entries.size());
+		for (Map.Entry<Long, Integer> entry : entries) {
+			values.add(entry.getValue());
+		}
+		
+		return values;
+	}
+	
+	@Test
+	public void testReplay() throws IOException {
+		File dir = this.folder.newFolder();
+		List<Integer> expected = new ArrayList<Integer>();
+		
+		try (Journal<Integer> journal = new Journal<Integer>(dir, SERIALIZER, SEGMENT_SIZE)) {
+			for (int i = 0; i < 30; i++) {
+				long id = journal.append(i);
+				if (i % 3 == 0) {
+					journal.complete(id);
+				} else {
+					expected.add(i);
+				}
+			}
+			
+			assertEquals(20, journal.getUnfinishedCount());
+		}
+		
+		try (Journal<Integer> journal = new Journal<Integer>(dir, SERIALIZER, SEGMENT_SIZE)) {
+			assertEquals(expected, values(journal.takeUnfinished()));
+			assertEquals(20, journal.getUnfinishedCount());
+			assertTrue(journal.takeUnfinished().isEmpty());
+		}
+	}
+	
+	@Test
+	public void testCompact() throws IOException {
+		File dir = this.folder.newFolder();
+		List<Integer> expected = new ArrayList<Integer>();
+		
+		try (Journal<Integer> journal = new Journal<Integer>(dir, SERIALIZER, SEGMENT_SIZE)) {
+			// completion markers also take space in segments
+			for (int i = 0; i < 40; i++) {
+				long id = journal.append(i);
+				if (i % 10 != 0) {
+					journal.complete(id);
+				} else {
+					expected.add(i);
+				}
+			}
+			
+			int segments = journal.getSegmentCount();
+			assertTrue(segments > 1);
+			assertTrue(journal.compact() > 0);
+			assertTrue(journal.getSegmentCount() < segments);
+			assertEquals(4, journal.getUnfinishedCount());
+		}
+		
+		try (Journal<Integer> journal = new Journal<Integer>(dir, SERIALIZER, SEGMENT_SIZE)) {
+			assertEquals(expected, values(journal.takeUnfinished()));
+		}
+	}
+	
+	@Test(timeout = 10000)
+	public void testCompactAllUnfinished() throws IOException {
+		File dir = this.folder.newFolder();
+		
+		try (Journal<Integer> journal = new Journal<Integer>(dir, SERIALIZER, SEGMENT_SIZE)) {
+			// more than 8 segments, and none of data completed
+			for (int i = 0; i < 200; i++) {
+				journal.append(i);
+			}
+			
+			int segments = journal.getSegmentCount();
+			assertTrue(segments > 8);
+			
+			// nothing could be freed
+			assertEquals(0, journal.compact());
+			assertEquals(segments, journal.getSegmentCount());
+			
+			// frees the first one completed only
+			journal.complete(1);
+			assertEquals(1, journal.compact());
+			assertEquals(199, journal.getUnfinishedCount());
+		}
+	}
+	
+	@Test(timeout = 10000)
+	public void testCompactMostlyUnfinished() throws IOException {
+		File dir = this.folder.newFolder();
+		List<Integer> expected = new ArrayList<Integer>();
+		
+		try (Journal<Integer> journal = new Journal<Integer>(dir, SERIALIZER, SEGMENT_SIZE)) {
+			for (int i = 0; i < 200; i++) {
+				long id = journal.append(i);
+				if (i % 11 == 0) {
+					journal.complete(id);
+				} else {
+					expected.add(i);
+				}
+			}
+			
+			// stops after one rotation at most
+			int segments = journal.getSegmentCount();
+			int removed = journal.compact();
+			assertTrue(removed > 0 && removed < segments);
+		}
+		
+		try (Journal<Integer> journal = new Journal<Integer>(dir, SERIALIZER, SEGMENT_SIZE)) {
+			assertEquals(expected, values(journal.takeUnfinished()));
+		}
+	}
+
+}
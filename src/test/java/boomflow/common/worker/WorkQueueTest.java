@@ -0,0 +1,130 @@
+package boomflow.common.worker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+public class WorkQueueTest {
+	
+	private static WorkQueue<Integer> create() {
+		// 0, 1, 2, 3, 4, 5 with front and linked elements
+		WorkQueue<Integer> queue = new WorkQueue<Integer>();
+		queue.addLast(3);
+		queue.addLast(4);
+		queue.addFirst(2);
+		queue.addLast(5);
+		queue.addFirst(1);
+		queue.addFirst(0);
+		return queue;
+	}
+	
+	@Test
+	public void testFirst() {
+		WorkQueue<Integer> queue = create();
+		
+		assertEquals(6, queue.size());
+		assertArrayEquals(new Integer[] { 0, 1, 2, 3, 4, 5 }, queue.toArray(new Integer[0]));
+		
+		for (int i = 0; i < 6; i++) {
+			assertEquals(Integer.valueOf(i), queue.peekFirst());
+			assertEquals(Integer.valueOf(i), queue.pollFirst());
+		}
+		
+		assertNull(queue.pollFirst());
+		assertTrue(queue.isEmpty());
+	}
+	
+	@Test
+	public void testLast() {
+		WorkQueue<Integer> queue = create();
+		
+		assertEquals(Integer.valueOf(5), queue.peekLast());
+		assertEquals(Integer.valueOf(5), queue.removeLast());
+		
+		// published after moved to front
+		queue.addLast(6);
+		assertEquals(Integer.valueOf(6), queue.getLast());
+		assertEquals(Integer.valueOf(6), queue.pollLast());
+		assertEquals(Integer.valueOf(0), queue.pollFirst());
+		assertEquals(Integer.valueOf(4), queue.pollLast());
+		
+		assertEquals(3, queue.size());
+		assertArrayEquals(new Integer[] { 1, 2, 3 }, queue.toArray(new Integer[0]));
+	}
+	
+	@Test
+	public void testAddAllFirst() {
+		WorkQueue<Integer> queue = create();
+		queue.addAllFirst(Arrays.asList(-3, -2, -1));
+		queue.addAllFirst(new ArrayList<Integer>());
+		
+		assertEquals(9, queue.size());
+		assertArrayEquals(new Integer[] { -3, -2, -1, 0, 1, 2, 3, 4, 5 }, queue.toArray(new Integer[0]));
+		
+		// drained before inserted
+		assertEquals(Integer.valueOf(-3), queue.pollFirst());
+		queue.addAllFirst(Arrays.asList(-5, -4));
+		assertArrayEquals(new Integer[] { -5, -4, -2, -1, 0, 1, 2, 3, 4, 5 }, queue.toArray(new Integer[0]));
+	}
+	
+	@Test(expected = NoSuchElementException.class)
+	public void testLastEmpty() {
+		new WorkQueue<Integer>().getLast();
+	}
+	
+	@Test
+	public void testRemoveOccurrence() {
+		WorkQueue<Integer> queue = create();
+		queue.addLast(2);
+		
+		assertTrue(queue.removeFirstOccurrence(2));
+		assertArrayEquals(new Integer[] { 0, 1, 3, 4, 5, 2 }, queue.toArray(new Integer[0]));
+		
+		assertTrue(queue.removeLastOccurrence(2));
+		assertFalse(queue.remove(Integer.valueOf(2)));
+		assertTrue(queue.remove(Integer.valueOf(4)));
+		
+		assertEquals(4, queue.size());
+		assertArrayEquals(new Integer[] { 0, 1, 3, 5 }, queue.toArray(new Integer[0]));
+	}
+	
+	@Test
+	public void testEnqueuedNanos() throws InterruptedException {
+		WorkQueue<Integer> queue = new WorkQueue<Integer>();
+		long start = System.nanoTime();
+		queue.addLast(0);
+		Thread.sleep(10);
+		
+		long enqueued = queue.peekEnqueuedNanos();
+		assertTrue(enqueued - start >= 0);
+		assertTrue(System.nanoTime() - enqueued >= 10_000_000);
+		
+		queue.pollFirst();
+		assertTrue(queue.takeQueuedNanos() >= 10_000_000);
+		assertEquals(-1, queue.takeQueuedNanos());
+	}
+	
+	@Test
+	public void testDescendingIterator() {
+		WorkQueue<Integer> queue = create();
+		
+		List<Integer> values = new ArrayList<Integer>();
+		for (Iterator<Integer> iterator = queue.descendingIterator(); iterator.hasNext();) {
+			values.add(iterator.next());
+		}
+		
+		assertArrayEquals(new Integer[] { 5, 4, 3, 2, 1, 0 }, values.toArray(new Integer[0]));
+		assertEquals(6, queue.size());
+	}
+
+}
@@ -0,0 +1,130 @@
+package boomflow.eip712;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.datatypes.Bool;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.DynamicStruct;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.StaticStruct;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.abi.datatypes.Utf8String;
+import org.web3j.abi.datatypes.generated.Int256;
+import org.web3j.abi.datatypes.generated.Uint256;
+import org.web3j.utils.Numeric;
+
+import boomflow.common.Address;
+import boomflow.common.EncodeUtils;
+import boomflow.eip712.core.Domain;
+import boomflow.eip712.core.Template;
+import boomflow.eip712.core.TypedData;
+
+/**
+ * Golden vectors of generated codecs, which are compared with web3j <code>FunctionEncoder</code>
+ * on the web3j types constructed by hand, and <code>StructuredDataEncoder</code> via JSON template.
+ */
+@SuppressWarnings("rawtypes")
+public class TypedDataCodecTest {
+	
+	private static final Address USER = Address.createEthAddress("0x5b2c4f3de0f0aa1c9ab3c2e6f2a7d8b1c0e9f8a7");
+	private static final Address CONTRACT = Address.createEthAddress("0x8a2f4b0c5e6d7a8b9c0d1e2f3a4b5c6d7e8f9a0b");
+	private static final Address TOKEN = Address.createEthAddress("0x1b2c3d4e5f60718293a4b5c6d7e8f90a1b2c3d4e");
+	private static final String SIGNATURE = "0x" + String.join("", Collections.nCopies(32, "ab")) + String.join("", Collections.nCopies(32, "cd")) + "1b";
+	private static final BigInteger AMOUNT = new BigInteger("1234567890000000000000");
+	
+	static {
+		Domain.boomflowAddress = CONTRACT;
+		Domain.defaultChainId = 1029;
+	}
+	
+	private static void assertHash(TypedData data) {
+		assertArrayEquals(new Template(data).hash(), data.hash());
+	}
+	
+	private static String encode(String method, Type param) {
+		return FunctionEncoder.encode(new Function(method, Arrays.<Type>asList(param), Collections.emptyList()));
+	}
+	
+	@Test
+	public void testAdjustMarginRateRequest() {
+		TypedAdjustMarginRateRequest data = new TypedAdjustMarginRateRequest(USER, 3, 2, 10, 1, 8, 1600000000000L, SIGNATURE);
+		assertHash(data);
+		
+		// posiSide is int256 in EIP712 schema, but uint256 in contract
+		assertEquals("(address,uint256,uint256,uint256,uint256,uint256,uint256)", TypedAdjustMarginRateRequestCodec.ABI_TYPE);
+		
+		StaticStruct expected = new StaticStruct(USER.toABI(), new Uint256(3), new Uint256(2), new Uint256(10),
+				new Uint256(1), new Uint256(8), new Uint256(1600000000000L));
+		String call = encode("adjustMarginRate", expected);
+		byte[] selector = EncodeUtils.selector("adjustMarginRate", TypedAdjustMarginRateRequestCodec.ABI_TYPE);
+		
+		assertEquals(call, Numeric.toHexString(TypedAdjustMarginRateRequestCodec.encodeCall(data, selector)));
+		assertEquals(call, encode("adjustMarginRate", data));
+	}
+	
+	@Test
+	public void testAdjustMarginRequest() {
+		TypedAdjustMarginRequest data = new TypedAdjustMarginRequest(USER, 3, AMOUNT.negate(), -1, 1600000000000L, SIGNATURE);
+		assertHash(data);
+		
+		StaticStruct expected = new StaticStruct(USER.toABI(), new Uint256(3), new Int256(AMOUNT.negate()), new Int256(-1), new Uint256(1600000000000L));
+		byte[] selector = EncodeUtils.selector("adjustMargin", TypedAdjustMarginRequestCodec.ABI_TYPE);
+		
+		assertEquals(encode("adjustMargin", expected), Numeric.toHexString(TypedAdjustMarginRequestCodec.encodeCall(data, selector)));
+	}
+	
+	@Test
+	public void testOrder() {
+		TypedOrder data = new TypedOrder(USER, AMOUNT, new BigInteger("35000000000000000000"), 1, -1, 1600000000000L, 3, 1, 2, 10, 8, SIGNATURE);
+		assertHash(data);
+		
+		StaticStruct expected = new StaticStruct(USER.toABI(), new Uint256(AMOUNT), new Uint256(new BigInteger("35000000000000000000")),
+				new Uint256(1), new Int256(-1), new Uint256(1600000000000L), new Uint256(3), new Uint256(1), new Uint256(2),
+				new Uint256(10), new Uint256(8));
+		byte[] selector = EncodeUtils.selector("order", TypedOrderCodec.ABI_TYPE);
+		
+		assertEquals(encode("order", expected), Numeric.toHexString(TypedOrderCodec.encodeCall(data, selector)));
+	}
+	
+	@Test
+	public void testWithdraw() {
+		TypedWithdraw data = new TypedWithdraw(USER, AMOUNT, USER, true, 1600000000000L, SIGNATURE,
+				TOKEN, BigInteger.TEN, CONTRACT, 1600000000001L, CONTRACT, USER, SIGNATURE);
+		assertHash(data);
+		
+		DynamicStruct expected = new DynamicStruct(USER.toABI(), new Uint256(AMOUNT), USER.toABI(), new Bool(true), new Uint256(1600000000000L),
+				EncodeUtils.hex2Bytes(SIGNATURE), TOKEN.toABI(), new Uint256(BigInteger.TEN), CONTRACT.toABI(), new Uint256(1600000000001L),
+				USER.toABI(), EncodeUtils.hex2Bytes(SIGNATURE));
+		byte[] selector = EncodeUtils.selector("withdraw", TypedWithdraw.ABI_TYPE);
+		
+		assertEquals(encode("withdraw", expected), Numeric.toHexString(data.encodeCall(selector)));
+		assertEquals(encode("withdraw", expected), encode("withdraw", data));
+	}
+	
+	@Test
+	public void testPosition() {
+		TypedPosition data = new TypedPosition(16, 1, USER, CONTRACT, TOKEN, AMOUNT, AMOUNT, AMOUNT.negate(), AMOUNT, AMOUNT.negate(),
+				"BTC/USDT", BigInteger.TEN, TOKEN, BigInteger.ONE, USER, SIGNATURE);
+		assertHash(data);
+		
+		StaticStruct settlement = new StaticStruct(new Uint256(1), new Uint256(AMOUNT), new Uint256(AMOUNT), new Int256(AMOUNT.negate()),
+				new Uint256(AMOUNT), new Int256(AMOUNT.negate()), new Uint256(BigInteger.TEN), TOKEN.toABI(), new Uint256(BigInteger.ONE));
+		DynamicStruct expected = new DynamicStruct(new Uint256(16), USER.toABI(), CONTRACT.toABI(), TOKEN.toABI(), settlement,
+				new Utf8String("BTC/USDT"), USER.toABI(), EncodeUtils.hex2Bytes(SIGNATURE));
+		
+		byte[] selector = EncodeUtils.selector("updatePosition", TypedPosition.ABI_TYPE);
+		assertEquals(encode("updatePosition", expected), Numeric.toHexString(data.encodeCall(selector)));
+		
+		byte[] arraySelector = EncodeUtils.selector("batchUpdatePosition", TypedPosition.ABI_TYPE + "[]");
+		DynamicArray<DynamicStruct> array = new DynamicArray<DynamicStruct>(DynamicStruct.class, expected, expected);
+		assertEquals(encode("batchUpdatePosition", array), Numeric.toHexString(TypedPosition.encodeArrayCall(Arrays.asList(data, data), arraySelector)));
+	}
+
+}
@@ -0,0 +1,79 @@
+package boomflow.eip712.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Test;
+import org.web3j.crypto.ECKeyPair;
+import org.web3j.crypto.Keys;
+import org.web3j.crypto.Sign;
+import org.web3j.utils.Numeric;
+
+import boomflow.common.Address;
+import boomflow.eip712.TypedAdjustMarginRequest;
+
+public class BatchValidatorTest {
+	
+	private static final ECKeyPair KEY = ECKeyPair.create(new BigInteger("4a1c3b3a9f5cbb4d5b2c4f3de0f0aa1c9ab3c2e6f2a7d8b1c0e9f8a7b6c5d4e3", 16));
+	private static final Address USER = Address.createEthAddress("0x" + Keys.getAddress(KEY));
+	
+	static {
+		Domain.boomflowAddress = Address.createEthAddress("0x8a2f4b0c5e6d7a8b9c0d1e2f3a4b5c6d7e8f9a0b");
+		Domain.defaultChainId = 1029;
+	}
+	
+	@After
+	public void tearDown() {
+		NonceTable.setInstance(null);
+	}
+	
+	private static TypedAdjustMarginRequest request(long nonce, boolean forged) {
+		TypedAdjustMarginRequest unsigned = new TypedAdjustMarginRequest(USER, 3, BigInteger.TEN, 1, nonce, "0x");
+		Sign.SignatureData data = Sign.signMessage(unsigned.hash(), KEY, false);
+		
+		byte[] signature = new byte[65];
+		System.arraycopy(data.getR(), 0, signature, 0, 32);
+		System.arraycopy(data.getS(), 0, signature, 32, 32);
+		signature[64] = data.getV()[0];
+		if (forged) {
+			signature[10] ^= 1;
+		}
+		
+		return new TypedAdjustMarginRequest(USER, 3, BigInteger.TEN, 1, nonce, Numeric.toHexString(signature));
+	}
+	
+	@Test
+	public void testNonceInOrder() {
+		List<TypedAdjustMarginRequest> requests = new ArrayList<TypedAdjustMarginRequest>();
+		requests.add(request(2, false));
+		requests.add(request(1, false));
+		requests.add(request(4, true));
+		requests.add(request(2, false));
+		requests.add(request(3, false));
+		
+		BatchValidator validator = new BatchValidator(new ForkJoinPool(4), 1);
+		
+		// same results no matter how items are scheduled in pool
+		for (int i = 0; i < 10; i++) {
+			NonceTable.setInstance(new NonceTable());
+			List<BatchValidator.Result> results = validator.validate(requests);
+			
+			assertTrue(results.get(0).isValid());
+			assertEquals("invalid nonce", results.get(1).getError());
+			assertFalse(results.get(2).isValid());
+			assertEquals("invalid nonce", results.get(3).getError());
+			assertTrue(results.get(4).isValid());
+			
+			// forged request does not advance the nonce
+			assertEquals(3, NonceTable.getInstance().get(USER.toHex(), NonceTable.Type.AdjustMargin));
+		}
+	}
+
+}
@@ -0,0 +1,107 @@
+package boomflow.eip712.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import boomflow.eip712.core.NonceTable.Type;
+
+public class NonceTableTest {
+	
+	private static byte[] user(int i) {
+		byte[] user = new byte[20];
+		user[0] = (byte) (i >>> 24);
+		user[7] = (byte) (i >>> 16);
+		user[13] = (byte) (i >>> 8);
+		user[19] = (byte) i;
+		return user;
+	}
+	
+	@Test
+	public void testSingleStripe() {
+		NonceTable table = new NonceTable(1);
+		
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(table.checkAndAdvance(user(i), Type.Withdraw, 1));
+			assertFalse(table.checkAndAdvance(user(i), Type.Withdraw, 1));
+		}
+		
+		assertEquals(1000, table.size());
+		assertEquals(1, table.get(user(999), Type.Withdraw));
+		assertEquals(-1, table.get(user(999), Type.OrderCancellation));
+	}
+	
+	@Test
+	public void testStripes() {
+		for (int stripes : new int[] { 1, 2, 3, 64, 1 << 16 }) {
+			NonceTable table = new NonceTable(stripes);
+			
+			for (int i = 0; i < 200; i++) {
+				assertTrue(table.checkAndAdvance(user(i), Type.AdjustMargin, i));
+			}
+			
+			assertEquals(200, table.size());
+			assertEquals(199, table.get(user(199), Type.AdjustMargin));
+		}
+	}
+	
+	@Test(timeout = 10000)
+	public void testLargeStripe() {
+		// more than 65536 users in each stripe
+		NonceTable table = new NonceTable(2);
+		
+		for (int i = 0; i < 200000; i++) {
+			assertTrue(table.checkAndAdvance(user(i), Type.Withdraw, i));
+		}
+		
+		assertEquals(200000, table.size());
+		
+		for (int i = 0; i < 200000; i++) {
+			assertEquals(i, table.get(user(i), Type.Withdraw));
+			assertFalse(table.checkAndAdvance(user(i), Type.Withdraw, i));
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidStripes() {
+		new NonceTable(0);
+	}
+	
+	@Test
+	public void testHexUser() {
+		NonceTable table = new NonceTable();
+		byte[] user = user(0x12345678);
+		
+		assertTrue(table.checkAndAdvance(user, Type.Withdraw, 5));
+		assertFalse(table.checkAndAdvance("0x1200000000000034000000000056000000000078", Type.Withdraw, 5));
+		assertTrue(table.checkAndAdvance("1200000000000034000000000056000000000078", Type.Withdraw, 6));
+		assertEquals(6, table.get(user, Type.Withdraw));
+		assertEquals(6, table.get("0X1200000000000034000000000056000000000078", Type.Withdraw));
+	}
+	
+	@Test
+	public void testSnapshot() throws IOException {
+		NonceTable table = new NonceTable(4);
+		for (int i = 0; i < 100; i++) {
+			table.checkAndAdvance(user(i), Type.values()[i % 4], i);
+		}
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		table.snapshot(out);
+		
+		NonceTable restored = new NonceTable(1);
+		assertEquals(100, restored.restore(new ByteArrayInputStream(out.toByteArray())));
+		assertEquals(100, restored.size());
+		
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, restored.get(user(i), Type.values()[i % 4]));
+		}
+	}
+
+}
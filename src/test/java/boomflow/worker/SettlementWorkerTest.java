@@ -0,0 +1,225 @@
+package boomflow.worker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Test;
+import org.web3j.crypto.RawTransaction;
+
+import boomflow.common.worker.BatchWorker.Batchable;
+import boomflow.common.worker.PendingException;
+import boomflow.worker.settle.Settleable;
+import boomflow.worker.settle.SettlementContext;
+import boomflow.worker.settle.SettlementStatus;
+
+public class SettlementWorkerTest {
+	
+	private static final SettlementHandler HANDLER = (SettlementHandler) Proxy.newProxyInstance(
+			SettlementWorkerTest.class.getClassLoader(), new Class<?>[] { SettlementHandler.class }, (proxy, method, args) -> null);
+	
+	private ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+	private ScheduledExecutorService sendExecutor = Executors.newScheduledThreadPool(8);
+	
+	@After
+	public void tearDown() {
+		this.executor.shutdownNow();
+		this.sendExecutor.shutdownNow();
+	}
+	
+	static class Item extends Settleable {
+		
+		Item() {
+			super(null, null);
+		}
+		
+		@Override
+		public SettlementContext getSettlementContext() {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		protected void update(SettlementStatus status) {
+		}
+		
+		@Override
+		protected void update(SettlementStatus status, String txHash, BigInteger nonce) {
+		}
+		
+		@Override
+		public boolean batchWith(Batchable other) {
+			return false;
+		}
+		
+		@Override
+		public int size() {
+			return 1;
+		}
+	
+	}
+	
+	/**
+	 * Pipelined worker that assigns nonce from 1000, and sends transactions by the specified sender.
+	 */
+	static abstract class TestWorker extends SettlementWorker {
+		
+		volatile BigInteger nextNonce = BigInteger.valueOf(1000);
+		// nonces of transactions re-sent in series
+		List<BigInteger> resent = Collections.synchronizedList(new ArrayList<BigInteger>());
+		AtomicInteger resynced = new AtomicInteger();
+		
+		TestWorker(ScheduledExecutorService executor, ScheduledExecutorService sendExecutor) {
+			super(executor, HANDLER, new TransactionConfirmationMonitorTest.TestMonitor(), 1, 0, 0);
+			
+			this.setAdaptiveBatching(0);
+			this.setPauseIntervalMillis(10);
+			this.setPipelineWindow(16, sendExecutor);
+		}
+		
+		@Override
+		protected void validatePendingNonce() {
+		}
+		
+		@Override
+		protected boolean isSettledOnChain(Settleable settleable) {
+			return false;
+		}
+		
+		@Override
+		protected void sendTransaction(Settleable data) {
+			this.resent.add(data.getRecorder().getNonce());
+		}
+		
+		@Override
+		protected BigInteger getNextNonce() {
+			return this.nextNonce;
+		}
+		
+		@Override
+		protected void setNextNonce(BigInteger nonce) {
+			this.nextNonce = nonce;
+		}
+		
+		@Override
+		protected void resyncNextNonce() {
+			this.resynced.incrementAndGet();
+			this.nextNonce = BigInteger.valueOf(2000);
+		}
+		
+		@Override
+		protected String signTransaction(Settleable data, BigInteger nonce) {
+			RawTransaction tx = RawTransaction.createEtherTransaction(nonce, BigInteger.ONE, BigInteger.ONE, "0x0", BigInteger.ZERO);
+			data.updateSettlement(SettlementStatus.OffChainSettled, "0x" + nonce.toString(16), tx);
+			return nonce.toString();
+		}
+		
+		@Override
+		protected void sendSignedTransaction(Settleable data, String signedTx) throws Exception {
+			this.send(data, new BigInteger(signedTx));
+		}
+		
+		abstract void send(Settleable data, BigInteger nonce) throws Exception;
+	
+	}
+	
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline);
+			Thread.sleep(5);
+		}
+	}
+	
+	@Test
+	public void testResendInNonceOrder() throws Exception {
+		CountDownLatch failed = new CountDownLatch(1);
+		
+		TestWorker worker = new TestWorker(this.executor, this.sendExecutor) {
+			
+			@Override
+			void send(Settleable data, BigInteger nonce) throws Exception {
+				await(() -> this.nextNonce.intValue() == 1005);
+				
+				// underpriced, and the lower nonce failed at first
+				if (nonce.intValue() == 1001 || nonce.intValue() == 1003 && failed.await(5, TimeUnit.SECONDS)) {
+					data.getRecorder().getLast().setLongUnexecuted(true);
+					failed.countDown();
+					throw new PendingException(1000, "underpriced");
+				}
+			}
+		
+		};
+		
+		for (int i = 0; i < 5; i++) {
+			worker.submit(new Item());
+		}
+		
+		// failed transactions re-sent in nonce order once all in-flight ones acknowledged
+		await(() -> worker.getMonitor().getPendingCount() == 5);
+		assertEquals(Arrays.asList(BigInteger.valueOf(1001), BigInteger.valueOf(1003)), worker.resent);
+		assertEquals(0, worker.getInFlightCount());
+		assertEquals(BigInteger.valueOf(1005), worker.nextNonce);
+	}
+	
+	@Test
+	public void testResyncNonceOnceDrained() throws Exception {
+		CountDownLatch failed = new CountDownLatch(1);
+		AtomicInteger resyncedInFlight = new AtomicInteger(-1);
+		
+		TestWorker worker = new TestWorker(this.executor, this.sendExecutor) {
+			
+			@Override
+			void send(Settleable data, BigInteger nonce) throws Exception {
+				await(() -> this.nextNonce.intValue() >= 1002);
+				
+				if (nonce.intValue() == 1000) {
+					this.requestNonceResync();
+					throw new Exception("nonce too low");
+				}
+				
+				// nonce not re-synced while transaction in flight
+				if (nonce.intValue() == 1001) {
+					assertTrue(failed.await(5, TimeUnit.SECONDS));
+					resyncedInFlight.set(this.resynced.get());
+				}
+			}
+			
+			@Override
+			protected void onFailure(Settleable data, Exception e) {
+				failed.countDown();
+			}
+		
+		};
+		
+		worker.submit(new Item());
+		worker.submit(new Item());
+		
+		assertTrue(failed.await(5, TimeUnit.SECONDS));
+		assertTrue(worker.isPaused());
+		
+		// new settlement sent with re-synced nonce once resumed
+		worker.submit(new Item());
+		worker.setPaused(false);
+		await(() -> worker.getMonitor().getPendingCount() == 3);
+		
+		assertEquals(0, resyncedInFlight.get());
+		assertEquals(1, worker.resynced.get());
+		assertEquals(Arrays.asList(BigInteger.valueOf(1000)), worker.resent);
+		assertEquals(BigInteger.valueOf(2001), worker.nextNonce);
+	}
+
+}
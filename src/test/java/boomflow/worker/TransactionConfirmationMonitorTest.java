@@ -0,0 +1,202 @@
+package boomflow.worker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.web3j.crypto.RawTransaction;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import boomflow.eip712.TypedPosition;
+import boomflow.worker.settle.GasModel;
+import boomflow.worker.settle.MulticallSettlement;
+import boomflow.worker.settle.MulticallSettlementTest;
+import boomflow.worker.settle.PositionSettlement;
+import boomflow.worker.settle.Settleable;
+import boomflow.worker.settle.SettlementStatus;
+
+public class TransactionConfirmationMonitorTest {
+	
+	/**
+	 * Monitor that checks the same result for all transactions without RPC.
+	 */
+	static class TestMonitor extends TransactionConfirmationMonitor {
+		
+		CheckConfirmationResult result = CheckConfirmationResult.Confirmed;
+		List<Settleable> checked = new ArrayList<Settleable>();
+		
+		// receipt to validate if specified
+		TransactionReceipt receipt;
+		
+		TestMonitor() {
+			super(100);
+		}
+		
+		@Override
+		protected BigInteger getBlockNumber() {
+			return BigInteger.ONE;
+		}
+		
+		@Override
+		protected BigInteger getConfirmedBlockNumber() {
+			return BigInteger.TEN;
+		}
+		
+		@Override
+		protected CheckConfirmationResult checkConfirmation(Settleable settleable, BigInteger confirmedBlock) {
+			this.checked.add(settleable);
+			
+			if (this.receipt != null && !settleable.matches(this.receipt)) {
+				return CheckConfirmationResult.ReceiptValidationFailed;
+			}
+			
+			return this.result;
+		}
+	
+	}
+	
+	static class TestPosition extends PositionSettlement {
+		
+		TestPosition(String txHash, long nonce) {
+			super(txHash, BigInteger.valueOf(nonce));
+		}
+		
+		@Override
+		protected TypedPosition toTypedData() {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		protected void update(SettlementStatus status) {
+		}
+		
+		@Override
+		protected void update(SettlementStatus status, String txHash, BigInteger nonce) {
+		}
+	
+	}
+	
+	@Test
+	public void testRestorePositionBatch() throws Exception {
+		TestMonitor monitor = new TestMonitor();
+		List<Settleable> confirmed = new ArrayList<Settleable>();
+		monitor.onTxConfirmed.addHandler(confirmed::add);
+		
+		// batched positions reloaded separately when service restarted
+		TestPosition first = new TestPosition("0xaa", 5);
+		TestPosition second = new TestPosition("0xaa", 5);
+		TestPosition third = new TestPosition("0xAA", 5);
+		TestPosition next = new TestPosition("0xbb", 6);
+		
+		for (Settleable item : Arrays.asList(first, second, third, next)) {
+			monitor.add(item);
+		}
+		
+		assertEquals(2, monitor.getPendingCount());
+		assertSame(first, monitor.get(BigInteger.valueOf(5)));
+		assertEquals(Arrays.asList(second, third), first.getBatch());
+		
+		assertEquals(2, monitor.update());
+		assertEquals(Arrays.asList(first, next), monitor.checked);
+		assertEquals(Arrays.asList(first, next), confirmed);
+		
+		for (Settleable item : Arrays.asList(first, second, third, next)) {
+			assertEquals(SettlementStatus.OnChainConfirmed, item.getStatus());
+		}
+	}
+	
+	@Test
+	public void testRestoreFailedPositionBatch() throws Exception {
+		TestMonitor monitor = new TestMonitor();
+		monitor.result = TransactionConfirmationMonitor.CheckConfirmationResult.ExecutionFailed;
+		
+		TestPosition first = new TestPosition("0xaa", 5);
+		TestPosition second = new TestPosition("0xaa", 5);
+		monitor.add(first);
+		monitor.add(second);
+		
+		assertEquals(0, monitor.update());
+		assertTrue(monitor.isPaused());
+		assertEquals(SettlementStatus.OnChainFailed, first.getStatus());
+		assertEquals(SettlementStatus.OnChainFailed, second.getStatus());
+	}
+	
+	@Test
+	public void testReplaceWithDifferentTransaction() throws Exception {
+		TestMonitor monitor = new TestMonitor();
+		
+		TestPosition first = new TestPosition("0xaa", 5);
+		TestPosition second = new TestPosition("0xbb", 5);
+		monitor.add(first);
+		monitor.add(second);
+		
+		assertEquals(1, monitor.getPendingCount());
+		assertSame(second, monitor.get(BigInteger.valueOf(5)));
+		assertTrue(first.getBatch().isEmpty());
+	}
+	
+	@Test
+	public void testRestoreWhenBatched() {
+		// batched by worker when reloaded positions submitted, even though batch disabled
+		TestPosition first = new TestPosition("0xaa", 5);
+		assertTrue(first.batchWith(new TestPosition("0xaa", 5)));
+		assertFalse(first.batchWith(new TestPosition("0xaa", 6)));
+		assertFalse(first.batchWith(new TestPosition(null, -1)));
+		assertEquals(2, first.size());
+	}
+
+	@Test
+	public void testRestoreMulticall() throws Exception {
+		TestMonitor monitor = new TestMonitor();
+		monitor.receipt = MulticallSettlementTest.receipt(
+				MulticallSettlementTest.result(MulticallSettlementTest.CONTRACT, 1, false),
+				MulticallSettlementTest.result(MulticallSettlementTest.CONTRACT, 0, true));
+		
+		// packed calls reloaded separately and wrapped by worker when service restarted
+		MulticallSettlementTest.Call first = new MulticallSettlementTest.Call(MulticallSettlementTest.CONTRACT, 0, "0xaa", 5);
+		MulticallSettlementTest.Call second = new MulticallSettlementTest.Call(MulticallSettlementTest.CONTRACT, 1, "0xaa", 5);
+		MulticallSettlement multicall = new MulticallSettlement(first);
+		monitor.add(multicall);
+		monitor.add(new MulticallSettlement(second));
+		
+		assertEquals(1, monitor.getPendingCount());
+		assertEquals(Arrays.asList(first, second), multicall.getItems());
+		
+		assertEquals(1, monitor.update());
+		assertEquals(SettlementStatus.OnChainConfirmed, first.getStatus());
+		assertEquals(SettlementStatus.OnChainFailed, second.getStatus());
+	}
+
+	@Test
+	public void testLearnGasExhausted() {
+		TestMonitor monitor = new TestMonitor();
+		GasModel.setInstance(new GasModel());
+		
+		try {
+			MulticallSettlementTest.Call call = new MulticallSettlementTest.Call(MulticallSettlementTest.CONTRACT, 0);
+			call.updateSettlement(SettlementStatus.OffChainSettled, "0xaa",
+					RawTransaction.createTransaction(BigInteger.ONE, BigInteger.ONE, BigInteger.valueOf(1000), "0x0", "0x"));
+			
+			// reverted without running out of gas
+			monitor.learnGasExhausted(call, "0xaa", BigInteger.valueOf(900));
+			assertEquals(BigInteger.valueOf(1000), GasModel.gasLimit(call.getGasKey(), BigInteger.valueOf(1000)));
+			
+			// unknown transaction
+			monitor.learnGasExhausted(call, "0xbb", BigInteger.valueOf(1000));
+			assertEquals(BigInteger.valueOf(1000), GasModel.gasLimit(call.getGasKey(), BigInteger.valueOf(1000)));
+			
+			monitor.learnGasExhausted(call, "0xAA", BigInteger.valueOf(1000));
+			assertEquals(BigInteger.valueOf(1500), GasModel.gasLimit(call.getGasKey(), BigInteger.valueOf(1000)));
+		} finally {
+			GasModel.setInstance(null);
+		}
+	}
+
+}
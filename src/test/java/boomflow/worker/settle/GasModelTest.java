@@ -0,0 +1,85 @@
+package boomflow.worker.settle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+public class GasModelTest {
+	
+	private static final String KEY = "test";
+	private static final BigInteger DEFAULT_GAS_LIMIT = BigInteger.valueOf(800);
+	
+	private static void learn(GasModel model, long gasUsed, int times) {
+		for (int i = 0; i < times; i++) {
+			model.learn(KEY, BigInteger.valueOf(gasUsed));
+		}
+	}
+	
+	private static long estimate(GasModel model) {
+		return model.estimate(KEY, DEFAULT_GAS_LIMIT).longValue();
+	}
+	
+	@Test
+	public void testDefault() {
+		GasModel model = new GasModel(0.2, 3);
+		assertEquals(800, estimate(model));
+		
+		learn(model, 100, 2);
+		assertEquals(2, model.getSamples(KEY));
+		assertEquals(800, estimate(model));
+		
+		learn(model, 100, 1);
+		assertEquals(120, estimate(model));
+	}
+	
+	@Test
+	public void testMeanAndDeviation() {
+		GasModel model = new GasModel(0.25, 2);
+		learn(model, 1000, 1);
+		learn(model, 3000, 1);
+		
+		// mean 2000 and deviation 1000 with simple average: (2000 + 4 * 1000) * 1.25
+		assertEquals(7500, estimate(model));
+	}
+	
+	@Test
+	public void testDecayedMax() {
+		GasModel model = new GasModel(0, 1);
+		learn(model, 100, 20);
+		assertEquals(100, estimate(model));
+		
+		// mean 190 and deviation 90, but not less than the maximum gas used
+		learn(model, 1000, 1);
+		assertEquals(1000, estimate(model));
+		
+		// mean 181 and deviation 90, and maximum decayed
+		learn(model, 100, 1);
+		assertEquals(990, estimate(model));
+		
+		// spike forgotten at last
+		learn(model, 100, 1000);
+		assertTrue(estimate(model) <= 101);
+	}
+	
+	@Test
+	public void testExhausted() {
+		GasModel model = new GasModel(0.2, 10);
+		model.learnExhausted(KEY, BigInteger.valueOf(1000));
+		
+		// raised even if not learned enough
+		assertEquals(1500, estimate(model));
+		assertEquals(2000, model.estimate(KEY, BigInteger.valueOf(2000)).longValue());
+		
+		// raised limit decays as gas used learned
+		learn(model, 100, 10);
+		long estimated = estimate(model);
+		assertTrue(estimated > 1300 && estimated < 1500);
+		
+		learn(model, 100, 1000);
+		assertEquals(120, estimate(model));
+	}
+
+}
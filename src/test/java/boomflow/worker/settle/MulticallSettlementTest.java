@@ -0,0 +1,183 @@
+package boomflow.worker.settle;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.web3j.abi.FunctionEncoder;
+import org.web3j.abi.datatypes.DynamicArray;
+import org.web3j.abi.datatypes.DynamicBytes;
+import org.web3j.abi.datatypes.Function;
+import org.web3j.abi.datatypes.Type;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.utils.Numeric;
+
+import boomflow.common.Address;
+import boomflow.common.worker.BatchWorker.Batchable;
+
+public class MulticallSettlementTest {
+	
+	public static final Address CONTRACT = Address.createEthAddress("0x8a2f4b0c5e6d7a8b9c0d1e2f3a4b5c6d7e8f9a0b");
+	private static final Address OTHER_CONTRACT = Address.createEthAddress("0x1b2c3d4e5f60718293a4b5c6d7e8f90a1b2c3d4e");
+	
+	/**
+	 * Settlement of a single call, which records the updated status and transaction hash.
+	 */
+	public static class Call extends Settleable {
+		
+		private Address contract;
+		private byte[] data;
+		public List<String> txHashes = new ArrayList<String>();
+		
+		public Call(Address contract, int data) {
+			this(contract, data, null, -1);
+		}
+		
+		public Call(Address contract, int data, String txHash, long nonce) {
+			super(txHash, BigInteger.valueOf(nonce));
+			
+			this.contract = contract;
+			this.data = new byte[] { (byte) data, 1, 2, 3, 4 };
+		}
+		
+		@Override
+		public SettlementContext getSettlementContext() {
+			return new SettlementContext(this.contract, this.data, BigInteger.valueOf(100), BigInteger.TEN);
+		}
+		
+		@Override
+		protected void update(SettlementStatus status) {
+		}
+		
+		@Override
+		protected void update(SettlementStatus status, String txHash, BigInteger nonce) {
+			this.txHashes.add(txHash);
+		}
+		
+		@Override
+		public boolean batchWith(Batchable other) {
+			return false;
+		}
+		
+		@Override
+		public int size() {
+			return 1;
+		}
+	
+	}
+	
+	private static MulticallSettlement pack(Settleable... items) {
+		MulticallSettlement multicall = new MulticallSettlement(items[0]);
+		for (int i = 1; i < items.length; i++) {
+			assertTrue(multicall.batchWith(new MulticallSettlement(items[i])));
+		}
+		
+		return multicall;
+	}
+	
+	public static Log result(Address contract, int index, boolean success) {
+		Log log = new Log();
+		log.setAddress(contract.toHex());
+		log.setTopics(Arrays.asList(MulticallSettlement.RESULT_EVENT_HASH));
+		log.setData(Numeric.toHexStringWithPrefixZeroPadded(BigInteger.valueOf(index), 64)
+				+ Numeric.toHexStringNoPrefixZeroPadded(success ? BigInteger.ONE : BigInteger.ZERO, 64));
+		return log;
+	}
+	
+	public static TransactionReceipt receipt(Log... logs) {
+		TransactionReceipt receipt = new TransactionReceipt();
+		receipt.setStatus("0x1");
+		receipt.setLogs(Arrays.asList(logs));
+		return receipt;
+	}
+	
+	@SuppressWarnings("rawtypes")
+	@Test
+	public void testEncode() throws Exception {
+		Call[] calls = { new Call(CONTRACT, 0), new Call(CONTRACT, 1), new Call(CONTRACT, 2) };
+		SettlementContext context = pack(calls).getSettlementContext();
+		
+		DynamicArray<DynamicBytes> array = new DynamicArray<DynamicBytes>(DynamicBytes.class,
+				new DynamicBytes(calls[0].data), new DynamicBytes(calls[1].data), new DynamicBytes(calls[2].data));
+		String expected = FunctionEncoder.encode(new Function("multicall", Arrays.<Type>asList(array), new ArrayList<>()));
+		
+		assertEquals(expected, Numeric.toHexString(context.getData()));
+		assertEquals(CONTRACT.toHex(), context.getContract().toHex());
+		assertEquals(BigInteger.valueOf(300), context.getGasLimit());
+		assertEquals(BigInteger.valueOf(30), context.getStorageLimit());
+		
+		// single call is not wrapped
+		assertArrayEquals(calls[0].data, new MulticallSettlement(calls[0]).getSettlementContext().getData());
+	}
+	
+	@Test
+	public void testDifferentContracts() {
+		MulticallSettlement multicall = new MulticallSettlement(new Call(CONTRACT, 0));
+		
+		assertFalse(multicall.batchWith(new MulticallSettlement(new Call(OTHER_CONTRACT, 1))));
+		assertTrue(multicall.batchWith(new MulticallSettlement(new Call(CONTRACT, 2))));
+		assertEquals(2, multicall.size());
+		
+		// calls to the other contract could be packed as well
+		MulticallSettlement other = new MulticallSettlement(new Call(OTHER_CONTRACT, 3));
+		assertTrue(other.batchWith(new MulticallSettlement(new Call(OTHER_CONTRACT, 4))));
+	}
+	
+	@Test
+	public void testDecodeResults() {
+		Call[] calls = { new Call(CONTRACT, 0), new Call(CONTRACT, 1), new Call(CONTRACT, 2) };
+		MulticallSettlement multicall = pack(calls);
+		
+		// results out of order, and result emitted by other contract is ignored
+		TransactionReceipt receipt = receipt(result(CONTRACT, 2, true), result(OTHER_CONTRACT, 1, true),
+				result(CONTRACT, 0, true), result(CONTRACT, 1, false));
+		
+		assertTrue(multicall.matches(receipt));
+		assertEquals(Arrays.asList(calls[1]), multicall.getFailedItems());
+		
+		multicall.updateSettlement(SettlementStatus.OnChainConfirmed);
+		assertEquals(SettlementStatus.OnChainConfirmed, calls[0].getStatus());
+		assertEquals(SettlementStatus.OnChainFailed, calls[1].getStatus());
+		assertEquals(SettlementStatus.OnChainConfirmed, calls[2].getStatus());
+	}
+	
+	@Test
+	public void testMissingResult() {
+		MulticallSettlement multicall = pack(new Call(CONTRACT, 0), new Call(CONTRACT, 1), new Call(CONTRACT, 2));
+		
+		assertFalse(multicall.matches(receipt(result(CONTRACT, 0, true), result(CONTRACT, 1, true))));
+		assertFalse(multicall.matches(receipt(result(CONTRACT, 0, true), result(CONTRACT, 0, true), result(CONTRACT, 1, true))));
+		assertFalse(multicall.matches(receipt(result(CONTRACT, 0, true), result(CONTRACT, 1, true), result(OTHER_CONTRACT, 2, true))));
+		assertTrue(multicall.getFailedItems().isEmpty());
+	}
+	
+	@Test
+	public void testRestore() {
+		// packed calls reloaded separately when service restarted
+		Call[] calls = { new Call(CONTRACT, 0, "0xaa", 7), new Call(CONTRACT, 1, "0xaa", 7), new Call(CONTRACT, 2, "0xaa", 7) };
+		MulticallSettlement multicall = pack(calls);
+		
+		assertFalse(multicall.batchWith(new MulticallSettlement(new Call(CONTRACT, 3, "0xbb", 8))));
+		assertFalse(multicall.batchWith(new MulticallSettlement(new Call(CONTRACT, 4))));
+		assertEquals(3, multicall.size());
+		assertEquals(BigInteger.valueOf(7), multicall.getRecorder().getNonce());
+		
+		assertTrue(multicall.matches(receipt(result(CONTRACT, 0, false), result(CONTRACT, 1, true), result(CONTRACT, 2, true))));
+		assertEquals(Arrays.asList(calls[0]), multicall.getFailedItems());
+		
+		// packed transaction hash updated for all calls
+		multicall.updateSettlement("0xcc");
+		for (Call call : calls) {
+			assertEquals(Arrays.asList("0xcc"), call.txHashes);
+		}
+	}
+
+}